@@ -12,6 +12,7 @@ package com.facebook.stetho.okhttp;
 import com.facebook.stetho.inspector.network.DefaultResponseHandler;
 import com.facebook.stetho.inspector.network.NetworkEventReporter;
 import com.facebook.stetho.inspector.network.NetworkEventReporterImpl;
+import com.facebook.stetho.inspector.network.NetworkTimingReporter;
 import com.facebook.stetho.inspector.network.RequestBodyHelper;
 import com.squareup.okhttp.*;
 import okio.BufferedSink;
@@ -46,16 +47,24 @@ public class StethoInterceptor implements Interceptor {
     Request request = chain.request();
 
     RequestBodyHelper requestBodyHelper = null;
+    Request networkRequest = request;
     if (mEventReporter.isEnabled()) {
       requestBodyHelper = new RequestBodyHelper(mEventReporter, requestId);
       OkHttpInspectorRequest inspectorRequest =
           new OkHttpInspectorRequest(requestId, request, requestBodyHelper);
       mEventReporter.requestWillBeSent(inspectorRequest);
+
+      if (mEventReporter instanceof NetworkTimingReporter) {
+        networkRequest = beginSendTiming(
+            (NetworkTimingReporter) mEventReporter,
+            requestId,
+            request);
+      }
     }
 
     Response response;
     try {
-      response = chain.proceed(request);
+      response = chain.proceed(networkRequest);
     } catch (IOException e) {
       if (mEventReporter.isEnabled()) {
         mEventReporter.httpExchangeFailed(requestId, e.toString());
@@ -100,6 +109,72 @@ public class StethoInterceptor implements Interceptor {
     return response;
   }
 
+  /**
+   * Network interceptors only run once the connection has been established, so the send is the
+   * only phase of the exchange we can observe.  OkHttp writes the request headers as soon as we
+   * proceed, followed by the body (if any), which we time by wrapping it.  A request without a
+   * body is sent as soon as its headers are written.
+   *
+   * @return The request to proceed with.
+   */
+  private static Request beginSendTiming(
+      NetworkTimingReporter timingReporter,
+      String requestId,
+      Request request) {
+    final long sendStart = System.nanoTime();
+    timingReporter.requestTiming(
+        requestId,
+        NetworkTimingReporter.TimingPhase.SEND_START,
+        sendStart);
+
+    RequestBody body = request.body();
+    if (body == null) {
+      timingReporter.requestTiming(
+          requestId,
+          NetworkTimingReporter.TimingPhase.SEND_END,
+          sendStart);
+      return request;
+    }
+    return request.newBuilder()
+        .method(request.method(), new SendTimingRequestBody(body, timingReporter, requestId))
+        .build();
+  }
+
+  private static class SendTimingRequestBody extends RequestBody {
+    private final RequestBody mBody;
+    private final NetworkTimingReporter mTimingReporter;
+    private final String mRequestId;
+
+    public SendTimingRequestBody(
+        RequestBody body,
+        NetworkTimingReporter timingReporter,
+        String requestId) {
+      mBody = body;
+      mTimingReporter = timingReporter;
+      mRequestId = requestId;
+    }
+
+    @Override
+    public MediaType contentType() {
+      return mBody.contentType();
+    }
+
+    @Override
+    public long contentLength() throws IOException {
+      return mBody.contentLength();
+    }
+
+    @Override
+    public void writeTo(BufferedSink sink) throws IOException {
+      mBody.writeTo(sink);
+      sink.flush();
+      mTimingReporter.requestTiming(
+          mRequestId,
+          NetworkTimingReporter.TimingPhase.SEND_END,
+          System.nanoTime());
+    }
+  }
+
   private static class OkHttpInspectorRequest implements NetworkEventReporter.InspectorRequest {
     private final String mRequestId;
     private final Request mRequest;
@@ -14,6 +14,7 @@ import android.os.Build;
 import com.facebook.stetho.inspector.network.DecompressionHelper;
 import com.facebook.stetho.inspector.network.NetworkEventReporter;
 import com.facebook.stetho.inspector.network.NetworkEventReporterImpl;
+import com.facebook.stetho.inspector.network.NetworkTimingReporter;
 import com.facebook.stetho.inspector.network.ResponseHandler;
 import com.squareup.okhttp.Connection;
 import com.squareup.okhttp.Interceptor;
@@ -26,6 +27,7 @@ import com.squareup.okhttp.Response;
 import com.squareup.okhttp.ResponseBody;
 import com.squareup.okhttp.mockwebserver.MockResponse;
 import com.squareup.okhttp.mockwebserver.MockWebServer;
+import okio.Buffer;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -68,7 +70,9 @@ public class StethoInterceptorTest {
   public void setUp() {
     PowerMockito.mockStatic(NetworkEventReporterImpl.class);
 
-    mMockEventReporter = Mockito.mock(NetworkEventReporter.class);
+    mMockEventReporter = Mockito.mock(
+        NetworkEventReporter.class,
+        Mockito.withSettings().extraInterfaces(NetworkTimingReporter.class));
     Mockito.when(mMockEventReporter.isEnabled()).thenReturn(true);
     PowerMockito.when(NetworkEventReporterImpl.get()).thenReturn(mMockEventReporter);
 
@@ -106,6 +110,16 @@ public class StethoInterceptorTest {
     inOrder.verify(mMockEventReporter).isEnabled();
     inOrder.verify(mMockEventReporter)
         .requestWillBeSent(any(NetworkEventReporter.InspectorRequest.class));
+    inOrder.verify((NetworkTimingReporter) mMockEventReporter)
+        .requestTiming(
+            anyString(),
+            eq(NetworkTimingReporter.TimingPhase.SEND_START),
+            anyLong());
+    inOrder.verify((NetworkTimingReporter) mMockEventReporter)
+        .requestTiming(
+            anyString(),
+            eq(NetworkTimingReporter.TimingPhase.SEND_END),
+            anyLong());
     inOrder.verify(mMockEventReporter)
         .dataSent(
             anyString(),
@@ -292,10 +306,14 @@ public class StethoInterceptorTest {
 
     @Override
     public Response proceed(Request request) throws IOException {
-      if (mRequest != request) {
-        throw new IllegalArgumentException(
-            "Expected " + System.identityHashCode(mRequest) +
-                "; got " + System.identityHashCode(request));
+      // The interceptor may wrap the body, but must otherwise pass the request through as is.
+      if (!mRequest.urlString().equals(request.urlString()) ||
+          !mRequest.method().equals(request.method()) ||
+          !mRequest.headers().toString().equals(request.headers().toString())) {
+        throw new IllegalArgumentException("Expected " + mRequest + "; got " + request);
+      }
+      if (request.body() != null) {
+        request.body().writeTo(new Buffer());
       }
       return mResponse;
     }
@@ -89,6 +89,10 @@ public class StethoURLConnectionManager {
    * Indicates that the {@link HttpURLConnection} has just successfully exchanged HTTP messages
    * (request headers + body and response headers) with the server but has not yet consumed
    * the response body.
+   * <p>
+   * For accurate timings in the Inspector, call this as soon as the request has been written
+   * and before reading anything from the response, such as its status code.  The response headers
+   * are read here if they haven't been already.
    *
    * @throws IOException May throw an exception internally due to {@link HttpURLConnection}
    *     method signatures.  The request should be considered aborted/failed if this method
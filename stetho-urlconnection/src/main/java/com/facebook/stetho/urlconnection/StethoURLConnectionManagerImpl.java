@@ -12,6 +12,7 @@ package com.facebook.stetho.urlconnection;
 import com.facebook.stetho.inspector.network.DefaultResponseHandler;
 import com.facebook.stetho.inspector.network.NetworkEventReporter;
 import com.facebook.stetho.inspector.network.NetworkEventReporterImpl;
+import com.facebook.stetho.inspector.network.NetworkTimingReporter;
 import com.facebook.stetho.inspector.network.RequestBodyHelper;
 
 import javax.annotation.Nonnull;
@@ -67,6 +68,7 @@ class StethoURLConnectionManagerImpl {
           requestEntity,
           mRequestBodyHelper);
       mStethoHook.requestWillBeSent(mInspectorRequest);
+      reportTiming(NetworkTimingReporter.TimingPhase.SEND_START);
     }
   }
 
@@ -76,6 +78,8 @@ class StethoURLConnectionManagerImpl {
   public void postConnect() throws IOException {
     throwIfNoConnection();
     if (isStethoActive()) {
+      // The response headers are only read when constructing the response below.
+      reportTiming(NetworkTimingReporter.TimingPhase.SEND_END);
       if (mRequestBodyHelper != null && mRequestBodyHelper.hasBody()) {
         mRequestBodyHelper.reportDataSent();
       }
@@ -117,6 +121,20 @@ class StethoURLConnectionManagerImpl {
     return responseStream;
   }
 
+  /**
+   * {@link HttpURLConnection} doesn't expose when it connects, so the send phase is bounded by
+   * {@link #preConnect} and {@link #postConnect} and includes setting up the connection when one
+   * couldn't be reused.
+   */
+  private void reportTiming(NetworkTimingReporter.TimingPhase phase) {
+    if (mStethoHook instanceof NetworkTimingReporter) {
+      ((NetworkTimingReporter) mStethoHook).requestTiming(
+          getStethoRequestId(),
+          phase,
+          System.nanoTime());
+    }
+  }
+
   private void throwIfNoConnection() {
     if (mConnection == null) {
       throw new IllegalStateException("Must call preConnect");
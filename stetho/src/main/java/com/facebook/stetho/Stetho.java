@@ -12,6 +12,7 @@ package com.facebook.stetho;
 import com.facebook.stetho.dumpapp.plugins.CrashDumperPlugin;
 import com.facebook.stetho.dumpapp.plugins.FilesDumperPlugin;
 import com.facebook.stetho.dumpapp.plugins.HprofDumperPlugin;
+import com.facebook.stetho.dumpapp.plugins.NetworkDumperPlugin;
 import com.facebook.stetho.inspector.database.DefaultDatabaseFilesProvider;
 import javax.annotation.Nullable;
 
@@ -230,6 +231,7 @@ public class Stetho {
       provideIfDesired(new SharedPreferencesDumperPlugin(mContext));
       provideIfDesired(new CrashDumperPlugin());
       provideIfDesired(new FilesDumperPlugin(mContext));
+      provideIfDesired(new NetworkDumperPlugin());
       return mDelegate.finish();
     }
   }
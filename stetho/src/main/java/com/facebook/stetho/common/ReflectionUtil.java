@@ -43,6 +43,27 @@ public final class ReflectionUtil {
     }
   }
 
+  /**
+   * Like {@link #tryGetDeclaredField}, but also searches the superclasses of {@code theClass}.
+   */
+  @Nullable
+  public static Field tryGetDeclaredFieldInHierarchy(Class<?> theClass, String fieldName) {
+    for (Class<?> c = theClass; c != null; c = c.getSuperclass()) {
+      try {
+        return c.getDeclaredField(fieldName);
+      } catch (NoSuchFieldException e) {
+        // Keep looking.
+      }
+    }
+
+    LogUtil.d(
+        "Could not retrieve %s field from %s or its superclasses",
+        fieldName,
+        theClass);
+
+    return null;
+  }
+
   @Nullable
   public static Object getFieldValue(Field field, Object target) {
     try {
@@ -51,4 +72,33 @@ public final class ReflectionUtil {
       throw new RuntimeException(e);
     }
   }
+
+  @Nullable
+  public static Method tryGetDeclaredMethod(
+      Class<?> theClass,
+      String methodName,
+      Class<?>... parameterTypes) {
+    try {
+      return theClass.getDeclaredMethod(methodName, parameterTypes);
+    } catch (NoSuchMethodException e) {
+      LogUtil.d(
+          e,
+          "Could not retrieve %s method from %s",
+          methodName,
+          theClass);
+
+      return null;
+    }
+  }
+
+  @Nullable
+  public static Object invokeMethod(Method method, Object target, Object... args) {
+    try {
+      return method.invoke(target, args);
+    } catch (IllegalAccessException e) {
+      throw new RuntimeException(e);
+    } catch (InvocationTargetException e) {
+      throw ExceptionUtil.propagate(e.getCause());
+    }
+  }
 }
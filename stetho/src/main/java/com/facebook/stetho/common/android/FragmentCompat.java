@@ -17,7 +17,9 @@ import com.facebook.stetho.common.Util;
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.NotThreadSafe;
 import java.lang.reflect.Field;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * Compatibility abstraction which allows us to generalize access to both the
@@ -82,28 +84,39 @@ public abstract class FragmentCompat<
 
   static class FragmentManagerAccessorViaReflection<FRAGMENT_MANAGER, FRAGMENT>
       implements FragmentManagerAccessor<FRAGMENT_MANAGER, FRAGMENT> {
-    @Nullable
-    private Field mFieldMAdded;
+    /**
+     * The {@code mAdded} field of each fragment manager class seen so far, or null for a class
+     * that doesn't have one.  Descriptors ask for the added fragments on every tree walk, so the
+     * field is only looked up (and a missing one only reported) once per class.
+     */
+    private final Map<Class<?>, Field> mAddedFields = new IdentityHashMap<>();
 
     @SuppressWarnings("unchecked")
     @Nullable
     @Override
     public List<FRAGMENT> getAddedFragments(FRAGMENT_MANAGER fragmentManager) {
-      // This field is actually sitting on FragmentManagerImpl, which derives from FragmentManager.
-      if (mFieldMAdded == null) {
-        Field fieldMAdded = ReflectionUtil.tryGetDeclaredField(
-            fragmentManager.getClass(),
+      final Field fieldMAdded = getAddedField(fragmentManager.getClass());
+      return (fieldMAdded != null)
+          ? (List<FRAGMENT>)ReflectionUtil.getFieldValue(fieldMAdded, fragmentManager)
+          : null;
+    }
+
+    @Nullable
+    private Field getAddedField(Class<?> fragmentManagerClass) {
+      Field fieldMAdded = mAddedFields.get(fragmentManagerClass);
+      if (fieldMAdded == null && !mAddedFields.containsKey(fragmentManagerClass)) {
+        // This field is actually sitting on FragmentManagerImpl, which derives from
+        // FragmentManager.
+        fieldMAdded = ReflectionUtil.tryGetDeclaredFieldInHierarchy(
+            fragmentManagerClass,
             "mAdded");
 
         if (fieldMAdded != null) {
           fieldMAdded.setAccessible(true);
-          mFieldMAdded = fieldMAdded;
         }
+        mAddedFields.put(fragmentManagerClass, fieldMAdded);
       }
-
-      return (mFieldMAdded != null)
-          ? (List<FRAGMENT>)ReflectionUtil.getFieldValue(mFieldMAdded, fragmentManager)
-          : null;
+      return fieldMAdded;
     }
   }
 }
@@ -0,0 +1,167 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.dumpapp.plugins;
+
+import com.facebook.stetho.common.Util;
+import com.facebook.stetho.dumpapp.ArgsHelper;
+import com.facebook.stetho.dumpapp.DumpException;
+import com.facebook.stetho.dumpapp.DumpUsageException;
+import com.facebook.stetho.dumpapp.DumperContext;
+import com.facebook.stetho.dumpapp.DumperPlugin;
+import com.facebook.stetho.inspector.network.HarReader;
+import com.facebook.stetho.inspector.network.HarWriter;
+import com.facebook.stetho.inspector.network.NetworkLog;
+
+import org.json.JSONException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Control and export the in-process {@link NetworkLog}.  This allows network traffic to be
+ * captured on a device for an extended period and pulled as a HAR file for offline analysis
+ * without the WebKit Inspector being attached:
+ * <pre>
+ *   ./dumpapp network enable
+ *   ... exercise the app ...
+ *   ./dumpapp network har &gt; capture.har
+ * </pre>
+ */
+public class NetworkDumperPlugin implements DumperPlugin {
+  private static final String NAME = "network";
+
+  private final NetworkLog mNetworkLog;
+
+  public NetworkDumperPlugin() {
+    this(NetworkLog.get());
+  }
+
+  public NetworkDumperPlugin(NetworkLog networkLog) {
+    mNetworkLog = networkLog;
+  }
+
+  @Override
+  public String getName() {
+    return NAME;
+  }
+
+  @Override
+  public void dump(DumperContext dumpContext) throws DumpException {
+    Iterator<String> argsIter = dumpContext.getArgsAsList().iterator();
+
+    String command = ArgsHelper.nextOptionalArg(argsIter, null);
+    if ("enable".equals(command)) {
+      doEnable(dumpContext.getStdout(), argsIter);
+    } else if ("disable".equals(command)) {
+      mNetworkLog.setEnabled(false);
+    } else if ("clear".equals(command)) {
+      mNetworkLog.clear();
+    } else if ("status".equals(command)) {
+      doStatus(dumpContext.getStdout());
+    } else if ("har".equals(command)) {
+      doHar(dumpContext.getStdout());
+    } else if ("import".equals(command)) {
+      doImport(dumpContext);
+    } else {
+      doUsage(dumpContext.getStdout());
+      if (command != null) {
+        throw new DumpUsageException("Unsupported command: " + command);
+      }
+    }
+  }
+
+  private void doEnable(PrintStream out, Iterator<String> argsIter) throws DumpUsageException {
+    String maxEntries = ArgsHelper.nextOptionalArg(argsIter, null);
+    if (maxEntries != null) {
+      try {
+        mNetworkLog.setMaxEntries(Integer.parseInt(maxEntries));
+      } catch (IllegalArgumentException e) {
+        throw new DumpUsageException("Invalid maxEntries: " + maxEntries);
+      }
+    }
+    mNetworkLog.setEnabled(true);
+    out.println("Recording up to " + mNetworkLog.getMaxEntries() + " requests");
+  }
+
+  private void doStatus(PrintStream out) {
+    List<NetworkLog.Entry> entries = mNetworkLog.snapshot();
+    int complete = 0;
+    for (NetworkLog.Entry entry : entries) {
+      if (entry.isComplete()) {
+        complete++;
+      }
+    }
+    out.println("enabled: " + mNetworkLog.isEnabled());
+    out.println("maxEntries: " + mNetworkLog.getMaxEntries());
+    out.println("entries: " + entries.size() + " (" + complete + " complete)");
+  }
+
+  private void doHar(PrintStream out) throws DumpException {
+    try {
+      Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+      HarWriter harWriter = new HarWriter(writer);
+      harWriter.beginLog();
+      for (NetworkLog.Entry entry : mNetworkLog.snapshot()) {
+        harWriter.writeEntry(entry);
+      }
+      harWriter.endLog();
+    } catch (IOException e) {
+      throw new DumpException(e.toString());
+    }
+  }
+
+  private void doImport(DumperContext dumpContext) throws DumpException {
+    List<NetworkLog.Entry> entries;
+    try {
+      entries = HarReader.read(Util.readAsUTF8(dumpContext.getStdin()));
+    } catch (IOException e) {
+      throw new DumpException(e.toString());
+    } catch (JSONException e) {
+      throw new DumpUsageException("Malformed HAR input: " + e.getMessage());
+    }
+    for (NetworkLog.Entry entry : entries) {
+      mNetworkLog.addEntry(entry);
+    }
+    dumpContext.getStdout().println("Imported " + entries.size() + " entries");
+  }
+
+  private void doUsage(PrintStream out) {
+    final String cmdName = "dumpapp " + NAME;
+
+    String usagePrefix = "Usage: " + cmdName + " ";
+    String blankPrefix = "       " + cmdName + " ";
+    out.println(usagePrefix + "<command> [command-options]");
+    out.println(usagePrefix + "enable [maxEntries]");
+    out.println(blankPrefix + "disable");
+    out.println(blankPrefix + "clear");
+    out.println(blankPrefix + "status");
+    out.println(blankPrefix + "har");
+    out.println(blankPrefix + "import");
+    out.println();
+    out.println(cmdName + " enable: Start recording network traffic, whether or not the");
+    out.println("    Inspector is attached (default maxEntries: " +
+        NetworkLog.DEFAULT_MAX_ENTRIES + ")");
+    out.println();
+    out.println(cmdName + " disable: Stop recording; captured entries are retained");
+    out.println();
+    out.println(cmdName + " clear: Discard all captured entries");
+    out.println();
+    out.println(cmdName + " status: Print recording state and number of captured entries");
+    out.println();
+    out.println(cmdName + " har: Write captured entries to stdout in HAR 1.2 format");
+    out.println();
+    out.println(cmdName + " import: Read a HAR 1.2 document from stdin into the log");
+  }
+}
@@ -33,7 +33,14 @@ import javax.annotation.Nullable;
  * @param <E> the class that this descriptor will be describing for {@link DocumentProvider} and
  * {@link com.facebook.stetho.inspector.protocol.module.DOM}
  */
-public abstract class AbstractChainedDescriptor<E> extends Descriptor implements ChainedDescriptor {
+public abstract class AbstractChainedDescriptor<E>
+    extends Descriptor implements ChainedDescriptor, ContentHashDescriptor {
+
+  /**
+   * Value for {@link #onGetContentHash} to return from a descriptor which doesn't add any
+   * attributes of its own.
+   */
+  protected static final int NO_ATTRIBUTES_CONTENT_HASH = 1;
 
   private Descriptor mSuper;
 
@@ -135,6 +142,34 @@ public abstract class AbstractChainedDescriptor<E> extends Descriptor implements
   protected void onGetAttributes(E element, AttributeAccumulator attributes) {
   }
 
+  @Override
+  @SuppressWarnings("unchecked")
+  public final int getContentHash(Object element) {
+    if (!(mSuper instanceof ContentHashDescriptor)) {
+      return UNKNOWN_CONTENT_HASH;
+    }
+    int superHash = ((ContentHashDescriptor) mSuper).getContentHash(element);
+    if (superHash == UNKNOWN_CONTENT_HASH) {
+      return UNKNOWN_CONTENT_HASH;
+    }
+    int hash = onGetContentHash((E) element);
+    if (hash == UNKNOWN_CONTENT_HASH) {
+      return UNKNOWN_CONTENT_HASH;
+    }
+    return 31 * superHash + hash;
+  }
+
+  /**
+   * Returns a hash of the state that {@link #onGetAttributes} derives attributes from, which is
+   * combined with the hashes of the super descriptors.  The default,
+   * {@link #UNKNOWN_CONTENT_HASH}, makes the element's attributes be re-read on every pass, so
+   * descriptors that override {@link #onGetAttributes} should override this as well.  Those that
+   * don't add attributes can return {@link #NO_ATTRIBUTES_CONTENT_HASH}.
+   */
+  protected int onGetContentHash(E element) {
+    return UNKNOWN_CONTENT_HASH;
+  }
+
   @Override
   @SuppressWarnings("unchecked")
   public final void setAttributesAsText(Object element, String text) {
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+/**
+ * Transforms one list of children into another using as few removals and insertions as possible.
+ * The protocol has no notion of moving a node, so a moved child costs a DOM.childNodeRemoved
+ * followed by a DOM.childNodeInserted, the latter of which carries the child's entire sub-tree.
+ * We avoid this for the largest possible set of children by keeping those whose relative order
+ * is unchanged: the longest increasing subsequence of their positions in the new list.
+ * <p/>
+ * Choosing the children to keep takes O(n log n) comparisons, compared to O(n^2) for searching
+ * the current list for each new child in turn.  Each of the k edits is then applied to the list
+ * in place, which for an array-backed list (as {@link Document} uses) costs O(n) apiece, so the
+ * whole reconciliation is O(n log n + n * k).  Edits are few in the common case of a handful of
+ * children changing, and the caller needs to see the list as it stands after each one in order
+ * to report it.
+ */
+final class ChildListReconciler {
+  private ChildListReconciler() {
+  }
+
+  /**
+   * Receives the edits required to reconcile the lists.  Each edit must be applied to the list
+   * being reconciled before returning.
+   */
+  interface Editor {
+    void remove(int index);
+
+    void insert(int index, Object element);
+  }
+
+  /**
+   * @param currentChildren The list to transform. It is read after each edit, but only modified
+   *     via {@code editor}.
+   * @param newChildren The desired contents of {@code currentChildren}.
+   */
+  public static void reconcile(
+      List<Object> currentChildren,
+      List<Object> newChildren,
+      Editor editor) {
+    final int currentSize = currentChildren.size();
+
+    IdentityHashMap<Object, Integer> newIndices = new IdentityHashMap<>(newChildren.size());
+    for (int i = 0, N = newChildren.size(); i < N; ++i) {
+      newIndices.put(newChildren.get(i), i);
+    }
+
+    int[] positions = new int[currentSize];
+    for (int i = 0; i < currentSize; ++i) {
+      final Integer newIndex = newIndices.get(currentChildren.get(i));
+      positions[i] = (newIndex != null) ? newIndex : -1;
+    }
+
+    boolean[] keep = findLongestIncreasingSubsequence(positions);
+
+    // Remove from the back so that the indices of the remaining removals are unaffected.
+    for (int i = currentSize - 1; i >= 0; --i) {
+      if (!keep[i]) {
+        editor.remove(i);
+      }
+    }
+
+    // What remains is a subsequence of newChildren, so we only need to fill in the gaps.
+    for (int i = 0, N = newChildren.size(); i < N; ++i) {
+      final Object newElement = newChildren.get(i);
+      if (i >= currentChildren.size() || currentChildren.get(i) != newElement) {
+        editor.insert(i, newElement);
+      }
+    }
+  }
+
+  /**
+   * @param values Sequence of values, where negative values are to be excluded.
+   * @return Flags indicating which of {@code values} are members of a longest strictly increasing
+   *     subsequence of the non-negative values.
+   */
+  //@VisibleForTesting
+  static boolean[] findLongestIncreasingSubsequence(int[] values) {
+    final int count = values.length;
+
+    // tails[k] is the index of the smallest value ending an increasing subsequence of length k+1,
+    // and predecessors[i] is the index of the element before i in the subsequence ending at i.
+    int[] tails = new int[count];
+    int[] predecessors = new int[count];
+    int length = 0;
+
+    for (int i = 0; i < count; ++i) {
+      final int value = values[i];
+      if (value < 0) {
+        continue;
+      }
+
+      int low = 0;
+      int high = length;
+      while (low < high) {
+        final int mid = (low + high) >>> 1;
+        if (values[tails[mid]] < value) {
+          low = mid + 1;
+        } else {
+          high = mid;
+        }
+      }
+
+      predecessors[i] = (low > 0) ? tails[low - 1] : -1;
+      tails[low] = i;
+      if (low == length) {
+        ++length;
+      }
+    }
+
+    boolean[] members = new boolean[count];
+    for (int i = (length > 0) ? tails[length - 1] : -1; i >= 0; i = predecessors[i]) {
+      members[i] = true;
+    }
+    return members;
+  }
+}
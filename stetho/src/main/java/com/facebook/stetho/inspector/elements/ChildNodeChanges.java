@@ -0,0 +1,91 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The child node removals and insertions that bring the DOM from one committed state of a
+ * {@link ShadowDocument} to the next, delivered in one go so that listeners can coalesce them.
+ * <p/>
+ * Every removal is ordered before every insertion.  The changes to any one parent are in the order
+ * they must be applied, and no parent's changes depend on those of another, so this is always
+ * valid; it also means that an element moving between parents is removed from its old parent
+ * before it is inserted into its new one, regardless of the order in which the parents were
+ * examined.
+ */
+public final class ChildNodeChanges {
+  private final ArrayList<Change> mRemovals = new ArrayList<>();
+  private final ArrayList<Change> mInsertions = new ArrayList<>();
+  private List<Change> mChanges;
+
+  void addRemoval(Object parentElement, int parentNodeId, Object element, int nodeId) {
+    mRemovals.add(new Change(false, parentElement, parentNodeId, element, nodeId, -1));
+    mChanges = null;
+  }
+
+  void addInsertion(
+      Object parentElement,
+      int parentNodeId,
+      Object element,
+      int nodeId,
+      int previousNodeId) {
+    mInsertions.add(
+        new Change(true, parentElement, parentNodeId, element, nodeId, previousNodeId));
+    mChanges = null;
+  }
+
+  public boolean isEmpty() {
+    return mRemovals.isEmpty() && mInsertions.isEmpty();
+  }
+
+  /**
+   * @return Removals followed by insertions.
+   */
+  public List<Change> getChanges() {
+    if (mChanges == null) {
+      ArrayList<Change> changes = new ArrayList<>(mRemovals.size() + mInsertions.size());
+      changes.addAll(mRemovals);
+      changes.addAll(mInsertions);
+      mChanges = changes;
+    }
+    return mChanges;
+  }
+
+  public static final class Change {
+    public final boolean isInsertion;
+    public final Object parentElement;
+    public final int parentNodeId;
+    public final Object element;
+    public final int nodeId;
+
+    /**
+     * For insertions, the id of the sibling which the element follows, or -1 if it's the first
+     * child.
+     */
+    public final int previousNodeId;
+
+    private Change(
+        boolean isInsertion,
+        Object parentElement,
+        int parentNodeId,
+        Object element,
+        int nodeId,
+        int previousNodeId) {
+      this.isInsertion = isInsertion;
+      this.parentElement = parentElement;
+      this.parentNodeId = parentNodeId;
+      this.element = element;
+      this.nodeId = nodeId;
+      this.previousNodeId = previousNodeId;
+    }
+  }
+}
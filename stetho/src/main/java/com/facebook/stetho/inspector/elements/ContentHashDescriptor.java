@@ -0,0 +1,33 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+/**
+ * Optional interface for a {@link NodeDescriptor} which can cheaply tell whether an element's
+ * attributes might have changed.  Descriptors which don't implement it have their attributes
+ * re-read on every pass over the element.
+ */
+public interface ContentHashDescriptor {
+  /**
+   * Returned by {@link #getContentHash} when there is no useful hash for the element, in which
+   * case its attributes are re-read.  An actual hash which happens to collide with this value
+   * merely costs an extra re-read.
+   */
+  int UNKNOWN_CONTENT_HASH = 0;
+
+  /**
+   * Returns a cheap hash of the element's state that its attributes are derived from (such as its
+   * class, id and text) along with anything else whose change is worth re-examining it for (such
+   * as its visibility and bounds).  While the hash stays the same, the element's attributes are
+   * assumed not to have changed unless the change is reported through
+   * {@link Descriptor.Host#onAttributeModified} or {@link Descriptor.Host#onAttributeRemoved}.
+   */
+  int getContentHash(Object element);
+}
@@ -18,6 +18,14 @@ import javax.annotation.Nullable;
 
 public final class DescriptorMap {
   private final Map<Class<?>, Descriptor> mMap = new IdentityHashMap<>();
+
+  /**
+   * Result of {@link #getImpl} for every class that has been looked up since {@link #endInit},
+   * including those for which it was null.  Elements come from a handful of classes, but each
+   * lookup would otherwise probe {@link #mMap} at every level of the class hierarchy.  This is
+   * only accessed from the thread that performs lookups, like the descriptors themselves.
+   */
+  private final Map<Class<?>, Descriptor> mResolvedMap = new IdentityHashMap<>();
   private boolean mIsInitializing;
   private Descriptor.Host mHost;
 
@@ -82,7 +90,13 @@ public final class DescriptorMap {
   public Descriptor get(Class<?> elementClass) {
     Util.throwIfNull(elementClass);
     Util.throwIf(mIsInitializing);
-    return getImpl(elementClass);
+
+    Descriptor descriptor = mResolvedMap.get(elementClass);
+    if (descriptor == null && !mResolvedMap.containsKey(elementClass)) {
+      descriptor = getImpl(elementClass);
+      mResolvedMap.put(elementClass, descriptor);
+    }
+    return descriptor;
   }
 
   @Nullable
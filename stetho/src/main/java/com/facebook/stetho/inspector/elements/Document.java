@@ -9,10 +9,10 @@
 
 package com.facebook.stetho.inspector.elements;
 
-import android.os.SystemClock;
 import com.facebook.stetho.common.Accumulator;
 import com.facebook.stetho.common.ArrayListAccumulator;
 import com.facebook.stetho.common.LogUtil;
+import com.facebook.stetho.common.UncheckedCallable;
 import com.facebook.stetho.inspector.helper.ObjectIdMapper;
 import com.facebook.stetho.inspector.helper.ThreadBoundProxy;
 
@@ -23,14 +23,27 @@ import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Queue;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 public final class Document extends ThreadBoundProxy {
+  private static final long UPDATE_SLICE_BUDGET_MS = 4;
+  private static final long UPDATE_SLICE_BUDGET_NANOS =
+      TimeUnit.MILLISECONDS.toNanos(UPDATE_SLICE_BUDGET_MS);
+  private static final int MAX_SLICED_UPDATE_ATTEMPTS = 2;
+
   private final DocumentProvider.Factory mFactory;
   private final ObjectIdMapper mObjectIdMapper;
   private final Queue<Object> mCachedUpdateQueue;
+  private final SearchIndex mSearchIndex;
+
+  /**
+   * Elements whose attributes the provider has reported changing, which must be captured again by
+   * the next walk even if their content hash hasn't changed.
+   */
+  private final HashSet<Object> mInvalidatedElements;
 
   private DocumentProvider mDocumentProvider;
   private ShadowDocument mShadowDocument;
@@ -38,6 +51,14 @@ public final class Document extends ThreadBoundProxy {
   private ChildEventingList mCachedChildEventingList;
   private ArrayListAccumulator<Object> mCachedChildrenAccumulator;
   private AttributeListAccumulator mCachedAttributeAccumulator;
+  private @Nullable SlicedUpdate mPendingUpdate;
+
+  /**
+   * The update whose changes are being sent to listeners, during which its elements are
+   * considered published (see {@link #isPublished}).
+   */
+  @Nullable
+  private ShadowDocument.Update mUpdateBeingApplied;
 
   @GuardedBy("this")
   private int mReferenceCounter;
@@ -50,6 +71,8 @@ public final class Document extends ThreadBoundProxy {
     mReferenceCounter = 0;
     mUpdateListeners = new UpdateListenerCollection();
     mCachedUpdateQueue = new ArrayDeque<>();
+    mSearchIndex = new SearchIndex();
+    mInvalidatedElements = new HashSet<>();
   }
 
   public synchronized void addRef() {
@@ -73,7 +96,9 @@ public final class Document extends ThreadBoundProxy {
       @Override
       public void run() {
         mShadowDocument = new ShadowDocument(mDocumentProvider.getRootElement());
-        createShadowDOMUpdate().commit();
+        SearchIndex.Batch indexBatch = new SearchIndex.Batch();
+        createShadowDOMUpdate(null /* subtreeRoots */, indexBatch).commit();
+        mSearchIndex.apply(indexBatch);
         mDocumentProvider.setListener(new ProviderListener());
       }
     });
@@ -85,8 +110,11 @@ public final class Document extends ThreadBoundProxy {
       @Override
       public void run() {
         mDocumentProvider.setListener(null);
+        cancelPendingUpdate();
         mShadowDocument = null;
         mObjectIdMapper.clear();
+        mSearchIndex.clear();
+        mInvalidatedElements.clear();
         mDocumentProvider.dispose();
         mDocumentProvider = null;
       }
@@ -123,16 +151,35 @@ public final class Document extends ThreadBoundProxy {
     mDocumentProvider.setInspectModeEnabled(enabled);
   }
 
+  public void setRenderProfilingEnabled(boolean enabled) {
+    verifyThreadAccess();
+    mDocumentProvider.setRenderProfilingEnabled(enabled);
+  }
+
   public @Nullable Integer getNodeIdForElement(Object element) {
     // We don't actually call verifyThreadAccess() for performance.
     //verifyThreadAccess();
-    return mObjectIdMapper.getIdForObject(element);
+    Integer id = mObjectIdMapper.getIdForObject(element);
+    return (id != null && isPublished(element)) ? id : null;
   }
 
   public @Nullable Object getElementForNodeId(int id) {
     // We don't actually call verifyThreadAccess() for performance.
     //verifyThreadAccess();
-    return mObjectIdMapper.getObjectForId(id);
+    Object element = mObjectIdMapper.getObjectForId(id);
+    return (element != null && isPublished(element)) ? element : null;
+  }
+
+  /**
+   * A sliced update maps the elements it walks to node ids as it goes, but they have no
+   * {@link ElementInfo} until the update is applied.  Until then they must not be handed out, or
+   * commands that run between slices would find elements that aren't in the tree.
+   */
+  private boolean isPublished(Object element) {
+    final DocumentView view = (mUpdateBeingApplied != null)
+        ? mUpdateBeingApplied
+        : mShadowDocument;
+    return view != null && view.getElementInfo(element) != null;
   }
 
   public void setAttributesAsText(Object element, String text) {
@@ -140,6 +187,23 @@ public final class Document extends ThreadBoundProxy {
     mDocumentProvider.setAttributesAsText(element, text);
   }
 
+  /**
+   * @return A report for each drawn element of the last committed tree, sorted by
+   *     {@code sortOrder}.
+   */
+  public List<RenderAnalysis.NodeReport> analyzeRendering(RenderAnalysis.SortOrder sortOrder) {
+    verifyThreadAccess();
+    return RenderAnalysis.analyze(
+        mShadowDocument,
+        new RenderAnalysis.FlagsProvider() {
+          @Override
+          public int getRenderFlags(Object element) {
+            return mDocumentProvider.getRenderFlags(element);
+          }
+        },
+        sortOrder);
+  }
+
   public DocumentView getDocumentView() {
     verifyThreadAccess();
     return mShadowDocument;
@@ -165,49 +229,124 @@ public final class Document extends ThreadBoundProxy {
     return rootElement;
   }
 
-  public void findMatchingElements(String query, Accumulator<Integer> matchedIds) {
-    verifyThreadAccess();
-
-    final Pattern queryPattern = Pattern.compile(Pattern.quote(query), Pattern.CASE_INSENSITIVE);
-    final Object rootElement = mDocumentProvider.getRootElement();
+  /**
+   * Finds the nodes other than the root whose name or attributes contain {@code query}, ignoring
+   * case.  This is answered from an index of the tree as of the last update, so it doesn't touch
+   * the live views; only putting the matches in order visits the shadow tree.
+   *
+   * @return The ids of matching nodes in document order.
+   */
+  public int[] findMatchingElements(String query) {
+    final int[] matchedIds = mSearchIndex.find(query);
+    if (matchedIds.length == 0) {
+      return matchedIds;
+    }
 
-    findMatches(rootElement, queryPattern, matchedIds);
+    return postAndWait(new UncheckedCallable<int[]>() {
+      @Override
+      public int[] call() {
+        return sortInDocumentOrder(matchedIds);
+      }
+    });
   }
 
-  private void findMatches(Object element, Pattern queryPattern, Accumulator<Integer> matchedIds) {
-    final ElementInfo info = mShadowDocument.getElementInfo(element);
+  /**
+   * Orders elements the way a pre-order walk of the shadow tree would visit them (as the peer
+   * expects to step through search results), by comparing the paths of child indices leading to
+   * them from the root.  Elements which are no longer in the tree, and the root, are dropped.
+   */
+  private int[] sortInDocumentOrder(int[] nodeIds) {
+    if (mShadowDocument == null) {
+      return new int[0];
+    }
+
+    final Object rootElement = mShadowDocument.getRootElement();
+    final IdentityHashMap<Object, Integer> indicesInParent = new IdentityHashMap<>();
+    final ArrayList<NodePath> paths = new ArrayList<>(nodeIds.length);
+    for (int nodeId : nodeIds) {
+      final Object element = mObjectIdMapper.getObjectForId(nodeId);
+      if (element == null || element == rootElement) {
+        continue;
+      }
+      final int[] path = getPathFromRoot(element, indicesInParent);
+      if (path != null) {
+        paths.add(new NodePath(nodeId, path));
+      }
+    }
+
+    Collections.sort(paths);
+    int[] sortedIds = new int[paths.size()];
+    for (int i = 0, N = paths.size(); i < N; ++i) {
+      sortedIds[i] = paths.get(i).nodeId;
+    }
+    return sortedIds;
+  }
 
-    for (int i = 0, size = info.children.size(); i < size; i++) {
-      final Object childElement = info.children.get(i);
+  /**
+   * @param indicesInParent Cache of each element's index among its siblings, which is filled in
+   *     for all of a parent's children at once, so that wide parents are only scanned once.
+   * @return The index of each element among its siblings on the way from the root to
+   *     {@code element}, or null if {@code element} isn't in the shadow tree.
+   */
+  @Nullable
+  private int[] getPathFromRoot(Object element, IdentityHashMap<Object, Integer> indicesInParent) {
+    final Object rootElement = mShadowDocument.getRootElement();
+    final ArrayList<Integer> reversedPath = new ArrayList<>();
+    while (element != rootElement) {
+      final ElementInfo info = mShadowDocument.getElementInfo(element);
+      if (info == null || info.parentElement == null) {
+        return null;
+      }
 
-      if (doesElementMatch(childElement, queryPattern)) {
-        matchedIds.store(mObjectIdMapper.getIdForObject(childElement));
+      Integer index = indicesInParent.get(element);
+      if (index == null) {
+        final List<Object> siblings = mShadowDocument.getElementInfo(info.parentElement).children;
+        for (int i = 0, N = siblings.size(); i < N; ++i) {
+          indicesInParent.put(siblings.get(i), i);
+        }
+        index = indicesInParent.get(element);
+        if (index == null) {
+          return null;
+        }
       }
 
-      findMatches(childElement, queryPattern, matchedIds);
+      reversedPath.add(index);
+      element = info.parentElement;
+    }
+
+    final int depth = reversedPath.size();
+    final int[] path = new int[depth];
+    for (int i = 0; i < depth; ++i) {
+      path[i] = reversedPath.get(depth - 1 - i);
     }
+    return path;
   }
 
-  private boolean doesElementMatch(Object element, Pattern queryPattern) {
-    AttributeListAccumulator accumulator = acquireCachedAttributeAccumulator();
-    NodeDescriptor descriptor = mDocumentProvider.getNodeDescriptor(element);
+  private static final class NodePath implements Comparable<NodePath> {
+    public final int nodeId;
+    public final int[] path;
 
-    descriptor.getAttributes(element, accumulator);
+    public NodePath(int nodeId, int[] path) {
+      this.nodeId = nodeId;
+      this.path = path;
+    }
 
-    for (int i = 0, N = accumulator.size(); i < N; i++) {
-      if (queryPattern.matcher(accumulator.get(i)).find()) {
-        releaseCachedAttributeAccumulator(accumulator);
-        return true;
+    @Override
+    public int compareTo(NodePath other) {
+      final int length = Math.min(path.length, other.path.length);
+      for (int i = 0; i < length; ++i) {
+        if (path[i] != other.path[i]) {
+          return (path[i] < other.path[i]) ? -1 : 1;
+        }
       }
+      // An ancestor comes before its descendants.
+      return path.length - other.path.length;
     }
-
-    releaseCachedAttributeAccumulator(accumulator);
-    return queryPattern.matcher(descriptor.getNodeName(element)).find();
   }
 
   private ChildEventingList acquireChildEventingList(
       Object parentElement,
-      DocumentView documentView) {
+      ChildNodeChanges childNodeChanges) {
     ChildEventingList childEventingList = mCachedChildEventingList;
 
     if (childEventingList == null) {
@@ -216,7 +355,7 @@ public final class Document extends ThreadBoundProxy {
 
     mCachedChildEventingList = null;
 
-    childEventingList.acquire(parentElement, documentView);
+    childEventingList.acquire(parentElement, childNodeChanges);
     return childEventingList;
   }
 
@@ -234,7 +373,7 @@ public final class Document extends ThreadBoundProxy {
       accumulator = new AttributeListAccumulator();
     }
 
-    mCachedChildrenAccumulator = null;
+    mCachedAttributeAccumulator = null;
 
     return accumulator;
   }
@@ -263,57 +402,306 @@ public final class Document extends ThreadBoundProxy {
     }
   }
 
-  private ShadowDocument.Update createShadowDOMUpdate() {
+  /**
+   * Builds an update synchronously, in one pass of the UI thread.
+   *
+   * @param subtreeRoots Elements whose sub-trees should be re-examined, or null to re-examine the
+   *     entire tree.  Elements outside of these sub-trees retain their current children.
+   * @param indexBatch Receives the searchable text of each element examined.
+   */
+  private ShadowDocument.Update createShadowDOMUpdate(
+      @Nullable List<Object> subtreeRoots,
+      SearchIndex.Batch indexBatch) {
     verifyThreadAccess();
 
+    ShadowDocument.UpdateBuilder updateBuilder = beginShadowDOMUpdate(subtreeRoots);
+    continueShadowDOMUpdate(
+        updateBuilder,
+        Long.MAX_VALUE /* deadlineNanos */,
+        null /* newlyMappedElements */,
+        indexBatch,
+        null /* revalidatedElements */,
+        null /* attributeChangedElements */);
+    return updateBuilder.build();
+  }
+
+  private ShadowDocument.UpdateBuilder beginShadowDOMUpdate(@Nullable List<Object> subtreeRoots) {
     if (mDocumentProvider.getRootElement() != mShadowDocument.getRootElement()) {
       throw new IllegalStateException();
     }
 
-    ArrayListAccumulator<Object> childrenAccumulator = acquireChildrenAccumulator();
+    ShadowDocument.UpdateBuilder updateBuilder = mShadowDocument.beginUpdate(subtreeRoots);
 
-    ShadowDocument.UpdateBuilder updateBuilder = mShadowDocument.beginUpdate();
-    mCachedUpdateQueue.add(mDocumentProvider.getRootElement());
+    // This queue stores pairs of elements and whether they're within a dirty sub-tree,
+    // [element, isSubtreeDirty].
+    final Object rootElement = mDocumentProvider.getRootElement();
+    mCachedUpdateQueue.clear();
+    mCachedUpdateQueue.add(rootElement);
+    mCachedUpdateQueue.add(updateBuilder.isSubtreeDirty(rootElement));
+
+    return updateBuilder;
+  }
+
+  /**
+   * Continues the breadth-first walk started by {@link #beginShadowDOMUpdate} until either it is
+   * complete or {@code deadlineNanos} (as per {@link System#nanoTime()}) has passed.
+   *
+   * @param newlyMappedElements If non-null, receives every element that was added to
+   *     {@link #mObjectIdMapper} by this call.
+   * @param indexBatch Receives the searchable text of each element examined whose attributes
+   *     have changed.
+   * @param revalidatedElements If non-null, receives every element that was removed from
+   *     {@link #mInvalidatedElements} by this call.
+   * @param attributeChangedElements If non-null, receives every element whose attributes changed
+   *     without the provider having reported it.
+   * @return true if the walk is complete.
+   */
+  private boolean continueShadowDOMUpdate(
+      ShadowDocument.UpdateBuilder updateBuilder,
+      long deadlineNanos,
+      @Nullable List<Object> newlyMappedElements,
+      SearchIndex.Batch indexBatch,
+      @Nullable List<Object> revalidatedElements,
+      @Nullable List<Object> attributeChangedElements) {
+    ArrayListAccumulator<Object> childrenAccumulator = acquireChildrenAccumulator();
 
     while (!mCachedUpdateQueue.isEmpty()) {
       final Object element = mCachedUpdateQueue.remove();
+      final boolean isSubtreeDirty = (Boolean) mCachedUpdateQueue.remove();
       NodeDescriptor descriptor = mDocumentProvider.getNodeDescriptor(element);
-      mObjectIdMapper.putObject(element);
+      if (newlyMappedElements != null && !mObjectIdMapper.containsObject(element)) {
+        newlyMappedElements.add(element);
+      }
+      final int nodeId = mObjectIdMapper.putObject(element);
       descriptor.getChildren(element, childrenAccumulator);
       updateBuilder.setElementChildren(element, childrenAccumulator);
+
+      // Snapshot the attributes while we're here so that they needn't be queried from the live
+      // element when serializing or searching it.  They're only queried again if the element's
+      // content hash changed or the provider told us they did.
+      final int contentHash = (descriptor instanceof ContentHashDescriptor)
+          ? ((ContentHashDescriptor) descriptor).getContentHash(element)
+          : ContentHashDescriptor.UNKNOWN_CONTENT_HASH;
+      final boolean isInvalidated = mInvalidatedElements.remove(element);
+      if (isInvalidated && revalidatedElements != null) {
+        revalidatedElements.add(element);
+      }
+      if (isInvalidated ||
+          contentHash == ContentHashDescriptor.UNKNOWN_CONTENT_HASH ||
+          !updateBuilder.hasElementAttributes(element, contentHash)) {
+        AttributeListAccumulator attributeAccumulator = acquireCachedAttributeAccumulator();
+        descriptor.getAttributes(element, attributeAccumulator);
+        if (updateBuilder.setElementAttributes(element, contentHash, attributeAccumulator)) {
+          indexBatch.put(
+              nodeId,
+              SearchIndex.getSearchableText(descriptor.getNodeName(element), attributeAccumulator));
+          if (!isInvalidated && attributeChangedElements != null) {
+            attributeChangedElements.add(element);
+          }
+        }
+        releaseCachedAttributeAccumulator(attributeAccumulator);
+      }
       for (int i = 0, N = childrenAccumulator.size(); i < N; ++i) {
-        mCachedUpdateQueue.add(childrenAccumulator.get(i));
+        final Object childElement = childrenAccumulator.get(i);
+        final boolean isChildSubtreeDirty =
+            isSubtreeDirty || updateBuilder.isSubtreeDirty(childElement);
+        if (isChildSubtreeDirty || updateBuilder.shouldVisitSubtree(childElement)) {
+          mCachedUpdateQueue.add(childElement);
+          mCachedUpdateQueue.add(isChildSubtreeDirty);
+        }
       }
       childrenAccumulator.clear();
+
+      if (System.nanoTime() >= deadlineNanos) {
+        break;
+      }
     }
 
     releaseChildrenAccumulator(childrenAccumulator);
 
-    return updateBuilder.build();
+    return mCachedUpdateQueue.isEmpty();
+  }
+
+  private void updateTree(@Nullable List<Object> subtreeRoots) {
+    if (mPendingUpdate != null) {
+      // We'll get to it once the update in progress has been applied.
+      mPendingUpdate.mergePendingChanges(subtreeRoots);
+      return;
+    }
+
+    mPendingUpdate = new SlicedUpdate(subtreeRoots, 0 /* attempt */);
+    mPendingUpdate.schedule();
+  }
+
+  private void cancelPendingUpdate() {
+    if (mPendingUpdate != null) {
+      mPendingUpdate.cancel();
+      mPendingUpdate = null;
+    }
   }
 
-  private void updateTree() {
-    long startTimeMs = SystemClock.elapsedRealtime();
+  /**
+   * Walks the tree in slices of at most {@link #UPDATE_SLICE_BUDGET_MS} so that large trees
+   * don't cause the UI thread to miss frames, then applies the resulting update in one go.
+   * Since the tree may change between slices, the update is checked for consistency before it is
+   * applied, and retried if necessary.
+   */
+  private final class SlicedUpdate implements Runnable {
+    private final ShadowDocument.UpdateBuilder mUpdateBuilder;
+    private final int mAttempt;
+    private final long mStartTimeNanos;
+    private final ArrayList<Object> mNewlyMappedElements = new ArrayList<>();
+    private final SearchIndex.Batch mIndexBatch = new SearchIndex.Batch();
+    private final ArrayList<Object> mRevalidatedElements = new ArrayList<>();
+    private final ArrayList<Object> mAttributeChangedElements = new ArrayList<>();
+    private int mSliceCount;
+
+    @Nullable
+    private List<Object> mPendingSubtreeRoots;
+    private boolean mHasPendingChanges;
+
+    public SlicedUpdate(@Nullable List<Object> subtreeRoots, int attempt) {
+      mUpdateBuilder = beginShadowDOMUpdate(subtreeRoots);
+      mAttempt = attempt;
+      mStartTimeNanos = System.nanoTime();
+    }
 
-    ShadowDocument.Update domUpdate = createShadowDOMUpdate();
-    boolean isEmpty = domUpdate.isEmpty();
-    if (isEmpty) {
-      domUpdate.abandon();
-    } else {
-      applyDOMUpdate(domUpdate);
+    public void schedule() {
+      postDelayed(this, 0);
     }
 
-    long deltaMs = SystemClock.elapsedRealtime() - startTimeMs;
-    LogUtil.d(
-        "DOM.updateTree() completed in %s ms%s",
-        Long.toString(deltaMs),
-        isEmpty ? " (no changes)" : "");
+    /**
+     * Records changes reported while this update is in progress so that they can be picked up by
+     * a follow-up update.
+     */
+    public void mergePendingChanges(@Nullable List<Object> subtreeRoots) {
+      if (!mHasPendingChanges) {
+        mHasPendingChanges = true;
+        mPendingSubtreeRoots = (subtreeRoots != null) ? new ArrayList<>(subtreeRoots) : null;
+      } else if (mPendingSubtreeRoots != null) {
+        if (subtreeRoots != null) {
+          mPendingSubtreeRoots.addAll(subtreeRoots);
+        } else {
+          mPendingSubtreeRoots = null;
+        }
+      }
+    }
+
+    public void cancel() {
+      removeCallbacks(this);
+      abandon();
+    }
+
+    private void abandon() {
+      mUpdateBuilder.build().abandon();
+      mCachedUpdateQueue.clear();
+
+      // Elements which never made it into the committed tree won't be garbage collected by a
+      // later update, so we need to unhook them now.
+      for (int i = 0, N = mNewlyMappedElements.size(); i < N; ++i) {
+        final Object element = mNewlyMappedElements.get(i);
+        if (mShadowDocument.getElementInfo(element) == null) {
+          mObjectIdMapper.removeObject(element);
+        }
+      }
+
+      // The attributes captured for these are being thrown away, so the next walk needs to
+      // capture them again.
+      mInvalidatedElements.addAll(mRevalidatedElements);
+    }
+
+    @Override
+    public void run() {
+      if (mPendingUpdate != this) {
+        return;
+      }
+
+      ++mSliceCount;
+      long deadlineNanos = (mAttempt < MAX_SLICED_UPDATE_ATTEMPTS)
+          ? System.nanoTime() + UPDATE_SLICE_BUDGET_NANOS
+          : Long.MAX_VALUE;
+      if (!continueShadowDOMUpdate(
+          mUpdateBuilder,
+          deadlineNanos,
+          mNewlyMappedElements,
+          mIndexBatch,
+          mRevalidatedElements,
+          mAttributeChangedElements)) {
+        schedule();
+        return;
+      }
+
+      mPendingUpdate = null;
+
+      ShadowDocument.Update domUpdate = mUpdateBuilder.build();
+      if (!domUpdate.isConsistent()) {
+        // The tree changed underneath us part way through the walk, so we have a mix of old and
+        // new views of it. Start over; the final attempt is done in a single slice, which
+        // guarantees a consistent result.
+        LogUtil.d("DOM.updateTree() found inconsistent tree, retrying");
+        abandon();
+        mergePendingChanges(null /* subtreeRoots */);
+        scheduleFollowUp(mAttempt + 1);
+        return;
+      }
+
+      boolean isEmpty = domUpdate.isEmpty();
+      if (isEmpty) {
+        domUpdate.abandon();
+      } else {
+        applyDOMUpdate(domUpdate, mIndexBatch, mAttributeChangedElements);
+      }
+
+      // Even if the structure didn't change, the attributes of the elements we visited may have.
+      mSearchIndex.apply(mIndexBatch);
+
+      long deltaMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - mStartTimeNanos);
+      LogUtil.d(
+          "DOM.updateTree() completed in %s ms over %s slices%s",
+          Long.toString(deltaMs),
+          Integer.toString(mSliceCount),
+          isEmpty ? " (no changes)" : "");
+
+      scheduleFollowUp(0 /* attempt */);
+    }
+
+    private void scheduleFollowUp(int attempt) {
+      if (mHasPendingChanges) {
+        mPendingUpdate = new SlicedUpdate(mPendingSubtreeRoots, attempt);
+        mPendingUpdate.schedule();
+      }
+    }
   }
-  
-  private void applyDOMUpdate(final ShadowDocument.Update domUpdate) {
+
+  /**
+   * @param indexBatch Receives the removal of garbage elements from the search index.
+   * @param attributeChangedElements Elements whose attributes changed without the provider having
+   *     reported it, for which attribute events are sent.
+   */
+  private void applyDOMUpdate(
+      final ShadowDocument.Update domUpdate,
+      final SearchIndex.Batch indexBatch,
+      List<Object> attributeChangedElements) {
     // TODO: it'd be nice if we could delegate our calls into mPeerManager.sendNotificationToPeers()
     //       to a background thread so as to offload the UI from JSON serialization stuff
 
+    mUpdateBeingApplied = domUpdate;
+    try {
+      dispatchDOMUpdate(domUpdate, indexBatch, attributeChangedElements);
+    } finally {
+      mUpdateBeingApplied = null;
+    }
+    domUpdate.commit();
+  }
+
+  private void dispatchDOMUpdate(
+      final ShadowDocument.Update domUpdate,
+      final SearchIndex.Batch indexBatch,
+      List<Object> attributeChangedElements) {
+    // Child node changes are collected and delivered together once we're done, so that listeners
+    // can coalesce them.
+    final ChildNodeChanges childNodeChanges = new ChildNodeChanges();
+
     // First, any elements that have been disconnected from the tree, and any elements in those
     // sub-trees which have not been reconnected to the tree, should be garbage collected.
     // We do this first so that we can tag nodes as garbage by removing them from mObjectIdMapper
@@ -333,11 +721,13 @@ public final class Document extends ThreadBoundProxy {
           ElementInfo oldElementInfo = mShadowDocument.getElementInfo(element);
           int parentNodeId = mObjectIdMapper.getIdForObject(oldElementInfo.parentElement);
           int nodeId = mObjectIdMapper.getIdForObject(element);
-          mUpdateListeners.onChildNodeRemoved(parentNodeId, nodeId);
+          childNodeChanges.addRemoval(oldElementInfo.parentElement, parentNodeId, element, nodeId);
         }
 
         // All garbage elements should be unhooked.
+        indexBatch.remove(mObjectIdMapper.getIdForObject(element));
         mObjectIdMapper.removeObject(element);
+        mInvalidatedElements.remove(element);
       }
     });
 
@@ -345,6 +735,8 @@ public final class Document extends ThreadBoundProxy {
     domUpdate.getChangedElements(new Accumulator<Object>() {
       private final HashSet<Object> domInsertedElements = new HashSet<>();
 
+      // Inserted elements are sent along with their children as they are at the end of this
+      // update, so their own changes needn't be sent.
       private Accumulator<Object> insertedElements = new Accumulator<Object>() {
         @Override
         public void store(Object element) {
@@ -365,7 +757,7 @@ public final class Document extends ThreadBoundProxy {
         }
 
         if (domInsertedElements.contains(element)) {
-          // This element was already transmitted in its entirety by a DOM.childNodeInserted event.
+          // This element will be transmitted in its entirety by a DOM.childNodeInserted event.
           // Trying to send any further updates about it is both unnecessary and incorrect (we'd
           // end up with duplicated elements and really bad performance).
           return;
@@ -382,7 +774,7 @@ public final class Document extends ThreadBoundProxy {
 
         // This list is representative of Chrome's view of the DOM.
         // We need to sync up Chrome with newChildren.
-        ChildEventingList domChildren = acquireChildEventingList(element, domUpdate);
+        ChildEventingList domChildren = acquireChildEventingList(element, childNodeChanges);
         for (int i = 0, N = oldChildren.size(); i < N; ++i) {
           final Object childElement = oldChildren.get(i);
           if (mObjectIdMapper.containsObject(childElement)) {
@@ -394,78 +786,95 @@ public final class Document extends ThreadBoundProxy {
       }
     });
 
-    domUpdate.commit();
-  }
-
-  private static void updateDOMChildren(
-      ChildEventingList domChildren,
-      List<Object> newChildren,
-      Accumulator<Object> insertedElements) {
-    int index = 0;
-    while (index <= domChildren.size()) {
-      // Insert new items that were added to the end of the list
-      if (index == domChildren.size()) {
-        if (index == newChildren.size()) {
-          break;
-        }
+    if (!childNodeChanges.isEmpty()) {
+      mUpdateListeners.onChildNodesChanged(domUpdate, childNodeChanges);
+    }
 
-        final Object newElement = newChildren.get(index);
-        domChildren.addWithEvent(index, newElement, insertedElements);
-        ++index;
+    for (int i = 0, N = attributeChangedElements.size(); i < N; ++i) {
+      final Object element = attributeChangedElements.get(i);
+      if (!mObjectIdMapper.containsObject(element)) {
+        // Garbage.
         continue;
       }
 
-      // Remove old items that were removed from the end of the list
-      if (index == newChildren.size()) {
-        domChildren.removeWithEvent(index);
-        continue;
+      // Elements that weren't in the tree before are sent with their attributes in full.
+      final ElementInfo oldElementInfo = mShadowDocument.getElementInfo(element);
+      if (oldElementInfo != null && oldElementInfo.attributes != null) {
+        dispatchAttributeChanges(
+            element,
+            oldElementInfo.attributes,
+            domUpdate.getElementInfo(element).attributes);
       }
+    }
+  }
 
-      final Object domElement = domChildren.get(index);
-      final Object newElement = newChildren.get(index);
-
-      // This slot has exactly what we need to have here.
-      if (domElement == newElement) {
-        ++index;
-        continue;
+  /**
+   * Reports the difference between two attribute snapshots (alternating names and values) as
+   * individual modifications and removals.
+   */
+  private void dispatchAttributeChanges(
+      Object element,
+      List<String> oldAttributes,
+      List<String> newAttributes) {
+    for (int i = 0, N = newAttributes.size(); i < N; i += 2) {
+      final String name = newAttributes.get(i);
+      final String value = newAttributes.get(i + 1);
+      final int oldIndex = indexOfAttribute(oldAttributes, name);
+      if (oldIndex < 0 || !value.equals(oldAttributes.get(oldIndex + 1))) {
+        mUpdateListeners.onAttributeModified(element, name, value);
       }
+    }
 
-      int newElementDomIndex = domChildren.indexOf(newElement);
-      if (newElementDomIndex == -1) {
-        domChildren.addWithEvent(index, newElement, insertedElements);
-        ++index;
-        continue;
+    for (int i = 0, N = oldAttributes.size(); i < N; i += 2) {
+      final String name = oldAttributes.get(i);
+      if (indexOfAttribute(newAttributes, name) < 0) {
+        mUpdateListeners.onAttributeRemoved(element, name);
       }
+    }
+  }
 
-      // TODO: use longest common substring to decide whether to
-      //       1) remove(newElementDomIndex)-then-add(index), or
-      //       2) remove(index) and let a subsequent loop iteration do add() (that is, when index
-      //          catches up the current value of newElementDomIndex)
-      //       Neither one of these is the best strategy -- it depends on context.
+  private static int indexOfAttribute(List<String> attributes, String name) {
+    for (int i = 0, N = attributes.size(); i < N; i += 2) {
+      if (attributes.get(i).equals(name)) {
+        return i;
+      }
+    }
+    return -1;
+  }
 
-      domChildren.removeWithEvent(newElementDomIndex);
-      domChildren.addWithEvent(index, newElement, insertedElements);
+  private static void updateDOMChildren(
+      final ChildEventingList domChildren,
+      List<Object> newChildren,
+      final Accumulator<Object> insertedElements) {
+    ChildListReconciler.reconcile(domChildren, newChildren, new ChildListReconciler.Editor() {
+      @Override
+      public void remove(int index) {
+        domChildren.removeWithEvent(index);
+      }
 
-      ++index;
-    }
+      @Override
+      public void insert(int index, Object element) {
+        domChildren.addWithEvent(index, element, insertedElements);
+      }
+    });
   }
 
   /**
-   * A private implementation of {@link List} that transmits DOM changes to Chrome.
+   * A private implementation of {@link List} that records DOM changes to be transmitted to Chrome.
    */
   private final class ChildEventingList extends ArrayList<Object> {
     private Object mParentElement = null;
     private int mParentNodeId = -1;
-    private DocumentView mDocumentView;
+    private ChildNodeChanges mChildNodeChanges;
 
-    public void acquire(Object parentElement, DocumentView documentView) {
+    public void acquire(Object parentElement, ChildNodeChanges childNodeChanges) {
       mParentElement = parentElement;
 
       mParentNodeId = (mParentElement == null)
           ? -1
           : mObjectIdMapper.getIdForObject(mParentElement);
 
-      mDocumentView = documentView;
+      mChildNodeChanges = childNodeChanges;
     }
 
     public void release() {
@@ -473,7 +882,7 @@ public final class Document extends ThreadBoundProxy {
 
       mParentElement = null;
       mParentNodeId = -1;
-      mDocumentView = null;
+      mChildNodeChanges = null;
     }
 
     public void addWithEvent(int index, Object element, Accumulator<Object> insertedElements) {
@@ -485,18 +894,19 @@ public final class Document extends ThreadBoundProxy {
 
       add(index, element);
 
-      mUpdateListeners.onChildNodeInserted(
-          mDocumentView,
-          element,
+      mChildNodeChanges.addInsertion(
+          mParentElement,
           mParentNodeId,
-          previousNodeId,
-          insertedElements);
+          element,
+          mObjectIdMapper.getIdForObject(element),
+          previousNodeId);
+      insertedElements.store(element);
     }
 
     public void removeWithEvent(int index) {
       Object element = remove(index);
       int nodeId = mObjectIdMapper.getIdForObject(element);
-      mUpdateListeners.onChildNodeRemoved(mParentNodeId, nodeId);
+      mChildNodeChanges.addRemoval(mParentElement, mParentNodeId, element, nodeId);
     }
   }
 
@@ -560,21 +970,9 @@ public final class Document extends ThreadBoundProxy {
     }
 
     @Override
-    public void onChildNodeRemoved(int parentNodeId, int nodeId) {
-      for (UpdateListener listener : getListenersSnapshot()) {
-        listener.onChildNodeRemoved(parentNodeId, nodeId);
-      }
-    }
-
-    @Override
-    public void onChildNodeInserted(
-        DocumentView view,
-        Object element,
-        int parentNodeId,
-        int previousNodeId,
-        Accumulator<Object> insertedItems) {
+    public void onChildNodesChanged(DocumentView view, ChildNodeChanges changes) {
       for (UpdateListener listener : getListenersSnapshot()) {
-        listener.onChildNodeInserted(view, element, parentNodeId, previousNodeId, insertedItems);
+        listener.onChildNodesChanged(view, changes);
       }
     }
   }
@@ -586,16 +984,10 @@ public final class Document extends ThreadBoundProxy {
 
     void onInspectRequested(Object element);
 
-    void onChildNodeRemoved(
-        int parentNodeId,
-        int nodeId);
-
-    void onChildNodeInserted(
-        DocumentView view,
-        Object element,
-        int parentNodeId,
-        int previousNodeId,
-        Accumulator<Object> insertedItems);
+    /**
+     * @param view The new state of the tree, including {@code changes}.
+     */
+    void onChildNodesChanged(DocumentView view, ChildNodeChanges changes);
   }
 
   private final class DOMObjectIdMapper extends ObjectIdMapper {
@@ -619,18 +1011,25 @@ public final class Document extends ThreadBoundProxy {
   private final class ProviderListener implements DocumentProvider.Listener {
     @Override
     public void onPossiblyChanged() {
-      updateTree();
+      updateTree(null /* subtreeRoots */);
+    }
+
+    @Override
+    public void onSubtreesPossiblyChanged(List<Object> subtreeRoots) {
+      updateTree(subtreeRoots);
     }
 
     @Override
     public void onAttributeModified(Object element, String name, String value) {
       verifyThreadAccess();
+      invalidateAttributes(element);
       mUpdateListeners.onAttributeModified(element, name, value);
     }
 
     @Override
     public void onAttributeRemoved(Object element, String name) {
       verifyThreadAccess();
+      invalidateAttributes(element);
       mUpdateListeners.onAttributeRemoved(element, name);
     }
 
@@ -639,6 +1038,13 @@ public final class Document extends ThreadBoundProxy {
       verifyThreadAccess();
       mUpdateListeners.onInspectRequested(element);
     }
+
+    private void invalidateAttributes(Object element) {
+      // The next walk re-captures the element's attribute snapshot.  The change has already been
+      // reported, so it won't be reported again.
+      mInvalidatedElements.add(element);
+      updateTree(Collections.singletonList(element));
+    }
   }
 
   public static final class AttributeListAccumulator
@@ -13,6 +13,8 @@ import com.facebook.stetho.common.ThreadBound;
 
 import javax.annotation.Nullable;
 
+import java.util.List;
+
 public interface DocumentProvider extends ThreadBound {
   void setListener(Listener listener);
 
@@ -30,15 +32,37 @@ public interface DocumentProvider extends ThreadBound {
 
   void setInspectModeEnabled(boolean enabled);
 
+  /**
+   * Enables or disables periodic measurement of what each element costs to render, reported
+   * through element attributes and highlight colors.
+   */
+  void setRenderProfilingEnabled(boolean enabled);
+
   void setAttributesAsText(Object element, String text);
 
+  /**
+   * @return A combination of the {@code FLAG_*} constants in {@link RenderAnalysis} describing
+   *     how {@code element} is drawn.
+   */
+  int getRenderFlags(Object element);
+
   interface Factory extends ThreadBound {
     DocumentProvider create();
   }
 
   interface Listener {
+    /**
+     * Anything in the tree may have changed, including the set of top-level elements.
+     */
     void onPossiblyChanged();
 
+    /**
+     * Only the sub-trees rooted at the given elements may have changed.  The root elements
+     * themselves are expected to have been reported to the listener previously; any that were not
+     * will cause the whole tree to be re-examined.
+     */
+    void onSubtreesPossiblyChanged(List<Object> subtreeRoots);
+
     void onAttributeModified(
         Object element,
         String name,
@@ -12,6 +12,7 @@ package com.facebook.stetho.inspector.elements;
 import com.facebook.stetho.common.ListUtil;
 import com.facebook.stetho.common.Util;
 
+import javax.annotation.Nullable;
 import javax.annotation.concurrent.Immutable;
 
 import java.util.List;
@@ -22,13 +23,51 @@ public final class ElementInfo {
   public final Object parentElement;
   public final List<Object> children;
 
+  /**
+   * Snapshot of the element's attributes as alternating names and values, as captured by the
+   * last walk of the tree to visit the element, or null if it hasn't been captured.  Being
+   * immutable, this may be read from any thread.
+   */
+  @Nullable
+  public final List<String> attributes;
+
+  /**
+   * Incremented each time {@link #attributes} changes.
+   */
+  public final int attributesVersion;
+
+  /**
+   * The {@link ContentHashDescriptor#getContentHash content hash} of the element when {@link #attributes}
+   * was last checked against it.  Only meaningful if {@link #attributes} is non-null.
+   */
+  public final int contentHash;
+
   public ElementInfo(
       Object element,
       Object parentElement,
       List<Object> children) {
+    this(
+        element,
+        parentElement,
+        children,
+        null /* attributes */,
+        0 /* attributesVersion */,
+        0 /* contentHash */);
+  }
+
+  public ElementInfo(
+      Object element,
+      Object parentElement,
+      List<Object> children,
+      @Nullable List<String> attributes,
+      int attributesVersion,
+      int contentHash) {
     this.element = Util.throwIfNull(element);
     this.parentElement = parentElement;
     this.children = ListUtil.copyToImmutableList(children);
+    this.attributes = (attributes != null) ? ListUtil.copyToImmutableList(attributes) : null;
+    this.attributesVersion = attributesVersion;
+    this.contentHash = contentHash;
   }
 
   @Override
@@ -41,7 +80,8 @@ public final class ElementInfo {
       ElementInfo other = (ElementInfo) o;
       return this.element == other.element
           && this.parentElement == other.parentElement
-          && ListUtil.identityEquals(this.children, other.children);
+          && ListUtil.identityEquals(this.children, other.children)
+          && this.attributesVersion == other.attributesVersion;
     }
 
     return false;
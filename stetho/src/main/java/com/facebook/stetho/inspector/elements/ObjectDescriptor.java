@@ -11,7 +11,7 @@ package com.facebook.stetho.inspector.elements;
 
 import com.facebook.stetho.common.Accumulator;
 
-public final class ObjectDescriptor extends Descriptor {
+public final class ObjectDescriptor extends Descriptor implements ContentHashDescriptor {
   @Override
   public void hook(Object element) {
   }
@@ -48,6 +48,11 @@ public final class ObjectDescriptor extends Descriptor {
   public void getAttributes(Object element, AttributeAccumulator attributes) {
   }
 
+  @Override
+  public int getContentHash(Object element) {
+    return element.getClass().hashCode();
+  }
+
   @Override
   public void setAttributesAsText(Object element, String text) {
   }
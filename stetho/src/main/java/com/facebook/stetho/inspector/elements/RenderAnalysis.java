@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Finds deep and overdrawn parts of the tree by walking a {@link DocumentView}.  Only elements
+ * that draw (as reported by a {@link FlagsProvider}) are reported or counted; others, such as
+ * activities and windows, are passed through.
+ * <p/>
+ * Descendants of a hidden element don't draw, so they aren't reported and only contribute to
+ * {@link NodeReport#hiddenCount}.
+ */
+public final class RenderAnalysis {
+  /**
+   * The element is drawn, e.g. it's a View.
+   */
+  public static final int FLAG_DRAWS = 1;
+
+  /**
+   * The element draws a background that completely hides whatever is beneath it.
+   */
+  public static final int FLAG_OPAQUE_BACKGROUND = 1 << 1;
+
+  /**
+   * The element is in the tree but not visible, e.g. a View that's {@code GONE} or
+   * {@code INVISIBLE}.
+   */
+  public static final int FLAG_HIDDEN = 1 << 2;
+
+  public interface FlagsProvider {
+    /**
+     * @return A combination of the {@code FLAG_*} constants in {@link RenderAnalysis}.
+     */
+    int getRenderFlags(Object element);
+  }
+
+  public enum SortOrder {
+    OVERDRAW,
+    DEPTH,
+    HIDDEN_COUNT
+  }
+
+  public static final class NodeReport {
+    public final Object element;
+
+    /**
+     * The number of drawn ancestors.
+     */
+    public final int depth;
+
+    /**
+     * The number of ancestors with opaque backgrounds.  This is an upper bound on the number of
+     * times a pixel of this element has been painted over before the element itself draws, since
+     * an ancestor's background need not cover the whole of this element (or anything beneath it).
+     */
+    public final int opaqueLayersBeneath;
+
+    /**
+     * The number of hidden elements in this element's subtree, including itself, which are
+     * still traversed by measure and layout.  Every drawn descendant of a hidden element is
+     * counted as hidden.
+     */
+    public final int hiddenCount;
+
+    private NodeReport(Object element, int depth, int opaqueLayersBeneath, int hiddenCount) {
+      this.element = element;
+      this.depth = depth;
+      this.opaqueLayersBeneath = opaqueLayersBeneath;
+      this.hiddenCount = hiddenCount;
+    }
+  }
+
+  private final DocumentView mView;
+  private final FlagsProvider mFlagsProvider;
+  private final ArrayList<NodeReport> mReports = new ArrayList<>();
+
+  private RenderAnalysis(DocumentView view, FlagsProvider flagsProvider) {
+    mView = view;
+    mFlagsProvider = flagsProvider;
+  }
+
+  /**
+   * @return A report for each drawn element, sorted by {@code sortOrder} in descending order.
+   */
+  public static List<NodeReport> analyze(
+      DocumentView view,
+      FlagsProvider flagsProvider,
+      SortOrder sortOrder) {
+    RenderAnalysis analysis = new RenderAnalysis(view, flagsProvider);
+    analysis.visit(
+        view.getRootElement(),
+        0 /* depth */,
+        0 /* opaqueLayersBeneath */,
+        false /* isInHiddenSubtree */);
+    Collections.sort(analysis.mReports, getComparator(sortOrder));
+    return analysis.mReports;
+  }
+
+  /**
+   * @return The number of hidden drawn elements in the subtree.
+   */
+  private int visit(
+      Object element,
+      int depth,
+      int opaqueLayersBeneath,
+      boolean isInHiddenSubtree) {
+    final int flags = mFlagsProvider.getRenderFlags(element);
+    final boolean draws = (flags & FLAG_DRAWS) != 0;
+
+    int childDepth = depth;
+    int childOpaqueLayersBeneath = opaqueLayersBeneath;
+    boolean childIsInHiddenSubtree = isInHiddenSubtree;
+    int hiddenCount = 0;
+    if (draws) {
+      if (isInHiddenSubtree || (flags & FLAG_HIDDEN) != 0) {
+        ++hiddenCount;
+        childIsInHiddenSubtree = true;
+      } else {
+        ++childDepth;
+        if ((flags & FLAG_OPAQUE_BACKGROUND) != 0) {
+          ++childOpaqueLayersBeneath;
+        }
+      }
+    }
+
+    ElementInfo info = mView.getElementInfo(element);
+    if (info != null) {
+      for (int i = 0, N = info.children.size(); i < N; ++i) {
+        hiddenCount += visit(
+            info.children.get(i),
+            childDepth,
+            childOpaqueLayersBeneath,
+            childIsInHiddenSubtree);
+      }
+    }
+
+    if (draws && !isInHiddenSubtree) {
+      mReports.add(new NodeReport(element, depth, opaqueLayersBeneath, hiddenCount));
+    }
+    return hiddenCount;
+  }
+
+  private static Comparator<NodeReport> getComparator(SortOrder sortOrder) {
+    switch (sortOrder) {
+      case OVERDRAW:
+        return OVERDRAW_COMPARATOR;
+      case DEPTH:
+        return DEPTH_COMPARATOR;
+      case HIDDEN_COUNT:
+        return HIDDEN_COUNT_COMPARATOR;
+      default:
+        throw new IllegalArgumentException(sortOrder.toString());
+    }
+  }
+
+  private static int compareDescending(int lhs, int rhs) {
+    return (lhs > rhs) ? -1 : ((lhs < rhs) ? 1 : 0);
+  }
+
+  private static final Comparator<NodeReport> OVERDRAW_COMPARATOR = new Comparator<NodeReport>() {
+    @Override
+    public int compare(NodeReport lhs, NodeReport rhs) {
+      int result = compareDescending(lhs.opaqueLayersBeneath, rhs.opaqueLayersBeneath);
+      return (result != 0) ? result : compareDescending(lhs.depth, rhs.depth);
+    }
+  };
+
+  private static final Comparator<NodeReport> DEPTH_COMPARATOR = new Comparator<NodeReport>() {
+    @Override
+    public int compare(NodeReport lhs, NodeReport rhs) {
+      int result = compareDescending(lhs.depth, rhs.depth);
+      return (result != 0)
+          ? result
+          : compareDescending(lhs.opaqueLayersBeneath, rhs.opaqueLayersBeneath);
+    }
+  };
+
+  private static final Comparator<NodeReport> HIDDEN_COUNT_COMPARATOR =
+      new Comparator<NodeReport>() {
+    @Override
+    public int compare(NodeReport lhs, NodeReport rhs) {
+      int result = compareDescending(lhs.hiddenCount, rhs.hiddenCount);
+      return (result != 0) ? result : compareDescending(lhs.depth, rhs.depth);
+    }
+  };
+}
@@ -0,0 +1,304 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import com.facebook.stetho.common.ExceptionUtil;
+import com.facebook.stetho.common.Util;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inverted index of the searchable text of each node (its name and attributes), keyed by the
+ * trigrams it contains.  {@link Document} captures the text of elements on the UI thread as it
+ * walks them and submits it in a {@link Batch}; the index itself is maintained and queried on a
+ * private background thread, so searching never touches the live views.
+ * <p/>
+ * Since all work is funneled through the one thread, a search always sees every batch that was
+ * applied before it.
+ * <p/>
+ * There's a posting for every distinct gram in the tree, so each is kept as a sorted array of
+ * node ids rather than a set of boxed integers.  Updating one costs time proportional to its
+ * length, but text changes one node at a time and a search can use a posting as is.
+ */
+final class SearchIndex {
+  private static final int GRAM_LENGTH = 3;
+
+  private static final int KEEP_ALIVE_SECONDS = 5;
+
+  private static final String THREAD_NAME = "Stetho-DOMSearch";
+
+  /**
+   * Separates the strings that make up a node's text, so that a match can't span two of them.
+   */
+  private static final char TEXT_SEPARATOR = '\n';
+
+  private final ThreadPoolExecutor mExecutor;
+
+  // Only accessed from mExecutor's thread.
+  private final Map<Integer, String> mTexts = new HashMap<>();
+  private final Map<String, Posting> mPostings = new HashMap<>();
+
+  public SearchIndex() {
+    mExecutor = new ThreadPoolExecutor(
+        1 /* corePoolSize */,
+        1 /* maximumPoolSize */,
+        KEEP_ALIVE_SECONDS,
+        TimeUnit.SECONDS,
+        new LinkedBlockingQueue<Runnable>(),
+        new ThreadFactory() {
+          @Override
+          public Thread newThread(Runnable runnable) {
+            return new Thread(runnable, THREAD_NAME);
+          }
+        });
+    mExecutor.allowCoreThreadTimeOut(true);
+  }
+
+  /**
+   * Builds the searchable text of a node.
+   */
+  public static String getSearchableText(String nodeName, ArrayList<String> attributes) {
+    StringBuilder text = new StringBuilder(nodeName);
+    for (int i = 0, N = attributes.size(); i < N; ++i) {
+      text.append(TEXT_SEPARATOR).append(attributes.get(i));
+    }
+    return normalize(text.toString());
+  }
+
+  public void apply(final Batch batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    mExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0, N = batch.mNodeIds.size(); i < N; ++i) {
+          final Integer nodeId = batch.mNodeIds.get(i);
+          final String text = batch.mTexts.get(i);
+          if (text != null) {
+            putText(nodeId, text);
+          } else {
+            removeText(nodeId);
+          }
+        }
+      }
+    });
+  }
+
+  public void clear() {
+    mExecutor.execute(new Runnable() {
+      @Override
+      public void run() {
+        mTexts.clear();
+        mPostings.clear();
+      }
+    });
+  }
+
+  /**
+   * Finds the nodes whose name or attributes contain {@code query}, ignoring case.  Blocks until
+   * every batch previously passed to {@link #apply} has been indexed.
+   *
+   * @return The ids of matching nodes in ascending order.
+   */
+  public int[] find(String query) {
+    final String normalizedQuery = normalize(query);
+
+    try {
+      return Util.getUninterruptibly(mExecutor.submit(new Callable<int[]>() {
+        @Override
+        public int[] call() {
+          return findOnIndexThread(normalizedQuery);
+        }
+      }));
+    } catch (ExecutionException e) {
+      throw ExceptionUtil.propagate(e.getCause());
+    }
+  }
+
+  private int[] findOnIndexThread(String query) {
+    if (query.length() < GRAM_LENGTH) {
+      // Too short to have any grams of its own, so check everything.
+      int[] results = new int[mTexts.size()];
+      int count = 0;
+      for (Map.Entry<Integer, String> entry : mTexts.entrySet()) {
+        if (entry.getValue().contains(query)) {
+          results[count++] = entry.getKey();
+        }
+      }
+      results = Arrays.copyOf(results, count);
+      Arrays.sort(results);
+      return results;
+    }
+
+    Posting candidates = findCandidates(query);
+    if (candidates == null) {
+      return new int[0];
+    }
+
+    // Postings are sorted, so the results are too.
+    int[] results = new int[candidates.size()];
+    int count = 0;
+    for (int i = 0, N = candidates.size(); i < N; ++i) {
+      final int nodeId = candidates.get(i);
+      if (mTexts.get(nodeId).contains(query)) {
+        results[count++] = nodeId;
+      }
+    }
+    return Arrays.copyOf(results, count);
+  }
+
+  /**
+   * @return The nodes containing the rarest gram of {@code query}, which is a superset of those
+   *     that match, or null if some gram of {@code query} isn't in the index at all.
+   */
+  @Nullable
+  private Posting findCandidates(String query) {
+    Posting smallest = null;
+    for (int i = 0, N = query.length() - GRAM_LENGTH; i <= N; ++i) {
+      Posting posting = mPostings.get(query.substring(i, i + GRAM_LENGTH));
+      if (posting == null) {
+        return null;
+      }
+      if (smallest == null || posting.size() < smallest.size()) {
+        smallest = posting;
+      }
+    }
+    return smallest;
+  }
+
+  private void putText(Integer nodeId, String text) {
+    String oldText = mTexts.put(nodeId, text);
+    if (text.equals(oldText)) {
+      return;
+    }
+
+    if (oldText != null) {
+      removeGrams(nodeId, oldText);
+    }
+
+    for (int i = 0, N = text.length() - GRAM_LENGTH; i <= N; ++i) {
+      final String gram = text.substring(i, i + GRAM_LENGTH);
+      Posting posting = mPostings.get(gram);
+      if (posting == null) {
+        posting = new Posting();
+        mPostings.put(gram, posting);
+      }
+      posting.add(nodeId);
+    }
+  }
+
+  private void removeText(Integer nodeId) {
+    String oldText = mTexts.remove(nodeId);
+    if (oldText != null) {
+      removeGrams(nodeId, oldText);
+    }
+  }
+
+  private void removeGrams(Integer nodeId, String text) {
+    for (int i = 0, N = text.length() - GRAM_LENGTH; i <= N; ++i) {
+      final String gram = text.substring(i, i + GRAM_LENGTH);
+      Posting posting = mPostings.get(gram);
+      if (posting != null) {
+        posting.remove(nodeId);
+        if (posting.isEmpty()) {
+          mPostings.remove(gram);
+        }
+      }
+    }
+  }
+
+  private static String normalize(String text) {
+    return text.toLowerCase(Locale.US);
+  }
+
+  /**
+   * Sorted set of node ids.
+   */
+  private static final class Posting {
+    private static final int INITIAL_CAPACITY = 4;
+
+    private int[] mNodeIds = new int[INITIAL_CAPACITY];
+    private int mSize;
+
+    public int size() {
+      return mSize;
+    }
+
+    public boolean isEmpty() {
+      return mSize == 0;
+    }
+
+    public int get(int index) {
+      return mNodeIds[index];
+    }
+
+    public void add(int nodeId) {
+      int index = Arrays.binarySearch(mNodeIds, 0, mSize, nodeId);
+      if (index >= 0) {
+        return;
+      }
+      index = -(index + 1);
+      if (mSize == mNodeIds.length) {
+        mNodeIds = Arrays.copyOf(mNodeIds, mSize * 2);
+      }
+      System.arraycopy(mNodeIds, index, mNodeIds, index + 1, mSize - index);
+      mNodeIds[index] = nodeId;
+      ++mSize;
+    }
+
+    public void remove(int nodeId) {
+      final int index = Arrays.binarySearch(mNodeIds, 0, mSize, nodeId);
+      if (index < 0) {
+        return;
+      }
+      System.arraycopy(mNodeIds, index + 1, mNodeIds, index, mSize - index - 1);
+      --mSize;
+      if (mSize <= mNodeIds.length / 4 && mNodeIds.length > INITIAL_CAPACITY) {
+        mNodeIds = Arrays.copyOf(mNodeIds, mNodeIds.length / 2);
+      }
+    }
+  }
+
+  /**
+   * Changes to the searchable text of nodes, collected on the UI thread.
+   */
+  public static final class Batch {
+    private final ArrayList<Integer> mNodeIds = new ArrayList<>();
+    private final ArrayList<String> mTexts = new ArrayList<>();
+
+    public void put(int nodeId, String text) {
+      mNodeIds.add(nodeId);
+      mTexts.add(text);
+    }
+
+    public void remove(int nodeId) {
+      mNodeIds.add(nodeId);
+      mTexts.add(null);
+    }
+
+    public boolean isEmpty() {
+      return mNodeIds.isEmpty();
+    }
+  }
+}
@@ -14,7 +14,10 @@ import com.facebook.stetho.common.Accumulator;
 import com.facebook.stetho.common.ListUtil;
 import com.facebook.stetho.common.Util;
 
+import javax.annotation.Nullable;
+
 import java.util.ArrayDeque;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.IdentityHashMap;
@@ -44,13 +47,22 @@ public final class ShadowDocument implements DocumentView {
   }
 
   public UpdateBuilder beginUpdate() {
+    return beginUpdate(null /* dirtyRoots */);
+  }
+
+  /**
+   * @param dirtyRoots Elements whose sub-trees may have changed since the last update, or null if
+   *     anything in the tree may have changed. See {@link UpdateBuilder#isSubtreeDirty} and
+   *     {@link UpdateBuilder#shouldVisitSubtree}.
+   */
+  public UpdateBuilder beginUpdate(@Nullable Collection<Object> dirtyRoots) {
     if (mIsUpdating) {
       throw new IllegalStateException();
     }
 
     mIsUpdating = true;
 
-    return new UpdateBuilder();
+    return new UpdateBuilder(dirtyRoots);
   }
 
   public final class UpdateBuilder {
@@ -103,6 +115,78 @@ public final class ShadowDocument implements DocumentView {
      */
     private HashSet<Object> mCachedNotNewChildrenSet;
 
+    /**
+     * Elements whose entire sub-trees must be re-examined, or null if this is a full update.
+     */
+    @Nullable
+    private final Set<Object> mDirtyRoots;
+
+    /**
+     * Every element on the path from {@link #mRootElement} to an element in {@link #mDirtyRoots},
+     * according to the committed tree. These must be re-examined so that the walk can reach the
+     * dirty sub-trees, but their other children need not be.
+     */
+    @Nullable
+    private final Set<Object> mDirtyPathElements;
+
+    private UpdateBuilder(@Nullable Collection<Object> dirtyRoots) {
+      Set<Object> dirtyPathElements = null;
+      if (dirtyRoots != null) {
+        dirtyPathElements = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        for (Object dirtyRoot : dirtyRoots) {
+          if (!addPathToRoot(dirtyRoot, dirtyPathElements)) {
+            // We don't know where this element lives, so we can't limit the update.
+            dirtyPathElements = null;
+            break;
+          }
+        }
+      }
+
+      if (dirtyPathElements == null) {
+        mDirtyRoots = null;
+        mDirtyPathElements = null;
+      } else {
+        mDirtyRoots = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+        mDirtyRoots.addAll(dirtyRoots);
+        mDirtyPathElements = dirtyPathElements;
+      }
+    }
+
+    private boolean addPathToRoot(Object element, Set<Object> pathElements) {
+      ElementInfo info = mElementToInfoMap.get(element);
+      while (info != null) {
+        if (!pathElements.add(info.element)) {
+          // Already added via another dirty root, along with the rest of the path.
+          return true;
+        }
+        if (info.element == mRootElement) {
+          return true;
+        }
+        info = (info.parentElement != null) ? mElementToInfoMap.get(info.parentElement) : null;
+      }
+      return false;
+    }
+
+    /**
+     * @return true if every element in the sub-tree rooted at {@code element} must be re-examined,
+     *     which is the case for dirty roots and for all elements during a full update.
+     */
+    public boolean isSubtreeDirty(Object element) {
+      return mDirtyRoots == null || mDirtyRoots.contains(element);
+    }
+
+    /**
+     * Determines whether a child element found outside of any dirty sub-tree needs to be
+     * examined. Elements that were already in the tree keep the children they had, so we only need
+     * to descend into them if they lead to a dirty sub-tree. Elements that are new to the tree
+     * must be examined in full.
+     */
+    public boolean shouldVisitSubtree(Object element) {
+      return mDirtyPathElements == null ||
+          mDirtyPathElements.contains(element) ||
+          !mElementToInfoMap.containsKey(element);
+    }
+
     public void setElementChildren(Object element, List<Object> children) {
       // If we receive redundant information, then nothing needs to be done.
       ElementInfo changesElementInfo = mElementToInfoChangesMap.get(element);
@@ -122,6 +206,7 @@ public final class ShadowDocument implements DocumentView {
       if (changesElementInfo != null &&
           oldElementInfo != null &&
           oldElementInfo.parentElement == changesElementInfo.parentElement &&
+          oldElementInfo.attributesVersion == changesElementInfo.attributesVersion &&
           ListUtil.identityEquals(children, oldElementInfo.children)) {
         // setElementChildren() was already called for element with changes during this
         // transaction, but now we're being told that the children should match the old view.
@@ -129,13 +214,15 @@ public final class ShadowDocument implements DocumentView {
         newElementInfo = mElementToInfoMap.get(element);
         mElementToInfoChangesMap.remove(element);
       } else {
-        Object parentElement = (changesElementInfo != null)
-            ? changesElementInfo.parentElement
-            : (oldElementInfo != null)
-            ? oldElementInfo.parentElement
+        ElementInfo currentElementInfo = (changesElementInfo != null)
+            ? changesElementInfo
+            : oldElementInfo;
+
+        Object parentElement = (currentElementInfo != null)
+            ? currentElementInfo.parentElement
             : null;
 
-        newElementInfo = new ElementInfo(element, parentElement, children);
+        newElementInfo = createElementInfo(element, parentElement, children, currentElementInfo);
 
         mElementToInfoChangesMap.put(element, newElementInfo);
       }
@@ -212,6 +299,7 @@ public final class ShadowDocument implements DocumentView {
       if (changesElementInfo != null &&
           oldElementInfo != null &&
           parentElement == oldElementInfo.parentElement &&
+          oldElementInfo.attributesVersion == changesElementInfo.attributesVersion &&
           ListUtil.identityEquals(oldElementInfo.children, changesElementInfo.children)) {
         mElementToInfoChangesMap.remove(element);
 
@@ -222,13 +310,16 @@ public final class ShadowDocument implements DocumentView {
         return;
       }
 
-      List<Object> children = (changesElementInfo != null)
-          ? changesElementInfo.children
-          : (oldElementInfo != null)
-          ? oldElementInfo.children
+      ElementInfo currentElementInfo = (changesElementInfo != null)
+          ? changesElementInfo
+          : oldElementInfo;
+
+      List<Object> children = (currentElementInfo != null)
+          ? currentElementInfo.children
           : Collections.emptyList();
 
-      ElementInfo newElementInfo = new ElementInfo(element, parentElement, children);
+      ElementInfo newElementInfo =
+          createElementInfo(element, parentElement, children, currentElementInfo);
       mElementToInfoChangesMap.put(element, newElementInfo);
 
       if (parentElement == null) {
@@ -236,6 +327,73 @@ public final class ShadowDocument implements DocumentView {
       }
     }
 
+    /**
+     * @return true if the element's attributes have already been captured, either by a previous
+     *     update or earlier in this one, while it had the given content hash.
+     */
+    public boolean hasElementAttributes(Object element, int contentHash) {
+      ElementInfo changesElementInfo = mElementToInfoChangesMap.get(element);
+      ElementInfo currentElementInfo = (changesElementInfo != null)
+          ? changesElementInfo
+          : mElementToInfoMap.get(element);
+      return currentElementInfo != null &&
+          currentElementInfo.attributes != null &&
+          currentElementInfo.contentHash == contentHash;
+    }
+
+    /**
+     * Records a snapshot of the element's attributes, which is kept in its {@link ElementInfo}.
+     * Must be called after {@link #setElementChildren} for the element.
+     *
+     * @param contentHash The element's content hash at the time the attributes were captured.
+     * @param attributes Alternating attribute names and values.
+     * @return true if the attributes differ from the previous snapshot, or there was none.
+     */
+    public boolean setElementAttributes(Object element, int contentHash, List<String> attributes) {
+      ElementInfo changesElementInfo = mElementToInfoChangesMap.get(element);
+      ElementInfo currentElementInfo = (changesElementInfo != null)
+          ? changesElementInfo
+          : mElementToInfoMap.get(element);
+      if (currentElementInfo == null) {
+        throw new IllegalStateException();
+      }
+
+      final boolean isChanged = currentElementInfo.attributes == null ||
+          !currentElementInfo.attributes.equals(attributes);
+      if (!isChanged && currentElementInfo.contentHash == contentHash) {
+        return false;
+      }
+
+      // Even if only the hash changed, record it so that the next walk can skip the element.
+      ElementInfo newElementInfo = new ElementInfo(
+          element,
+          currentElementInfo.parentElement,
+          currentElementInfo.children,
+          isChanged ? attributes : currentElementInfo.attributes,
+          isChanged
+              ? currentElementInfo.attributesVersion + 1
+              : currentElementInfo.attributesVersion,
+          contentHash);
+      mElementToInfoChangesMap.put(element, newElementInfo);
+      return isChanged;
+    }
+
+    private ElementInfo createElementInfo(
+        Object element,
+        Object parentElement,
+        List<Object> children,
+        @Nullable ElementInfo previousElementInfo) {
+      return (previousElementInfo != null)
+          ? new ElementInfo(
+              element,
+              parentElement,
+              children,
+              previousElementInfo.attributes,
+              previousElementInfo.attributesVersion,
+              previousElementInfo.contentHash)
+          : new ElementInfo(element, parentElement, children);
+    }
+
     public Update build() {
       return new Update(mElementToInfoChangesMap, mRootElementChanges);
     }
@@ -290,6 +448,44 @@ public final class ShadowDocument implements DocumentView {
       return mElementToInfoMap.get(element);
     }
 
+    /**
+     * Checks that every changed element is listed as a child by exactly one element. This holds
+     * for any update built from a single snapshot of the tree, but may not if the tree was
+     * modified while the update was being built (e.g. across several passes of the UI thread), in
+     * which case a moved element can end up listed by both its old and new parent.
+     */
+    public boolean isConsistent() {
+      for (ElementInfo elementInfo : mElementToInfoChangesMap.values()) {
+        for (int i = 0, N = elementInfo.children.size(); i < N; ++i) {
+          final ElementInfo childElementInfo = getElementInfo(elementInfo.children.get(i));
+          if (childElementInfo == null || childElementInfo.parentElement != elementInfo.element) {
+            return false;
+          }
+        }
+
+        final ElementInfo oldElementInfo = mElementToInfoMap.get(elementInfo.element);
+        if (oldElementInfo != null &&
+            oldElementInfo.parentElement != null &&
+            oldElementInfo.parentElement != elementInfo.parentElement) {
+          final ElementInfo oldParentElementInfo = getElementInfo(oldElementInfo.parentElement);
+          if (oldParentElementInfo != null &&
+              containsIdentity(oldParentElementInfo.children, elementInfo.element)) {
+            return false;
+          }
+        }
+      }
+      return true;
+    }
+
+    private boolean containsIdentity(List<Object> list, Object element) {
+      for (int i = 0, N = list.size(); i < N; ++i) {
+        if (list.get(i) == element) {
+          return true;
+        }
+      }
+      return false;
+    }
+
     public void getChangedElements(Accumulator<Object> accumulator) {
       for (Object element : mElementToInfoChangesMap.keySet()) {
         accumulator.store(element);
@@ -355,7 +551,12 @@ public final class ShadowDocument implements DocumentView {
       // Remove garbage elements: those that have a null parent (other than mRootElement), and
       // their entire sub-trees.
       for (Object element : mRootElementChangesSet) {
-        removeSubTree(mElementToInfoMap, element);
+        // An element may have been detached and then attached elsewhere during the update, in
+        // which case it remains in this set but isn't garbage.
+        ElementInfo elementInfo = mElementToInfoMap.get(element);
+        if (elementInfo != null && elementInfo.parentElement == null) {
+          removeSubTree(mElementToInfoMap, element);
+        }
       }
 
       mIsUpdating = false;
@@ -365,7 +566,12 @@ public final class ShadowDocument implements DocumentView {
       final ElementInfo elementInfo = elementToInfoMap.get(element);
       elementToInfoMap.remove(element);
       for (int i = 0, N = elementInfo.children.size(); i < N; ++i) {
-        removeSubTree(elementToInfoMap, elementInfo.children.get(i));
+        final Object childElement = elementInfo.children.get(i);
+        final ElementInfo childElementInfo = elementToInfoMap.get(childElement);
+        // Children which have since been moved elsewhere in the tree are not garbage.
+        if (childElementInfo != null && childElementInfo.parentElement == element) {
+          removeSubTree(elementToInfoMap, childElement);
+        }
       }
     }
   }
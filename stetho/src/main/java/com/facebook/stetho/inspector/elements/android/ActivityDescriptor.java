@@ -44,6 +44,11 @@ final class ActivityDescriptor
     }
   }
 
+  @Override
+  protected int onGetContentHash(Activity element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
+
   @Override
   public View getViewForHighlighting(Object element) {
     final Descriptor.Host host = getHost();
@@ -18,4 +18,15 @@ import javax.annotation.Nullable;
 interface AndroidDescriptorHost extends Descriptor.Host {
   @Nullable
   View getHighlightingView(@Nullable Object element);
+
+  /**
+   * @return The timings of {@code view} if render profiling is enabled and it has been profiled.
+   */
+  @Nullable
+  RenderTimings getRenderTimings(View view);
+
+  /**
+   * Called by {@link ViewDescriptor} whenever a View in the tree has been laid out.
+   */
+  void onViewLaidOut(View view);
 }
@@ -14,16 +14,23 @@ import android.app.Application;
 import android.app.Dialog;
 import android.content.Context;
 import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Picture;
+import android.graphics.PixelFormat;
+import android.graphics.drawable.Drawable;
 import android.os.Handler;
 import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.Window;
 import android.view.WindowManager;
 import android.widget.TextView;
 
 import com.facebook.stetho.common.Accumulator;
+import com.facebook.stetho.common.LogUtil;
 import com.facebook.stetho.common.Predicate;
+import com.facebook.stetho.common.ReflectionUtil;
 import com.facebook.stetho.common.ThreadBound;
 import com.facebook.stetho.common.UncheckedCallable;
 import com.facebook.stetho.common.Util;
@@ -34,12 +41,20 @@ import com.facebook.stetho.inspector.elements.Descriptor;
 import com.facebook.stetho.inspector.elements.DescriptorMap;
 import com.facebook.stetho.inspector.elements.NodeDescriptor;
 import com.facebook.stetho.inspector.elements.ObjectDescriptor;
+import com.facebook.stetho.inspector.elements.RenderAnalysis;
 import com.facebook.stetho.inspector.helper.ThreadBoundProxy;
 
 import javax.annotation.Nullable;
 
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
 
 final class AndroidDocumentProvider extends ThreadBoundProxy
     implements DocumentProvider, AndroidDescriptorHost {
@@ -51,26 +66,16 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
   private final AndroidDocumentRoot mDocumentRoot;
   private final ViewHighlighter mHighlighter;
   private final InspectModeHandler mInspectModeHandler;
+  private final RenderProfiler mRenderProfiler;
   private @Nullable Listener mListener;
 
-  // We don't yet have an an implementation for reliably detecting fine-grained changes in the
-  // View tree. So, for now at least, we have a timer that runs every so often and just reports
-  // that we changed. Our listener will then read the entire DOM from us and transmit the changes to
-  // Chrome. Detecting, reporting, and traversing fine-grained changes is a future work item.
-  private static final long REPORT_CHANGED_INTERVAL_MS = 1000;
-  private boolean mIsReportChangesTimerPosted = false;
-  private final Runnable mReportChangesTimer = new Runnable() {
-    @Override
-    public void run() {
-      mIsReportChangesTimerPosted = false;
+  private final ChangeTracker mChangeTracker;
 
-      if (mListener != null) {
-        mListener.onPossiblyChanged();
-        mIsReportChangesTimerPosted = true;
-        postDelayed(this, REPORT_CHANGED_INTERVAL_MS);
-      }
-    }
-  };
+  /**
+   * Memoizes {@link #getHighlightableDescriptors} for each element class.
+   */
+  private final IdentityHashMap<Class<?>, HighlightableDescriptor[]> mHighlightableDescriptors =
+      new IdentityHashMap<>();
 
   public AndroidDocumentProvider(Application application, ThreadBound enforcer) {
     super(enforcer);
@@ -96,6 +101,8 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
 
     mHighlighter = ViewHighlighter.newInstance();
     mInspectModeHandler = new InspectModeHandler();
+    mRenderProfiler = new RenderProfiler();
+    mChangeTracker = new ChangeTracker();
   }
 
   @Override
@@ -104,8 +111,8 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
 
     mHighlighter.clearHighlight();
     mInspectModeHandler.disable();
-    removeCallbacks(mReportChangesTimer);
-    mIsReportChangesTimerPosted = false;
+    mRenderProfiler.disable();
+    mChangeTracker.stop();
     mListener = null;
   }
 
@@ -114,12 +121,10 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
     verifyThreadAccess();
 
     mListener = listener;
-    if (mListener == null && mIsReportChangesTimerPosted) {
-      mIsReportChangesTimerPosted = false;
-      removeCallbacks(mReportChangesTimer);
-    } else if (mListener != null && !mIsReportChangesTimerPosted) {
-      mIsReportChangesTimerPosted = true;
-      postDelayed(mReportChangesTimer, REPORT_CHANGED_INTERVAL_MS);
+    if (mListener == null) {
+      mChangeTracker.stop();
+    } else {
+      mChangeTracker.start();
     }
   }
 
@@ -143,7 +148,9 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
     if (highlightingView == null) {
       mHighlighter.clearHighlight();
     } else {
-      mHighlighter.setHighlightedView(highlightingView, color);
+      mHighlighter.setHighlightedView(
+          highlightingView,
+          mRenderProfiler.getHighlightColor(highlightingView, color));
     }
   }
 
@@ -165,6 +172,17 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
     }
   }
 
+  @Override
+  public void setRenderProfilingEnabled(boolean enabled) {
+    verifyThreadAccess();
+
+    if (enabled) {
+      mRenderProfiler.enable();
+    } else {
+      mRenderProfiler.disable();
+    }
+  }
+
   @Override
   public void setAttributesAsText(Object element, String text) {
     verifyThreadAccess();
@@ -175,6 +193,26 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
     }
   }
 
+  @Override
+  public int getRenderFlags(Object element) {
+    verifyThreadAccess();
+
+    if (!(element instanceof View) || element instanceof DOMHiddenView) {
+      return 0;
+    }
+
+    final View view = (View) element;
+    int flags = RenderAnalysis.FLAG_DRAWS;
+    if (view.getVisibility() != View.VISIBLE) {
+      flags |= RenderAnalysis.FLAG_HIDDEN;
+    }
+    final Drawable background = view.getBackground();
+    if (background != null && background.getOpacity() == PixelFormat.OPAQUE) {
+      flags |= RenderAnalysis.FLAG_OPAQUE_BACKGROUND;
+    }
+    return flags;
+  }
+
   // Descriptor.Host implementation
   @Override
   public Descriptor getDescriptor(Object element) {
@@ -202,24 +240,62 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
       return null;
     }
 
-    View highlightingView = null;
-    Class<?> theClass = element.getClass();
+    HighlightableDescriptor[] descriptors = getHighlightableDescriptors(element.getClass());
+    for (int i = 0; i < descriptors.length; ++i) {
+      View highlightingView = descriptors[i].getViewForHighlighting(element);
+      if (highlightingView != null) {
+        return highlightingView;
+      }
+    }
+
+    return null;
+  }
+
+  @Nullable
+  @Override
+  public RenderTimings getRenderTimings(View view) {
+    return mRenderProfiler.getTimings(view);
+  }
+
+  @Override
+  public void onViewLaidOut(View view) {
+    // Layouts done by the render profiler are reported by it, once per View it profiles, rather
+    // than once for every View beneath it.
+    if (!mRenderProfiler.isProfiling()) {
+      mChangeTracker.onViewLaidOut(view);
+    }
+  }
+
+  /**
+   * @return The distinct {@link HighlightableDescriptor}s that apply to {@code elementClass},
+   *     most derived first.
+   */
+  private HighlightableDescriptor[] getHighlightableDescriptors(Class<?> elementClass) {
+    HighlightableDescriptor[] descriptors = mHighlightableDescriptors.get(elementClass);
+    if (descriptors != null) {
+      return descriptors;
+    }
+
+    ArrayList<HighlightableDescriptor> descriptorList = new ArrayList<>();
+    Class<?> theClass = elementClass;
     Descriptor lastDescriptor = null;
-    while (highlightingView == null && theClass != null) {
+    while (theClass != null) {
       Descriptor descriptor = mDescriptorMap.get(theClass);
       if (descriptor == null) {
-        return null;
+        break;
       }
 
       if (descriptor != lastDescriptor && descriptor instanceof HighlightableDescriptor) {
-        highlightingView = ((HighlightableDescriptor) descriptor).getViewForHighlighting(element);
+        descriptorList.add((HighlightableDescriptor) descriptor);
       }
 
       lastDescriptor = descriptor;
       theClass = theClass.getSuperclass();
     }
 
-    return highlightingView;
+    descriptors = descriptorList.toArray(new HighlightableDescriptor[descriptorList.size()]);
+    mHighlightableDescriptors.put(elementClass, descriptors);
+    return descriptors;
   }
 
   private void getWindows(final Accumulator<Window> accumulator) {
@@ -245,6 +321,444 @@ final class AndroidDocumentProvider extends ThreadBoundProxy
     }
   }
 
+  /**
+   * Detects changes to the View tree and reports them to {@link #mListener}.  Rather than walking
+   * the whole tree on a timer, every View in the tree reports when it is laid out (see
+   * {@link ViewDescriptor}), which accompanies any View being added, removed, resized or moved.  A
+   * layout pass lays out the Views that requested it along with their ancestors, so only the
+   * deepest of them are reported as changed sub-trees; their ancestors are re-examined anyway on
+   * the way down to them.  Activity creation and destruction is observed via
+   * {@link ActivityTracker}.  There is no callback for a {@link Dialog} being shown, so we also
+   * periodically compare the set of known windows against the live set; this only visits the top
+   * few levels of the tree, so an idle screen is never walked.
+   * <p/>
+   * Changes that don't involve a layout pass at all (a View becoming invisible, say) are therefore
+   * only picked up once the View or one of its ancestors is next laid out.
+   */
+  private final class ChangeTracker implements ActivityTracker.Listener {
+    private static final long REPORT_CHANGED_DELAY_MS = 100;
+    private static final long CHECK_WINDOWS_INTERVAL_MS = 1000;
+
+    private final Map<View, Boolean> mDecorViews = new IdentityHashMap<>();
+    private final Map<View, Boolean> mLaidOutViews = new IdentityHashMap<>();
+    private final HashSet<Object> mDirtyElements = new HashSet<>();
+    private boolean mIsDocumentDirty;
+    private boolean mIsStarted;
+    private boolean mIsReportChangesPosted;
+
+    private final Runnable mReportChangesRunnable = new Runnable() {
+      @Override
+      public void run() {
+        mIsReportChangesPosted = false;
+        reportChanges();
+      }
+    };
+
+    private final Runnable mCheckWindowsTimer = new Runnable() {
+      @Override
+      public void run() {
+        if (mIsStarted) {
+          checkWindows();
+          postDelayed(this, CHECK_WINDOWS_INTERVAL_MS);
+        }
+      }
+    };
+
+    public void start() {
+      if (mIsStarted) {
+        return;
+      }
+      mIsStarted = true;
+      ActivityTracker.get().registerListener(this);
+      checkWindows();
+      postDelayed(mCheckWindowsTimer, CHECK_WINDOWS_INTERVAL_MS);
+    }
+
+    public void stop() {
+      if (!mIsStarted) {
+        return;
+      }
+      mIsStarted = false;
+      ActivityTracker.get().unregisterListener(this);
+      removeCallbacks(mCheckWindowsTimer);
+      removeCallbacks(mReportChangesRunnable);
+      mIsReportChangesPosted = false;
+
+      mDecorViews.clear();
+      mLaidOutViews.clear();
+      mDirtyElements.clear();
+      mIsDocumentDirty = false;
+    }
+
+    @Override
+    public void onActivityAdded(Activity activity) {
+      markDocumentDirty();
+    }
+
+    @Override
+    public void onActivityRemoved(Activity activity) {
+      markDocumentDirty();
+    }
+
+    public void onViewLaidOut(View view) {
+      if (mIsStarted && !mIsDocumentDirty) {
+        mLaidOutViews.put(view, Boolean.TRUE);
+        scheduleReportChanges();
+      }
+    }
+
+    private void checkWindows() {
+      final Map<View, Boolean> liveDecorViews = new IdentityHashMap<>();
+      getWindows(new Accumulator<Window>() {
+        @Override
+        public void store(Window window) {
+          View decorView = window.peekDecorView();
+          if (decorView != null) {
+            liveDecorViews.put(decorView, Boolean.TRUE);
+          }
+        }
+      });
+
+      if (!liveDecorViews.keySet().equals(mDecorViews.keySet())) {
+        mDecorViews.clear();
+        mDecorViews.putAll(liveDecorViews);
+        markDocumentDirty();
+      }
+    }
+
+    private void markDocumentDirty() {
+      mIsDocumentDirty = true;
+      mDirtyElements.clear();
+      mLaidOutViews.clear();
+      scheduleReportChanges();
+    }
+
+    private void scheduleReportChanges() {
+      // Layout passes tend to come in bursts (e.g. during animations), so we coalesce them into
+      // one report.
+      if (mIsStarted && !mIsReportChangesPosted) {
+        mIsReportChangesPosted = true;
+        postDelayed(mReportChangesRunnable, REPORT_CHANGED_DELAY_MS);
+      }
+    }
+
+    /**
+     * Moves the deepest of {@link #mLaidOutViews} into {@link #mDirtyElements}.
+     */
+    private void collectLaidOutSubtrees() {
+      final Map<Object, Boolean> ancestors = new IdentityHashMap<>();
+      for (View view : mLaidOutViews.keySet()) {
+        for (ViewParent parent = view.getParent();
+             parent instanceof View;
+             parent = parent.getParent()) {
+          if (ancestors.put(parent, Boolean.TRUE) != null) {
+            // Everything above here has already been recorded.
+            break;
+          }
+        }
+      }
+
+      for (View view : mLaidOutViews.keySet()) {
+        if (!ancestors.containsKey(view)) {
+          mDirtyElements.add(view);
+        }
+      }
+      mLaidOutViews.clear();
+    }
+
+    private void reportChanges() {
+      if (mListener == null) {
+        return;
+      }
+
+      if (mIsDocumentDirty) {
+        mIsDocumentDirty = false;
+        mDirtyElements.clear();
+        mLaidOutViews.clear();
+        mListener.onPossiblyChanged();
+        return;
+      }
+
+      collectLaidOutSubtrees();
+      if (!mDirtyElements.isEmpty()) {
+        List<Object> dirtyElements = new ArrayList<>(mDirtyElements);
+        mDirtyElements.clear();
+        mListener.onSubtreesPossiblyChanged(dirtyElements);
+      }
+    }
+  }
+
+  /**
+   * Estimates what each View costs to measure, lay out and draw, much as Hierarchy Viewer does:
+   * by timing its {@code onMeasure()} with its last measure specs, a layout at its current bounds,
+   * and a draw into a {@link Picture}.  Profiling must not disturb the app, so Views are never
+   * flagged for layout by it, and only Views which are already due a layout are laid out (and
+   * have their layout timed).  Only the View itself is re-measured and re-laid out, since its
+   * children's specs and bounds don't change, but drawing a View draws all of its children, so
+   * its draw time is inclusive of theirs.
+   * <p/>
+   * Profiling happens on the UI thread, and drawing each View of a tree separately costs far more
+   * than drawing the tree once, so Views are sampled a few at a time: every
+   * {@link #PROFILE_INTERVAL_MS} while enabled, Views are taken from a breadth-first sweep of all
+   * windows until {@link #PROFILE_BUDGET_NANOS} has been spent, and a new sweep starts once the
+   * last one is done.  The averages are reported as attributes (see {@link ViewDescriptor})
+   * whenever they change at the reported precision, and determine the color a View is highlighted
+   * with.
+   */
+  private final class RenderProfiler {
+    private static final long PROFILE_INTERVAL_MS = 250;
+    private static final long PROFILE_BUDGET_NANOS = 4 * 1000 * 1000;
+
+    private static final float MODERATE_COST_MS = 1.0f;
+    private static final float HIGH_COST_MS = 4.0f;
+
+    private final WeakHashMap<View, RenderTimings> mTimings = new WeakHashMap<>();
+    private final Picture mPicture = new Picture();
+    private final ArrayDeque<View> mPendingViews = new ArrayDeque<>();
+    private boolean mIsEnabled;
+    private boolean mIsProfiling;
+
+    @Nullable
+    private Field mOldWidthMeasureSpecField;
+
+    @Nullable
+    private Field mOldHeightMeasureSpecField;
+
+    @Nullable
+    private Method mOnMeasureMethod;
+
+    private boolean mHasLookedUpMeasureMembers;
+
+    private final Runnable mProfileRunnable = new Runnable() {
+      @Override
+      public void run() {
+        if (mIsEnabled) {
+          profileSlice();
+          postDelayed(this, PROFILE_INTERVAL_MS);
+        }
+      }
+    };
+
+    public void enable() {
+      if (mIsEnabled) {
+        return;
+      }
+      mIsEnabled = true;
+      postDelayed(mProfileRunnable, 0);
+    }
+
+    public void disable() {
+      if (!mIsEnabled) {
+        return;
+      }
+      mIsEnabled = false;
+      removeCallbacks(mProfileRunnable);
+      mPendingViews.clear();
+
+      for (View view : mTimings.keySet()) {
+        onAttributeRemoved(view, ViewDescriptor.MEASURE_TIME_ATTRIBUTE_NAME);
+        onAttributeRemoved(view, ViewDescriptor.LAYOUT_TIME_ATTRIBUTE_NAME);
+        onAttributeRemoved(view, ViewDescriptor.DRAW_TIME_ATTRIBUTE_NAME);
+      }
+      mTimings.clear();
+    }
+
+    @Nullable
+    public RenderTimings getTimings(View view) {
+      return mIsEnabled ? mTimings.get(view) : null;
+    }
+
+    /**
+     * @return {@code color} with its hue replaced by green, yellow or red according to how
+     *     expensive {@code view} is, if it has been profiled.
+     */
+    public int getHighlightColor(View view, int color) {
+      RenderTimings timings = getTimings(view);
+      if (timings == null || timings.getSampleCount() == 0) {
+        return color;
+      }
+
+      final float totalMs = timings.getTotalMs();
+      final int costColor;
+      if (totalMs < MODERATE_COST_MS) {
+        costColor = Color.GREEN;
+      } else if (totalMs < HIGH_COST_MS) {
+        costColor = Color.YELLOW;
+      } else {
+        costColor = Color.RED;
+      }
+      return (color & 0xff000000) | (costColor & 0x00ffffff);
+    }
+
+    /**
+     * @return true while Views are being measured, laid out and drawn to profile them.
+     */
+    public boolean isProfiling() {
+      return mIsProfiling;
+    }
+
+    private void profileSlice() {
+      if (mPendingViews.isEmpty()) {
+        beginSweep();
+      }
+
+      final long deadlineNanos = System.nanoTime() + PROFILE_BUDGET_NANOS;
+      mIsProfiling = true;
+      try {
+        while (!mPendingViews.isEmpty() && System.nanoTime() < deadlineNanos) {
+          View view = mPendingViews.remove();
+          // Skip Views that were removed since the sweep began.
+          if (view.getWindowToken() != null) {
+            profileView(view);
+          }
+        }
+      } finally {
+        mIsProfiling = false;
+      }
+    }
+
+    private void beginSweep() {
+      getWindows(new Accumulator<Window>() {
+        @Override
+        public void store(Window window) {
+          View decorView = window.peekDecorView();
+          if (decorView != null) {
+            mPendingViews.add(decorView);
+          }
+        }
+      });
+
+      // Expand the roots into a breadth-first list of every View beneath them.
+      for (int i = 0, N = mPendingViews.size(); i < N; ++i) {
+        View root = mPendingViews.remove();
+        addViewsBreadthFirst(root);
+      }
+    }
+
+    private void addViewsBreadthFirst(View root) {
+      ArrayDeque<View> queue = new ArrayDeque<>();
+      queue.add(root);
+      while (!queue.isEmpty()) {
+        View view = queue.remove();
+        if (view instanceof DOMHiddenView) {
+          continue;
+        }
+        mPendingViews.add(view);
+        if (view instanceof ViewGroup) {
+          final ViewGroup viewGroup = (ViewGroup) view;
+          for (int i = 0, N = viewGroup.getChildCount(); i < N; ++i) {
+            queue.add(viewGroup.getChildAt(i));
+          }
+        }
+      }
+    }
+
+    private void profileView(View view) {
+      final long startNanos = System.nanoTime();
+      if (!remeasure(view)) {
+        return;
+      }
+      final long measuredNanos = System.nanoTime();
+
+      // Laying out a View that isn't due a layout would run onLayout() and its side effects for
+      // nothing, so layout is only timed for Views that were going to be laid out anyway.  That
+      // layout has now been done, so the next traversal won't report it; report it here instead.
+      final boolean isLaidOut = view.isLayoutRequested();
+      if (isLaidOut) {
+        view.layout(view.getLeft(), view.getTop(), view.getRight(), view.getBottom());
+        mChangeTracker.onViewLaidOut(view);
+      }
+      final long laidOutNanos = System.nanoTime();
+
+      Canvas canvas = mPicture.beginRecording(
+          Math.max(1, view.getWidth()),
+          Math.max(1, view.getHeight()));
+      view.draw(canvas);
+      mPicture.endRecording();
+      final long drawnNanos = System.nanoTime();
+
+      RenderTimings timings = mTimings.get(view);
+      if (timings == null) {
+        timings = new RenderTimings();
+        mTimings.put(view, timings);
+      }
+      final float oldMeasureMs = timings.getMeasureMs();
+      final float oldLayoutMs = timings.getLayoutMs();
+      final float oldDrawMs = timings.getDrawMs();
+      final boolean isNew = timings.getSampleCount() == 0;
+      if (isLaidOut) {
+        timings.addSample(
+            measuredNanos - startNanos,
+            laidOutNanos - measuredNanos,
+            drawnNanos - laidOutNanos);
+      } else {
+        timings.addSample(measuredNanos - startNanos, drawnNanos - laidOutNanos);
+      }
+      reportIfChanged(
+          view, ViewDescriptor.MEASURE_TIME_ATTRIBUTE_NAME, isNew, oldMeasureMs,
+          timings.getMeasureMs());
+      reportIfChanged(
+          view, ViewDescriptor.LAYOUT_TIME_ATTRIBUTE_NAME, isNew, oldLayoutMs,
+          timings.getLayoutMs());
+      reportIfChanged(
+          view, ViewDescriptor.DRAW_TIME_ATTRIBUTE_NAME, isNew, oldDrawMs,
+          timings.getDrawMs());
+    }
+
+    private void reportIfChanged(
+        View view,
+        String attributeName,
+        boolean isNew,
+        float oldMs,
+        float newMs) {
+      final String newValue = RenderTimings.formatMs(newMs);
+      if (isNew || !RenderTimings.formatMs(oldMs).equals(newValue)) {
+        onAttributeModified(view, attributeName, newValue);
+      }
+    }
+
+    /**
+     * Runs {@code view}'s {@code onMeasure()} again with the specs it was last measured with, so
+     * that it ends up exactly as it was.  This goes around {@link View#measure}, which would
+     * either skip the work or, if forced to do it, leave the View flagged for another layout.
+     *
+     * @return false if the specs aren't available, in which case the view is left alone.
+     */
+    private boolean remeasure(View view) {
+      if (!mHasLookedUpMeasureMembers) {
+        mHasLookedUpMeasureMembers = true;
+        mOldWidthMeasureSpecField =
+            ReflectionUtil.tryGetDeclaredField(View.class, "mOldWidthMeasureSpec");
+        mOldHeightMeasureSpecField =
+            ReflectionUtil.tryGetDeclaredField(View.class, "mOldHeightMeasureSpec");
+        mOnMeasureMethod =
+            ReflectionUtil.tryGetDeclaredMethod(View.class, "onMeasure", int.class, int.class);
+        if (mOldWidthMeasureSpecField != null &&
+            mOldHeightMeasureSpecField != null &&
+            mOnMeasureMethod != null) {
+          mOldWidthMeasureSpecField.setAccessible(true);
+          mOldHeightMeasureSpecField.setAccessible(true);
+          mOnMeasureMethod.setAccessible(true);
+        } else {
+          LogUtil.w("Render profiling is not supported on this version of Android");
+        }
+      }
+
+      if (mOldWidthMeasureSpecField == null ||
+          mOldHeightMeasureSpecField == null ||
+          mOnMeasureMethod == null) {
+        return false;
+      }
+
+      final int widthMeasureSpec =
+          (Integer) ReflectionUtil.getFieldValue(mOldWidthMeasureSpecField, view);
+      final int heightMeasureSpec =
+          (Integer) ReflectionUtil.getFieldValue(mOldHeightMeasureSpecField, view);
+      ReflectionUtil.invokeMethod(mOnMeasureMethod, view, widthMeasureSpec, heightMeasureSpec);
+      return true;
+    }
+  }
+
   private final class InspectModeHandler {
     private final Predicate<View> mViewSelector = new Predicate<View>() {
       @Override
@@ -39,4 +39,9 @@ final class AndroidDocumentRoot extends AbstractChainedDescriptor<AndroidDocumen
   protected void onGetChildren(AndroidDocumentRoot element, Accumulator<Object> children) {
     children.store(mApplication);
   }
+
+  @Override
+  protected int onGetContentHash(AndroidDocumentRoot element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
 }
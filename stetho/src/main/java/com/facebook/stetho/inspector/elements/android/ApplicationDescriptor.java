@@ -59,6 +59,11 @@ final class ApplicationDescriptor extends AbstractChainedDescriptor<Application>
     }
   }
 
+  @Override
+  protected int onGetContentHash(Application element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
+
   private class ElementContext {
     private Application mElement;
 
@@ -28,6 +28,11 @@ final class DialogDescriptor
     }
   }
 
+  @Override
+  protected int onGetContentHash(Dialog element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
+
   @Nullable
   @Override
   public View getViewForHighlighting(Object element) {
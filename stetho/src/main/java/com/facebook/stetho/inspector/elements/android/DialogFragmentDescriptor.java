@@ -20,6 +20,7 @@ import com.facebook.stetho.common.android.FragmentCompat;
 import com.facebook.stetho.inspector.elements.AbstractChainedDescriptor;
 import com.facebook.stetho.inspector.elements.AttributeAccumulator;
 import com.facebook.stetho.inspector.elements.ChainedDescriptor;
+import com.facebook.stetho.inspector.elements.ContentHashDescriptor;
 import com.facebook.stetho.inspector.elements.Descriptor;
 import com.facebook.stetho.inspector.elements.DescriptorMap;
 import com.facebook.stetho.inspector.elements.NodeType;
@@ -27,7 +28,8 @@ import com.facebook.stetho.inspector.elements.NodeType;
 import javax.annotation.Nullable;
 
 final class DialogFragmentDescriptor
-    extends Descriptor implements ChainedDescriptor, HighlightableDescriptor {
+    extends Descriptor
+    implements ChainedDescriptor, ContentHashDescriptor, HighlightableDescriptor {
   private final DialogFragmentAccessor mAccessor;
   private Descriptor mSuper;
 
@@ -109,6 +111,13 @@ final class DialogFragmentDescriptor
     mSuper.getAttributes(element, attributes);
   }
 
+  @Override
+  public int getContentHash(Object element) {
+    return (mSuper instanceof ContentHashDescriptor)
+        ? ((ContentHashDescriptor) mSuper).getContentHash(element)
+        : UNKNOWN_CONTENT_HASH;
+  }
+
   @Override
   public void setAttributesAsText(Object element, String text) {
     mSuper.setAttributesAsText(element, text);
@@ -64,6 +64,12 @@ final class FragmentDescriptor
     }
   }
 
+  @Override
+  protected int onGetContentHash(Object element) {
+    String tag = mAccessor.getTag(element);
+    return 31 * mAccessor.getId(element) + (tag != null ? tag.hashCode() : 0);
+  }
+
   @Override
   protected void onGetChildren(Object element, Accumulator<Object> children) {
     View view = mAccessor.getView(element);
@@ -9,23 +9,54 @@
 
 package com.facebook.stetho.inspector.elements.android;
 
+import android.content.res.Resources;
+import android.graphics.Color;
+import android.util.TypedValue;
+import android.view.View;
 import com.facebook.stetho.common.LogUtil;
 import com.facebook.stetho.common.Util;
 
+import javax.annotation.concurrent.GuardedBy;
+
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 /**
  * Tries to arbitrarily invoke single argument methods by name on an object instance by trying out
  * different argument types.
+ * <p/>
+ * The candidate methods for each receiver class and method name are resolved once and cached,
+ * along with the converter for each one's argument type, so repeated invocations (such as live
+ * edits of the same attribute from DevTools) don't go through reflection lookups again.  Names
+ * with no candidates are cached too.
+ * <p/>
+ * In addition to plain strings, numbers and booleans, arguments may be:
+ * <ul>
+ *   <li>enum constant names, ignoring case;</li>
+ *   <li>colors, as accepted by {@link Color#parseColor}, for {@code int} arguments;</li>
+ *   <li>dimensions such as {@code 16dp} or {@code 12sp}, which are converted to pixels;</li>
+ *   <li>resource references such as {@code @string/name} or {@code @android:color/black}, which
+ *       are resolved to resource ids for {@code int} arguments.</li>
+ * </ul>
  */
 public class MethodInvoker {
 
   private static final List<TypedMethodInvoker<?>> invokers = Arrays.asList(
       new StringMethodInvoker(), new CharSequenceMethodInvoker(), new IntegerMethodInvoker(),
-      new FloatMethodInvoker(), new BooleanMethodInvoker());
+      new FloatMethodInvoker(), new BooleanMethodInvoker(), new EnumMethodInvoker());
+
+  private static final Setter[] NO_SETTERS = new Setter[0];
+
+  @GuardedBy("this")
+  private final Map<Class<?>, Map<String, Setter[]>> mSetterCache = new IdentityHashMap<>();
 
   /**
    * Tries to invoke a method on receiver with a single argument by trying out different types
@@ -36,10 +67,9 @@ public class MethodInvoker {
    */
   public void invoke(Object receiver, String methodName, String argument) {
     Util.throwIfNull(receiver, methodName, argument);
-    int size = invokers.size();
-    for (int i = 0; i < size; ++i) {
-      final TypedMethodInvoker<?> invoker = invokers.get(i);
-      if (invoker.invoke(receiver, methodName, argument)) {
+    Setter[] setters = getSetters(receiver.getClass(), methodName);
+    for (int i = 0; i < setters.length; ++i) {
+      if (setters[i].invoke(receiver, argument)) {
         return;
       }
     }
@@ -47,20 +77,62 @@ public class MethodInvoker {
               " not found for any of the MethodInvoker supported argument types.");
   }
 
-  private static abstract class TypedMethodInvoker<T> {
-    private final Class<T> mArgType;
+  private synchronized Setter[] getSetters(Class<?> receiverClass, String methodName) {
+    Map<String, Setter[]> settersByName = mSetterCache.get(receiverClass);
+    if (settersByName == null) {
+      settersByName = new HashMap<>();
+      mSetterCache.put(receiverClass, settersByName);
+    }
 
-    TypedMethodInvoker(Class<T> argType) {
-      mArgType = argType;
+    Setter[] setters = settersByName.get(methodName);
+    if (setters == null) {
+      setters = resolveSetters(receiverClass, methodName);
+      settersByName.put(methodName, setters);
+    }
+    return setters;
+  }
+
+  private static Setter[] resolveSetters(Class<?> receiverClass, String methodName) {
+    ArrayList<Method> methods = new ArrayList<>();
+    for (Method method : receiverClass.getMethods()) {
+      if (method.getName().equals(methodName) && method.getParameterTypes().length == 1) {
+        methods.add(method);
+      }
+    }
+
+    if (methods.isEmpty()) {
+      return NO_SETTERS;
+    }
+
+    // Candidates are tried in the order of the invokers, not the order of the methods.
+    ArrayList<Setter> setters = new ArrayList<>();
+    for (int i = 0, N = invokers.size(); i < N; ++i) {
+      final TypedMethodInvoker<?> invoker = invokers.get(i);
+      for (int j = 0, M = methods.size(); j < M; ++j) {
+        final Method method = methods.get(j);
+        if (invoker.accepts(method.getParameterTypes()[0])) {
+          setters.add(new Setter(method, invoker));
+        }
+      }
+    }
+    return setters.toArray(new Setter[setters.size()]);
+  }
+
+  private static final class Setter {
+    private final Method mMethod;
+    private final TypedMethodInvoker<?> mInvoker;
+
+    Setter(Method method, TypedMethodInvoker<?> invoker) {
+      mMethod = method;
+      mInvoker = invoker;
     }
 
-    boolean invoke(Object receiver, String methodName, String argument) {
+    boolean invoke(Object receiver, String argument) {
       try {
-        Method method = receiver.getClass().getMethod(methodName, mArgType);
-        method.invoke(receiver, convertArgument(argument));
+        Object convertedArgument =
+            mInvoker.convertArgument(receiver, mMethod.getParameterTypes()[0], argument);
+        mMethod.invoke(receiver, convertedArgument);
         return true;
-      } catch (NoSuchMethodException ignored) {
-        // ignore
       } catch (InvocationTargetException e) {
         LogUtil.w("InvocationTargetException: " + e.getMessage());
       } catch (IllegalAccessException e) {
@@ -70,8 +142,24 @@ public class MethodInvoker {
       }
       return false;
     }
+  }
+
+  private static abstract class TypedMethodInvoker<T> {
+    private final Class<T> mArgType;
+
+    TypedMethodInvoker(Class<T> argType) {
+      mArgType = argType;
+    }
 
-    abstract T convertArgument(String argument);
+    boolean accepts(Class<?> parameterType) {
+      return parameterType == mArgType;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code argument} can't be converted, in which case the
+     *     next candidate method is tried.
+     */
+    abstract T convertArgument(Object receiver, Class<?> parameterType, String argument);
   }
 
   private static class StringMethodInvoker extends TypedMethodInvoker<String> {
@@ -80,7 +168,7 @@ public class MethodInvoker {
     }
 
     @Override
-    String convertArgument(String argument) {
+    String convertArgument(Object receiver, Class<?> parameterType, String argument) {
       return argument;
     }
   }
@@ -91,7 +179,11 @@ public class MethodInvoker {
     }
 
     @Override
-    CharSequence convertArgument(String argument) {
+    CharSequence convertArgument(Object receiver, Class<?> parameterType, String argument) {
+      // Let resource references fall through to an int overload, e.g. setText(int).
+      if (ResourceReference.matches(argument)) {
+        throw new IllegalArgumentException("Resource reference: " + argument);
+      }
       return argument;
     }
   }
@@ -102,7 +194,16 @@ public class MethodInvoker {
     }
 
     @Override
-    Integer convertArgument(String argument) {
+    Integer convertArgument(Object receiver, Class<?> parameterType, String argument) {
+      if (argument.startsWith("#")) {
+        return Color.parseColor(argument);
+      }
+      if (ResourceReference.matches(argument)) {
+        return ResourceReference.resolve(getResources(receiver), argument);
+      }
+      if (Dimension.matches(argument)) {
+        return (int) Dimension.toPixels(getResources(receiver), argument);
+      }
       return Integer.parseInt(argument);
     }
   }
@@ -113,7 +214,10 @@ public class MethodInvoker {
     }
 
     @Override
-    Float convertArgument(String argument) {
+    Float convertArgument(Object receiver, Class<?> parameterType, String argument) {
+      if (Dimension.matches(argument)) {
+        return Dimension.toPixels(getResources(receiver), argument);
+      }
       return Float.parseFloat(argument);
     }
   }
@@ -124,8 +228,105 @@ public class MethodInvoker {
     }
 
     @Override
-    Boolean convertArgument(String argument) {
+    Boolean convertArgument(Object receiver, Class<?> parameterType, String argument) {
       return Boolean.parseBoolean(argument);
     }
   }
+
+  @SuppressWarnings("rawtypes")
+  private static class EnumMethodInvoker extends TypedMethodInvoker<Enum> {
+    EnumMethodInvoker() {
+      super(Enum.class);
+    }
+
+    @Override
+    boolean accepts(Class<?> parameterType) {
+      return parameterType.isEnum();
+    }
+
+    @Override
+    Enum convertArgument(Object receiver, Class<?> parameterType, String argument) {
+      for (Object constant : parameterType.getEnumConstants()) {
+        Enum enumConstant = (Enum) constant;
+        if (enumConstant.name().equalsIgnoreCase(argument)) {
+          return enumConstant;
+        }
+      }
+      throw new IllegalArgumentException(
+          "No constant " + argument + " in " + parameterType.getName());
+    }
+  }
+
+  private static Resources getResources(Object receiver) {
+    return (receiver instanceof View)
+        ? ((View) receiver).getResources()
+        : Resources.getSystem();
+  }
+
+  /**
+   * Arguments of the form {@code @[package:]type/name}.
+   */
+  private static final class ResourceReference {
+    private static final Pattern PATTERN =
+        Pattern.compile("@(?:([\\w.]+):)?(\\w+)/(\\w+)");
+
+    static boolean matches(String argument) {
+      return argument.startsWith("@") && PATTERN.matcher(argument).matches();
+    }
+
+    static int resolve(Resources resources, String argument) {
+      Matcher matcher = PATTERN.matcher(argument);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException("Not a resource reference: " + argument);
+      }
+      int id = resources.getIdentifier(matcher.group(3), matcher.group(2), matcher.group(1));
+      if (id == 0) {
+        throw new IllegalArgumentException("Resource not found: " + argument);
+      }
+      return id;
+    }
+  }
+
+  /**
+   * Arguments such as {@code 16dp}, which are converted to pixels.
+   */
+  private static final class Dimension {
+    private static final Pattern PATTERN =
+        Pattern.compile("(-?\\d+(?:\\.\\d+)?)(px|dp|dip|sp|pt|in|mm)");
+
+    static boolean matches(String argument) {
+      return PATTERN.matcher(argument).matches();
+    }
+
+    static float toPixels(Resources resources, String argument) {
+      Matcher matcher = PATTERN.matcher(argument);
+      if (!matcher.matches()) {
+        throw new IllegalArgumentException("Not a dimension: " + argument);
+      }
+      return TypedValue.applyDimension(
+          getUnit(matcher.group(2)),
+          Float.parseFloat(matcher.group(1)),
+          resources.getDisplayMetrics());
+    }
+
+    private static int getUnit(String suffix) {
+      switch (suffix) {
+        case "px":
+          return TypedValue.COMPLEX_UNIT_PX;
+        case "dp":
+        case "dip":
+          return TypedValue.COMPLEX_UNIT_DIP;
+        case "sp":
+          return TypedValue.COMPLEX_UNIT_SP;
+        case "pt":
+          return TypedValue.COMPLEX_UNIT_PT;
+        case "in":
+          return TypedValue.COMPLEX_UNIT_IN;
+        case "mm":
+          return TypedValue.COMPLEX_UNIT_MM;
+        default:
+          throw new IllegalArgumentException("Unknown unit: " + suffix);
+      }
+    }
+  }
 }
@@ -0,0 +1,92 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements.android;
+
+import java.util.Locale;
+
+/**
+ * Measure, layout and draw times of one View, averaged over its last {@link #WINDOW_SIZE}
+ * samples.  Views aren't necessarily laid out each time they're sampled, so layout times are
+ * averaged over the samples that included one.
+ */
+final class RenderTimings {
+  public static final int WINDOW_SIZE = 5;
+
+  private static final float NANOS_PER_MS = 1000000f;
+
+  private final SampleWindow mMeasureSamples = new SampleWindow();
+  private final SampleWindow mLayoutSamples = new SampleWindow();
+  private final SampleWindow mDrawSamples = new SampleWindow();
+
+  public void addSample(long measureNanos, long layoutNanos, long drawNanos) {
+    addSample(measureNanos, drawNanos);
+    mLayoutSamples.add(layoutNanos);
+  }
+
+  /**
+   * Adds a sample for which the View wasn't laid out.
+   */
+  public void addSample(long measureNanos, long drawNanos) {
+    mMeasureSamples.add(measureNanos);
+    mDrawSamples.add(drawNanos);
+  }
+
+  public int getSampleCount() {
+    return mMeasureSamples.getCount();
+  }
+
+  public float getMeasureMs() {
+    return mMeasureSamples.getAverageMs();
+  }
+
+  /**
+   * @return The average layout time, or 0 if none of the samples included a layout.
+   */
+  public float getLayoutMs() {
+    return mLayoutSamples.getAverageMs();
+  }
+
+  public float getDrawMs() {
+    return mDrawSamples.getAverageMs();
+  }
+
+  public float getTotalMs() {
+    return getMeasureMs() + getLayoutMs() + getDrawMs();
+  }
+
+  /**
+   * Formats a time in the precision in which it's reported as an attribute.
+   */
+  public static String formatMs(float ms) {
+    return String.format(Locale.US, "%.2f", ms);
+  }
+
+  private static final class SampleWindow {
+    private final long[] mSamples = new long[WINDOW_SIZE];
+    private long mSum;
+    private int mCount;
+    private int mNext;
+
+    public void add(long sample) {
+      mSum += sample - mSamples[mNext];
+      mSamples[mNext] = sample;
+      mNext = (mNext + 1) % WINDOW_SIZE;
+      mCount = Math.min(mCount + 1, WINDOW_SIZE);
+    }
+
+    public int getCount() {
+      return mCount;
+    }
+
+    public float getAverageMs() {
+      return (mCount > 0) ? mSum / NANOS_PER_MS / mCount : 0f;
+    }
+  }
+}
@@ -47,6 +47,18 @@ final class TextViewDescriptor extends AbstractChainedDescriptor<TextView> {
     }
   }
 
+  @Override
+  protected int onGetContentHash(TextView element) {
+    // Hashes the characters directly: the text is often a mutable CharSequence, whose own
+    // hashCode() is its identity, and toString() would copy it.
+    CharSequence text = element.getText();
+    int hash = 0;
+    for (int i = 0, N = text.length(); i < N; ++i) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return hash;
+  }
+
   private final class ElementContext implements TextWatcher {
     private TextView mElement;
 
@@ -14,6 +14,7 @@ import com.facebook.stetho.common.StringUtil;
 import com.facebook.stetho.common.android.ResourcesUtil;
 import com.facebook.stetho.inspector.elements.AttributeAccumulator;
 import com.facebook.stetho.inspector.elements.AbstractChainedDescriptor;
+import com.facebook.stetho.inspector.elements.Descriptor;
 
 import javax.annotation.Nullable;
 import java.util.Map;
@@ -21,8 +22,35 @@ import java.util.Map;
 final class ViewDescriptor extends AbstractChainedDescriptor<View> implements HighlightableDescriptor {
   private static final String ID_ATTRIBUTE_NAME = "id";
 
+  // Only present while render profiling is enabled.  Measure and layout times cover only the View
+  // itself, but draw time includes drawing all of its descendants.
+  static final String MEASURE_TIME_ATTRIBUTE_NAME = "measure-time-ms";
+  static final String LAYOUT_TIME_ATTRIBUTE_NAME = "layout-time-ms";
+  static final String DRAW_TIME_ATTRIBUTE_NAME = "draw-time-ms";
+
   private final MethodInvoker mMethodInvoker;
 
+  // A single listener serves every View, since it's told which View was laid out.
+  private final View.OnLayoutChangeListener mLayoutChangeListener =
+      new View.OnLayoutChangeListener() {
+        @Override
+        public void onLayoutChange(
+            View v,
+            int left,
+            int top,
+            int right,
+            int bottom,
+            int oldLeft,
+            int oldTop,
+            int oldRight,
+            int oldBottom) {
+          final Descriptor.Host host = getHost();
+          if (host instanceof AndroidDescriptorHost) {
+            ((AndroidDescriptorHost) host).onViewLaidOut(v);
+          }
+        }
+      };
+
   public ViewDescriptor() {
     this(new MethodInvoker());
   }
@@ -31,6 +59,16 @@ final class ViewDescriptor extends AbstractChainedDescriptor<View> implements Hi
     mMethodInvoker = methodInvoker;
   }
 
+  @Override
+  protected void onHook(View element) {
+    element.addOnLayoutChangeListener(mLayoutChangeListener);
+  }
+
+  @Override
+  protected void onUnhook(View element) {
+    element.removeOnLayoutChangeListener(mLayoutChangeListener);
+  }
+
   @Override
   protected String onGetNodeName(View element) {
     String className = element.getClass().getName();
@@ -46,6 +84,27 @@ final class ViewDescriptor extends AbstractChainedDescriptor<View> implements Hi
     if (id != null) {
       attributes.store(ID_ATTRIBUTE_NAME, id);
     }
+
+    final Descriptor.Host host = getHost();
+    RenderTimings timings = (host instanceof AndroidDescriptorHost)
+        ? ((AndroidDescriptorHost) host).getRenderTimings(element)
+        : null;
+    if (timings != null && timings.getSampleCount() > 0) {
+      attributes.store(MEASURE_TIME_ATTRIBUTE_NAME, RenderTimings.formatMs(timings.getMeasureMs()));
+      attributes.store(LAYOUT_TIME_ATTRIBUTE_NAME, RenderTimings.formatMs(timings.getLayoutMs()));
+      attributes.store(DRAW_TIME_ATTRIBUTE_NAME, RenderTimings.formatMs(timings.getDrawMs()));
+    }
+  }
+
+  @Override
+  protected int onGetContentHash(View element) {
+    int hash = element.getId();
+    hash = 31 * hash + element.getVisibility();
+    hash = 31 * hash + element.getLeft();
+    hash = 31 * hash + element.getTop();
+    hash = 31 * hash + element.getRight();
+    hash = 31 * hash + element.getBottom();
+    return hash;
   }
 
   @Override
@@ -44,6 +44,11 @@ final class ViewGroupDescriptor extends AbstractChainedDescriptor<ViewGroup> {
     }
   }
 
+  @Override
+  protected int onGetContentHash(ViewGroup element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
+
   private boolean isChildVisible(View child) {
     return !(child instanceof DOMHiddenView);
   }
@@ -18,6 +18,7 @@ import com.facebook.stetho.common.LogUtil;
 import com.facebook.stetho.common.Util;
 
 import javax.annotation.Nullable;
+import java.lang.ref.WeakReference;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
@@ -58,10 +59,12 @@ abstract class ViewHighlighter {
     private final Handler mHandler;
     private final ViewHighlightOverlays mHighlightOverlays = ViewHighlightOverlays.newInstance();
 
-    // Only assigned on the UI thread
-    private View mHighlightedView;
+    // Only assigned on the UI thread.  Held weakly, along with the pending view, so that a
+    // highlight left on a View doesn't keep its Activity alive after it's destroyed.
+    private WeakReference<View> mHighlightedView = new WeakReference<>(null);
 
-    private AtomicReference<View> mViewToHighlight = new AtomicReference<View>();
+    private AtomicReference<WeakReference<View>> mViewToHighlight =
+        new AtomicReference<WeakReference<View>>();
     private AtomicInteger mContentColor = new AtomicInteger();
 
     private final Runnable mHighlightViewOnUiThreadRunnable = new Runnable() {
@@ -87,25 +90,28 @@ abstract class ViewHighlighter {
 
     private void setHighlightedViewImpl(@Nullable View view, int color) {
       mHandler.removeCallbacks(mHighlightViewOnUiThreadRunnable);
-      mViewToHighlight.set(view);
+      mViewToHighlight.set((view != null) ? new WeakReference<>(view) : null);
       mContentColor.set(color);
       mHandler.postDelayed(mHighlightViewOnUiThreadRunnable, 100);
     }
 
     private void highlightViewOnUiThread() {
-      final View viewToHighlight = mViewToHighlight.getAndSet(null);
-      if (viewToHighlight == mHighlightedView) {
+      final WeakReference<View> viewToHighlightRef = mViewToHighlight.getAndSet(null);
+      final View viewToHighlight = (viewToHighlightRef != null) ? viewToHighlightRef.get() : null;
+      final View highlightedView = mHighlightedView.get();
+      if (viewToHighlight == highlightedView) {
         return;
       }
 
-      if (mHighlightedView != null) {
-        mHighlightOverlays.removeHighlight(mHighlightedView);
+      if (highlightedView != null) {
+        mHighlightOverlays.removeHighlight(highlightedView);
+        mHighlightedView.clear();
       }
 
       if (viewToHighlight != null) {
 
         mHighlightOverlays.highlightView(viewToHighlight, mContentColor.get());
-        mHighlightedView = viewToHighlight;
+        mHighlightedView = new WeakReference<>(viewToHighlight);
       }
     }
   }
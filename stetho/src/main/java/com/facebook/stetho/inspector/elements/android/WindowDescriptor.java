@@ -27,6 +27,11 @@ final class WindowDescriptor extends AbstractChainedDescriptor<Window>
     }
   }
 
+  @Override
+  protected int onGetContentHash(Window element) {
+    return NO_ATTRIBUTES_CONTENT_HASH;
+  }
+
   @Override
   @Nullable
   public View getViewForHighlighting(Object element) {
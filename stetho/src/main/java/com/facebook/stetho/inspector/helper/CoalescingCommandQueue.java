@@ -0,0 +1,198 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.helper;
+
+import android.os.SystemClock;
+import com.facebook.stetho.common.LogUtil;
+import com.facebook.stetho.common.ThreadBound;
+import com.facebook.stetho.common.UncheckedCallable;
+import com.facebook.stetho.common.Util;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Runs commands on the thread of a {@link ThreadBound} in batches, so that a burst of commands
+ * (such as the Elements panel highlighting every node the mouse passes over) costs one task on
+ * that thread per frame rather than one synchronous round trip each.
+ * <p/>
+ * Commands posted with {@link #post(Object, Runnable)} complete asynchronously.  If a command with
+ * the same key is still pending, it's dropped in favor of the new one, which takes its place at
+ * the end of the queue.  Commands posted with {@link #postAndWait} go through the same queue, so
+ * they observe the effects of every command posted before them, but they ask for the batch to run
+ * as soon as possible rather than at the next frame.
+ */
+@ThreadSafe
+public final class CoalescingCommandQueue {
+  //@VisibleForTesting
+  static final long FRAME_INTERVAL_MS = 16;
+
+  private final ThreadBound mThreadBound;
+  private final Runnable mDrainRunnable = new Runnable() {
+    @Override
+    public void run() {
+      drain();
+    }
+  };
+
+  @GuardedBy("this")
+  private ArrayList<Command> mPending = new ArrayList<>();
+
+  @GuardedBy("this")
+  private ArrayList<Command> mCachedPending = new ArrayList<>();
+
+  @GuardedBy("this")
+  private boolean mDrainScheduled;
+
+  @GuardedBy("this")
+  private boolean mDrainScheduledImmediately;
+
+  @GuardedBy("this")
+  private long mLastDrainTime;
+
+  public CoalescingCommandQueue(ThreadBound threadBound) {
+    mThreadBound = Util.throwIfNull(threadBound);
+  }
+
+  /**
+   * Queues {@code command} to run asynchronously at the next batch.
+   *
+   * @param key If non-null, any pending command posted with an equal key is discarded.
+   */
+  public void post(@Nullable Object key, Runnable command) {
+    Util.throwIfNull(command);
+    synchronized (this) {
+      if (key != null) {
+        for (int i = 0, N = mPending.size(); i < N; ++i) {
+          if (key.equals(mPending.get(i).key)) {
+            mPending.remove(i);
+            break;
+          }
+        }
+      }
+      mPending.add(new Command(key, command));
+      scheduleDrain(false /* immediately */);
+    }
+  }
+
+  /**
+   * Runs {@code callable} after every command queued before it, and returns its result.
+   *
+   * @throws RuntimeException if {@link UncheckedCallable#call()} threw an exception (the cause
+   *     will be the exception that it threw).
+   */
+  public <V> V postAndWait(final UncheckedCallable<V> callable) {
+    FutureTask<V> future = new FutureTask<>(new Callable<V>() {
+      @Override
+      public V call() {
+        return callable.call();
+      }
+    });
+
+    synchronized (this) {
+      mPending.add(new Command(null /* key */, future));
+      if (!mThreadBound.checkThreadAccess()) {
+        scheduleDrain(true /* immediately */);
+      }
+    }
+
+    if (mThreadBound.checkThreadAccess()) {
+      drain();
+    }
+
+    try {
+      return Util.getUninterruptibly(future);
+    } catch (ExecutionException e) {
+      throw new RuntimeException(e.getCause());
+    }
+  }
+
+  /**
+   * Runs every pending command and waits for them to complete.
+   */
+  public void flush() {
+    postAndWait(new UncheckedCallable<Void>() {
+      @Override
+      public Void call() {
+        return null;
+      }
+    });
+  }
+
+  @GuardedBy("this")
+  private void scheduleDrain(boolean immediately) {
+    if (mDrainScheduled) {
+      if (!immediately || mDrainScheduledImmediately) {
+        return;
+      }
+      mThreadBound.removeCallbacks(mDrainRunnable);
+    }
+
+    long delayMs = 0;
+    if (!immediately) {
+      long sinceLastDrainMs = SystemClock.uptimeMillis() - mLastDrainTime;
+      delayMs = Math.max(0, FRAME_INTERVAL_MS - sinceLastDrainMs);
+    }
+
+    mThreadBound.postDelayed(mDrainRunnable, delayMs);
+    mDrainScheduled = true;
+    mDrainScheduledImmediately = immediately;
+  }
+
+  private void drain() {
+    mThreadBound.verifyThreadAccess();
+
+    ArrayList<Command> commands;
+    synchronized (this) {
+      if (mDrainScheduled) {
+        mThreadBound.removeCallbacks(mDrainRunnable);
+        mDrainScheduled = false;
+        mDrainScheduledImmediately = false;
+      }
+      mLastDrainTime = SystemClock.uptimeMillis();
+
+      commands = mPending;
+      // A command may wait on another one, in which case we drain again before it returns.
+      mPending = (mCachedPending != null) ? mCachedPending : new ArrayList<Command>();
+      mCachedPending = null;
+    }
+
+    for (int i = 0, N = commands.size(); i < N; ++i) {
+      final Command command = commands.get(i);
+      try {
+        command.runnable.run();
+      } catch (RuntimeException e) {
+        // Waited-for commands report their own failures through their future.
+        LogUtil.e(e, "Command failed");
+      }
+    }
+
+    commands.clear();
+    synchronized (this) {
+      mCachedPending = commands;
+    }
+  }
+
+  private static final class Command {
+    public final @Nullable Object key;
+    public final Runnable runnable;
+
+    public Command(@Nullable Object key, Runnable runnable) {
+      this.key = key;
+      this.runnable = runnable;
+    }
+  }
+}
@@ -9,80 +9,178 @@
 
 package com.facebook.stetho.inspector.helper;
 
-import android.util.SparseArray;
-
-import java.util.IdentityHashMap;
-import java.util.Map;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 import javax.annotation.Nullable;
 import javax.annotation.concurrent.GuardedBy;
 
+/**
+ * Assigns a unique, never reused, id to each object, compared by identity.
+ * <p/>
+ * Both directions of the mapping are kept in open-addressing tables of primitive ids, so neither
+ * lookups nor insertions box.  Modifications are serialized by {@link #mSync}, but lookups don't
+ * take it: they read the tables optimistically and only fall back to the lock if a modification
+ * raced with them, as detected by {@link #mModCount} (a seqlock).  This matters because the
+ * {@link com.facebook.stetho.inspector.elements.Document} maps every element on the UI thread
+ * while other threads resolve node ids.
+ * <p/>
+ * In weak mode, objects are only weakly referenced so that mapping an object doesn't keep it
+ * alive.  Individual objects can also be mapped weakly with {@link #putWeakObject}.  Objects that
+ * are collected are dropped from the mapping without a call to {@link #onUnmapped}, since there is
+ * nothing left to pass it.
+ */
 public class ObjectIdMapper {
+  private static final int NO_ID = 0;
+  private static final int INITIAL_CAPACITY = 16;
+
   protected final Object mSync = new Object();
 
+  private final boolean mWeakObjects;
+
+  /**
+   * Created when the first weak reference is, so that strong mappers never need to poll it.
+   */
   @GuardedBy("mSync")
-  private int mNextId = 1;
+  @Nullable
+  private ReferenceQueue<Object> mReferenceQueue;
 
   @GuardedBy("mSync")
-  private final Map<Object, Integer> mObjectToIdMap = new IdentityHashMap<Object, Integer>();
+  private int mNextId = 1;
 
   @GuardedBy("mSync")
-  private SparseArray<Object> mIdToObjectMap = new SparseArray<Object>();
+  private int mSize;
+
+  /**
+   * Incremented before and after each modification, so it is odd while one is in progress.
+   */
+  private volatile int mModCount;
+
+  private volatile Table mTable = new Table(INITIAL_CAPACITY);
+
+  public ObjectIdMapper() {
+    this(false /* weakObjects */);
+  }
+
+  /**
+   * @param weakObjects Whether to only hold weak references to mapped objects.
+   */
+  public ObjectIdMapper(boolean weakObjects) {
+    mWeakObjects = weakObjects;
+  }
 
   public void clear() {
-    SparseArray<Object> idToObjectMap;
+    ArrayList<Object> objects = new ArrayList<>();
+    ArrayList<Integer> ids = new ArrayList<>();
+
     synchronized (mSync) {
-      idToObjectMap = mIdToObjectMap;
-      mObjectToIdMap.clear();
-      mIdToObjectMap = new SparseArray<Object>();
+      Table table = mTable;
+      for (int i = 0, N = table.capacity(); i < N; ++i) {
+        final int id = table.idKeys.get(i);
+        final Object object = (id != NO_ID) ? unwrap(table.idObjects.get(i)) : null;
+        if (object != null) {
+          objects.add(object);
+          ids.add(id);
+        }
+      }
+
+      beginModification();
+      mTable = new Table(INITIAL_CAPACITY);
+      mSize = 0;
+      endModification();
+
+      if (mReferenceQueue != null) {
+        while (mReferenceQueue.poll() != null) {
+          // Nothing left to expunge them from.
+        }
+      }
     }
 
-    int size = idToObjectMap.size();
-    for (int i = 0; i < size; ++i) {
-      int id = idToObjectMap.keyAt(i);
-      Object object = idToObjectMap.valueAt(i);
-      onUnmapped(object, id);
+    for (int i = 0, N = objects.size(); i < N; ++i) {
+      onUnmapped(objects.get(i), ids.get(i));
     }
   }
 
   public boolean containsId(int id) {
-    synchronized (mSync) {
-      return mIdToObjectMap.get(id) != null;
-    }
+    return getObjectForId(id) != null;
   }
 
   public boolean containsObject(Object object) {
-    synchronized (mSync) {
-      return mObjectToIdMap.containsKey(object);
-    }
+    return findId(object) != NO_ID;
   }
 
   @Nullable
   public Object getObjectForId(int id) {
+    if (id == NO_ID) {
+      return null;
+    }
+
+    int modCount = mModCount;
+    if ((modCount & 1) == 0) {
+      Object object = mTable.findObject(id);
+      if (mModCount == modCount) {
+        return object;
+      }
+    }
+
     synchronized (mSync) {
-      return mIdToObjectMap.get(id);
+      return mTable.findObject(id);
     }
   }
 
   @Nullable
   public Integer getIdForObject(Object object) {
-    synchronized (mSync) {
-      return mObjectToIdMap.get(object);
-    }
+    int id = findId(object);
+    return (id != NO_ID) ? id : null;
   }
 
   public int putObject(Object object) {
-    Integer id;
+    return put(object, mWeakObjects);
+  }
+
+  /**
+   * Like {@link #putObject}, but only holds a weak reference to {@code object} even if this
+   * mapper isn't in weak mode.  An object that's already mapped keeps its id and its existing
+   * reference.
+   */
+  public int putWeakObject(Object object) {
+    return put(object, true /* weak */);
+  }
+
+  private int put(Object object, boolean weak) {
+    int id;
 
     synchronized (mSync) {
-      id = mObjectToIdMap.get(object);
-      if (id != null) {
+      expungeCollectedObjects();
+
+      Table table = mTable;
+      id = table.findId(object);
+      if (id != NO_ID) {
         return id;
       }
 
       id = mNextId++;
-      mObjectToIdMap.put(object, id);
-      mIdToObjectMap.put(id, object);
+      final Object stored;
+      if (weak) {
+        if (mReferenceQueue == null) {
+          mReferenceQueue = new ReferenceQueue<>();
+        }
+        stored = new WeakSlot(object, id, mReferenceQueue);
+      } else {
+        stored = object;
+      }
+
+      beginModification();
+      if ((mSize + 1) * 2 > table.capacity()) {
+        table = table.grow();
+        mTable = table;
+      }
+      table.insert(stored, id);
+      ++mSize;
+      endModification();
     }
 
     onMapped(object, id);
@@ -94,13 +192,14 @@ public class ObjectIdMapper {
     Object object;
 
     synchronized (mSync) {
-      object = mIdToObjectMap.get(id);
+      expungeCollectedObjects();
+
+      object = mTable.findObject(id);
       if (object == null) {
         return null;
       }
 
-      mIdToObjectMap.remove(id);
-      mObjectToIdMap.remove(object);
+      remove(object, id);
     }
 
     onUnmapped(object, id);
@@ -109,15 +208,17 @@ public class ObjectIdMapper {
 
   @Nullable
   public Integer removeObject(Object object) {
-    Integer id;
+    int id;
 
     synchronized (mSync) {
-      id = mObjectToIdMap.remove(object);
-      if (id == null) {
+      expungeCollectedObjects();
+
+      id = mTable.findId(object);
+      if (id == NO_ID) {
         return null;
       }
 
-      mIdToObjectMap.remove(id);
+      remove(object, id);
     }
 
     onUnmapped(object, id);
@@ -126,7 +227,8 @@ public class ObjectIdMapper {
 
   public int size() {
     synchronized (mSync) {
-      return mObjectToIdMap.size();
+      expungeCollectedObjects();
+      return mSize;
     }
   }
 
@@ -135,4 +237,252 @@ public class ObjectIdMapper {
 
   protected void onUnmapped(Object object, int id) {
   }
+
+  private int findId(Object object) {
+    int modCount = mModCount;
+    if ((modCount & 1) == 0) {
+      int id = mTable.findId(object);
+      if (mModCount == modCount) {
+        return id;
+      }
+    }
+
+    synchronized (mSync) {
+      return mTable.findId(object);
+    }
+  }
+
+  @GuardedBy("mSync")
+  private void remove(Object object, int id) {
+    beginModification();
+    mTable.removeObject(object, identityHash(object));
+    mTable.removeId(id);
+    --mSize;
+    endModification();
+  }
+
+  @GuardedBy("mSync")
+  private void expungeCollectedObjects() {
+    if (mReferenceQueue == null) {
+      return;
+    }
+
+    WeakSlot slot = (WeakSlot) mReferenceQueue.poll();
+    if (slot == null) {
+      return;
+    }
+
+    beginModification();
+    do {
+      if (mTable.removeObject(slot, slot.hash)) {
+        mTable.removeId(slot.id);
+        --mSize;
+      }
+      slot = (WeakSlot) mReferenceQueue.poll();
+    } while (slot != null);
+    endModification();
+  }
+
+  @GuardedBy("mSync")
+  private void beginModification() {
+    mModCount = mModCount + 1;
+  }
+
+  @GuardedBy("mSync")
+  private void endModification() {
+    mModCount = mModCount + 1;
+  }
+
+  private static int identityHash(Object object) {
+    return mix(System.identityHashCode(object));
+  }
+
+  private static int mix(int hash) {
+    // Spread the bits so that sequential ids and clustered identity hashes don't collide.
+    hash *= 0x9E3779B9;
+    return hash ^ (hash >>> 16);
+  }
+
+  @Nullable
+  private static Object unwrap(@Nullable Object stored) {
+    return (stored instanceof WeakSlot) ? ((WeakSlot) stored).get() : stored;
+  }
+
+  private static int hashOf(Object stored) {
+    return (stored instanceof WeakSlot) ? ((WeakSlot) stored).hash : identityHash(stored);
+  }
+
+  private static final class WeakSlot extends WeakReference<Object> {
+    public final int id;
+    public final int hash;
+
+    public WeakSlot(Object object, int id, ReferenceQueue<Object> queue) {
+      super(object, queue);
+      this.id = id;
+      this.hash = identityHash(object);
+    }
+  }
+
+  /**
+   * A pair of linear probing tables, one from (possibly weakly held) objects to ids and the
+   * other from ids back to objects.  Slots are atomic so that lookups racing with a modification
+   * see each write in order, and can rely on {@link #mModCount} to detect the race.
+   */
+  private static final class Table {
+    private final int mMask;
+
+    public final AtomicReferenceArray<Object> objectKeys;
+    public final AtomicIntegerArray objectIds;
+    public final AtomicIntegerArray idKeys;
+    public final AtomicReferenceArray<Object> idObjects;
+
+    public Table(int capacity) {
+      mMask = capacity - 1;
+      objectKeys = new AtomicReferenceArray<>(capacity);
+      objectIds = new AtomicIntegerArray(capacity);
+      idKeys = new AtomicIntegerArray(capacity);
+      idObjects = new AtomicReferenceArray<>(capacity);
+    }
+
+    public int capacity() {
+      return mMask + 1;
+    }
+
+    public Table grow() {
+      Table table = new Table(capacity() * 2);
+      for (int i = 0; i <= mMask; ++i) {
+        final Object stored = objectKeys.get(i);
+        if (stored != null) {
+          table.insert(stored, objectIds.get(i));
+        }
+      }
+      return table;
+    }
+
+    public int findId(Object object) {
+      // Bound the probe so that a racing modification can't keep us here forever.
+      for (int i = identityHash(object) & mMask, probes = 0; probes <= mMask; ++probes) {
+        final Object stored = objectKeys.get(i);
+        if (stored == null) {
+          return NO_ID;
+        }
+        if (unwrap(stored) == object) {
+          return objectIds.get(i);
+        }
+        i = (i + 1) & mMask;
+      }
+      return NO_ID;
+    }
+
+    @Nullable
+    public Object findObject(int id) {
+      for (int i = mix(id) & mMask, probes = 0; probes <= mMask; ++probes) {
+        final int storedId = idKeys.get(i);
+        if (storedId == NO_ID) {
+          return null;
+        }
+        if (storedId == id) {
+          return unwrap(idObjects.get(i));
+        }
+        i = (i + 1) & mMask;
+      }
+      return null;
+    }
+
+    public void insert(Object stored, int id) {
+      int i = hashOf(stored) & mMask;
+      while (objectKeys.get(i) != null) {
+        i = (i + 1) & mMask;
+      }
+      objectIds.set(i, id);
+      objectKeys.set(i, stored);
+
+      i = mix(id) & mMask;
+      while (idKeys.get(i) != NO_ID) {
+        i = (i + 1) & mMask;
+      }
+      idObjects.set(i, stored);
+      idKeys.set(i, id);
+    }
+
+    /**
+     * @param key Either a mapped object or the {@link WeakSlot} holding it.
+     * @return Whether the key was found.
+     */
+    public boolean removeObject(Object key, int hash) {
+      for (int i = hash & mMask; ; i = (i + 1) & mMask) {
+        final Object stored = objectKeys.get(i);
+        if (stored == null) {
+          return false;
+        }
+        if (stored == key || unwrap(stored) == key) {
+          objectKeys.set(i, null);
+          closeObjectGap(i);
+          return true;
+        }
+      }
+    }
+
+    public void removeId(int id) {
+      for (int i = mix(id) & mMask; ; i = (i + 1) & mMask) {
+        final int storedId = idKeys.get(i);
+        if (storedId == NO_ID) {
+          return;
+        }
+        if (storedId == id) {
+          idKeys.set(i, NO_ID);
+          idObjects.set(i, null);
+          closeIdGap(i);
+          return;
+        }
+      }
+    }
+
+    /**
+     * Shifts back any entries after the empty slot at {@code gap} which would otherwise no longer
+     * be reachable from their home slot, so that we don't need tombstones.
+     */
+    private void closeObjectGap(int gap) {
+      for (int i = (gap + 1) & mMask; ; i = (i + 1) & mMask) {
+        final Object stored = objectKeys.get(i);
+        if (stored == null) {
+          return;
+        }
+        if (isOutsideRun(hashOf(stored) & mMask, gap, i)) {
+          objectIds.set(gap, objectIds.get(i));
+          objectKeys.set(gap, stored);
+          objectKeys.set(i, null);
+          gap = i;
+        }
+      }
+    }
+
+    private void closeIdGap(int gap) {
+      for (int i = (gap + 1) & mMask; ; i = (i + 1) & mMask) {
+        final int storedId = idKeys.get(i);
+        if (storedId == NO_ID) {
+          return;
+        }
+        if (isOutsideRun(mix(storedId) & mMask, gap, i)) {
+          idObjects.set(gap, idObjects.get(i));
+          idKeys.set(gap, storedId);
+          idKeys.set(i, NO_ID);
+          idObjects.set(i, null);
+          gap = i;
+        }
+      }
+    }
+
+    /**
+     * @return Whether an entry at {@code index} with the given home slot must move to
+     *     {@code gap} to remain reachable, i.e. its home doesn't lie cyclically in (gap, index].
+     */
+    private static boolean isOutsideRun(int home, int gap, int index) {
+      if (gap <= index) {
+        return home <= gap || home > index;
+      } else {
+        return home <= gap && home > index;
+      }
+    }
+  }
 }
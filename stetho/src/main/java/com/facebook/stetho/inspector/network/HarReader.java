@@ -0,0 +1,122 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import javax.annotation.Nullable;
+
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Parses a HAR 1.2 document (such as one produced by {@link HarWriter}) back into
+ * {@link NetworkLog.Entry} objects.  Timings are reconstructed relative to each entry's start
+ * time since the original monotonic clock values are not preserved by the format.
+ */
+public class HarReader {
+  private HarReader() {
+  }
+
+  public static List<NetworkLog.Entry> read(String har) throws JSONException {
+    JSONObject log = new JSONObject(har).getJSONObject("log");
+    JSONArray entriesJSON = log.getJSONArray("entries");
+    ArrayList<NetworkLog.Entry> entries = new ArrayList<>(entriesJSON.length());
+    SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+    for (int i = 0, n = entriesJSON.length(); i < n; i++) {
+      entries.add(readEntry(entriesJSON.getJSONObject(i), dateFormat, i));
+    }
+    return entries;
+  }
+
+  private static NetworkLog.Entry readEntry(
+      JSONObject entryJSON,
+      SimpleDateFormat dateFormat,
+      int index) throws JSONException {
+    NetworkLog.Entry entry = new NetworkLog.Entry();
+    entry.requestId = "har-" + index;
+    entry.startedDateTime = parseDate(dateFormat, entryJSON.optString("startedDateTime"));
+
+    JSONObject request = entryJSON.getJSONObject("request");
+    entry.method = request.getString("method");
+    entry.url = request.getString("url");
+    entry.requestHeaders = readHeaders(request.optJSONArray("headers"));
+    JSONObject postData = request.optJSONObject("postData");
+    if (postData != null) {
+      entry.postData = postData.optString("text", null);
+      entry.postDataMimeType = postData.optString("mimeType", null);
+    }
+    entry.requestBodySize = Math.max(request.optLong("bodySize", 0), 0);
+
+    JSONObject response = entryJSON.getJSONObject("response");
+    entry.statusCode = response.optInt("status");
+    entry.reasonPhrase = response.optString("statusText", null);
+    entry.responseHeaders = readHeaders(response.optJSONArray("headers"));
+    JSONObject content = response.optJSONObject("content");
+    if (content != null) {
+      entry.mimeType = content.optString("mimeType", null);
+      entry.dataLength = Math.max(content.optLong("size", 0), 0);
+      entry.encodedDataLength = Math.max(
+          entry.dataLength - Math.max(content.optLong("compression", 0), 0),
+          0);
+    }
+
+    JSONObject timings = entryJSON.optJSONObject("timings");
+    long wait = timings != null ? timings.optLong("wait", -1) : -1;
+    long receive = timings != null ? timings.optLong("receive", -1) : -1;
+    entry.requestTime = 0;
+    if (wait >= 0) {
+      // Note that ssl is already included in connect.
+      entry.responseTime =
+          Math.max(timings.optLong("blocked", -1), 0) +
+          Math.max(timings.optLong("dns", -1), 0) +
+          Math.max(timings.optLong("connect", -1), 0) +
+          Math.max(timings.optLong("send", -1), 0) +
+          wait;
+      if (receive >= 0) {
+        entry.endTime = entry.responseTime + receive;
+      }
+    } else {
+      entry.endTime = Math.max(entryJSON.optLong("time", 0), 0);
+    }
+    entry.errorText = entryJSON.optString("_error", null);
+    return entry;
+  }
+
+  private static String[] readHeaders(@Nullable JSONArray headersJSON) throws JSONException {
+    if (headersJSON == null) {
+      return new String[0];
+    }
+    String[] namesAndValues = new String[headersJSON.length() * 2];
+    for (int i = 0, n = headersJSON.length(); i < n; i++) {
+      JSONObject header = headersJSON.getJSONObject(i);
+      namesAndValues[i * 2] = header.getString("name");
+      namesAndValues[i * 2 + 1] = header.getString("value");
+    }
+    return namesAndValues;
+  }
+
+  private static long parseDate(SimpleDateFormat dateFormat, String date) {
+    try {
+      Date parsed = dateFormat.parse(date);
+      return parsed.getTime();
+    } catch (ParseException e) {
+      return 0;
+    }
+  }
+}
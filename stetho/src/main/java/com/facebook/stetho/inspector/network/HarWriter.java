@@ -0,0 +1,230 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import com.facebook.stetho.inspector.protocol.module.Network;
+
+import javax.annotation.Nullable;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Streaming writer for the <a href="http://www.softwareishard.com/blog/har-12-spec/">HAR 1.2</a>
+ * format.  Entries are written one at a time so that exporting a large {@link NetworkLog} does
+ * not require building the whole document in memory first.
+ * <p />
+ * Usage: {@link #beginLog}, any number of {@link #writeEntry} calls, then {@link #endLog}.
+ */
+public class HarWriter {
+  static final String HAR_VERSION = "1.2";
+  static final String CREATOR_NAME = "Stetho";
+  static final String UNKNOWN_HTTP_VERSION = "unknown";
+
+  private final Writer mWriter;
+  private final SimpleDateFormat mDateFormat;
+  private boolean mFirstEntry = true;
+
+  public HarWriter(Writer writer) {
+    mWriter = writer;
+    mDateFormat = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.US);
+    mDateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+  }
+
+  public void beginLog() throws IOException {
+    mWriter.write("{\"log\":{\"version\":");
+    writeString(HAR_VERSION);
+    mWriter.write(",\"creator\":{\"name\":");
+    writeString(CREATOR_NAME);
+    mWriter.write(",\"version\":");
+    writeString(HAR_VERSION);
+    mWriter.write("},\"entries\":[");
+  }
+
+  public void writeEntry(NetworkLog.Entry entry) throws IOException {
+    if (!mFirstEntry) {
+      mWriter.write(',');
+    }
+    mFirstEntry = false;
+
+    long dns = -1;
+    long connect = -1;
+    long ssl = -1;
+    long send = -1;
+    long wait = entry.responseTime >= 0 && entry.requestTime >= 0 ?
+        entry.responseTime - entry.requestTime :
+        -1;
+    Network.ResourceTiming timing = entry.timing;
+    if (timing != null) {
+      dns = phaseDuration(timing.dnsStart, timing.dnsEnd);
+      connect = phaseDuration(timing.connectionStart, timing.connectionEnd);
+      ssl = phaseDuration(timing.sslStart, timing.sslEnd);
+      send = phaseDuration(timing.sendStart, timing.sendEnd);
+      if (wait >= 0) {
+        // Waiting starts once the last phase we know about has ended.
+        double waitStart = Math.max(
+            Math.max(timing.dnsEnd, timing.connectionEnd),
+            Math.max(timing.sslEnd, timing.sendEnd));
+        if (waitStart > 0) {
+          wait = Math.max(wait - Math.round(waitStart), 0);
+        }
+      }
+    }
+    long receive = entry.endTime >= 0 && entry.responseTime >= 0 ?
+        entry.endTime - entry.responseTime :
+        -1;
+    long total = entry.endTime >= 0 && entry.requestTime >= 0 ?
+        entry.endTime - entry.requestTime :
+        -1;
+
+    mWriter.write("{\"startedDateTime\":");
+    writeString(mDateFormat.format(new Date(entry.startedDateTime)));
+    mWriter.write(",\"time\":");
+    mWriter.write(String.valueOf(Math.max(total, 0)));
+
+    mWriter.write(",\"request\":{\"method\":");
+    writeString(entry.method);
+    mWriter.write(",\"url\":");
+    writeString(entry.url);
+    mWriter.write(",\"httpVersion\":");
+    writeString(UNKNOWN_HTTP_VERSION);
+    mWriter.write(",\"cookies\":[],\"headers\":");
+    writeHeaders(entry.requestHeaders);
+    mWriter.write(",\"queryString\":[]");
+    boolean hasPostData = entry.postData != null || entry.postDataTruncated;
+    if (hasPostData) {
+      mWriter.write(",\"postData\":{\"mimeType\":");
+      writeString(entry.postDataMimeType != null ? entry.postDataMimeType : "");
+      mWriter.write(",\"text\":");
+      writeString(entry.postData != null ? entry.postData : "");
+      if (entry.postDataTruncated) {
+        mWriter.write(",\"comment\":");
+        writeString("truncated");
+      }
+      mWriter.write('}');
+    }
+    mWriter.write(",\"headersSize\":-1,\"bodySize\":");
+    long requestBodySize;
+    if (!hasPostData) {
+      requestBodySize = 0;
+    } else {
+      requestBodySize = entry.requestBodySize > 0 ? entry.requestBodySize : -1;
+    }
+    mWriter.write(String.valueOf(requestBodySize));
+    mWriter.write('}');
+
+    mWriter.write(",\"response\":{\"status\":");
+    mWriter.write(String.valueOf(entry.statusCode));
+    mWriter.write(",\"statusText\":");
+    writeString(entry.reasonPhrase != null ? entry.reasonPhrase : "");
+    mWriter.write(",\"httpVersion\":");
+    writeString(UNKNOWN_HTTP_VERSION);
+    mWriter.write(",\"cookies\":[],\"headers\":");
+    writeHeaders(entry.responseHeaders);
+    mWriter.write(",\"content\":{\"size\":");
+    mWriter.write(String.valueOf(entry.dataLength));
+    mWriter.write(",\"compression\":");
+    mWriter.write(String.valueOf(Math.max(entry.dataLength - entry.encodedDataLength, 0)));
+    mWriter.write(",\"mimeType\":");
+    writeString(entry.mimeType != null ? entry.mimeType : "");
+    mWriter.write("},\"redirectURL\":\"\",\"headersSize\":-1,\"bodySize\":");
+    mWriter.write(String.valueOf(entry.isComplete() ? entry.encodedDataLength : -1));
+    mWriter.write('}');
+
+    mWriter.write(",\"cache\":{},\"timings\":{\"blocked\":-1,\"dns\":");
+    mWriter.write(String.valueOf(dns));
+    mWriter.write(",\"connect\":");
+    mWriter.write(String.valueOf(connect));
+    mWriter.write(",\"send\":");
+    mWriter.write(String.valueOf(send));
+    mWriter.write(",\"wait\":");
+    mWriter.write(String.valueOf(wait));
+    mWriter.write(",\"receive\":");
+    mWriter.write(String.valueOf(receive));
+    mWriter.write(",\"ssl\":");
+    mWriter.write(String.valueOf(ssl));
+    mWriter.write('}');
+
+    mWriter.write(",\"connection\":");
+    writeString(String.valueOf(entry.connectionId));
+    if (entry.errorText != null) {
+      mWriter.write(",\"_error\":");
+      writeString(entry.errorText);
+    }
+    mWriter.write('}');
+  }
+
+  public void endLog() throws IOException {
+    mWriter.write("]}}");
+    mWriter.flush();
+  }
+
+  /**
+   * Length of a phase in milliseconds, or -1 if either end of it was not observed.
+   */
+  private static long phaseDuration(double start, double end) {
+    return start >= 0 && end >= start ? Math.round(end - start) : -1;
+  }
+
+  private void writeHeaders(String[] namesAndValues) throws IOException {
+    mWriter.write('[');
+    for (int i = 0; i < namesAndValues.length; i += 2) {
+      if (i > 0) {
+        mWriter.write(',');
+      }
+      mWriter.write("{\"name\":");
+      writeString(namesAndValues[i]);
+      mWriter.write(",\"value\":");
+      writeString(namesAndValues[i + 1]);
+      mWriter.write('}');
+    }
+    mWriter.write(']');
+  }
+
+  private void writeString(@Nullable String value) throws IOException {
+    if (value == null) {
+      mWriter.write("null");
+      return;
+    }
+    mWriter.write('"');
+    for (int i = 0, n = value.length(); i < n; i++) {
+      char c = value.charAt(i);
+      switch (c) {
+        case '"':
+          mWriter.write("\\\"");
+          break;
+        case '\\':
+          mWriter.write("\\\\");
+          break;
+        case '\n':
+          mWriter.write("\\n");
+          break;
+        case '\r':
+          mWriter.write("\\r");
+          break;
+        case '\t':
+          mWriter.write("\\t");
+          break;
+        default:
+          if (c < 0x20 || c == '\u2028' || c == '\u2029') {
+            mWriter.write(String.format(Locale.US, "\\u%04x", (int) c));
+          } else {
+            mWriter.write(c);
+          }
+          break;
+      }
+    }
+    mWriter.write('"');
+  }
+}
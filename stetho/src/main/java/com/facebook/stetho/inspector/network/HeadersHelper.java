@@ -0,0 +1,126 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Encodes {@link NetworkEventReporter.InspectorHeaders} into the {@link JSONObject} form
+ * expected by the {@code Network} domain.  Headers are written into the outgoing object in
+ * a single pass and duplicate header names are merged without repeatedly re-reading and
+ * re-concatenating the accumulated value.
+ */
+final class HeadersHelper {
+  /**
+   * Common header names, used to canonicalize the name strings handed to us by the HTTP stack
+   * so that the (potentially long-lived) JSON objects we build share a single instance of each.
+   */
+  private static final Map<String, String> sCommonHeaderNames = new HashMap<>();
+
+  static {
+    String[] names = new String[] {
+        "Accept",
+        "Accept-Encoding",
+        "Accept-Language",
+        "Accept-Ranges",
+        "Age",
+        "Authorization",
+        "Cache-Control",
+        "Connection",
+        "Content-Encoding",
+        "Content-Length",
+        "Content-Type",
+        "Cookie",
+        "Date",
+        "ETag",
+        "Expires",
+        "Host",
+        "If-Modified-Since",
+        "If-None-Match",
+        "Last-Modified",
+        "Location",
+        "Pragma",
+        "Server",
+        "Set-Cookie",
+        "Transfer-Encoding",
+        "User-Agent",
+        "Vary",
+        "Via",
+        "X-Android-Received-Millis",
+        "X-Android-Response-Source",
+        "X-Android-Selected-Protocol",
+        "X-Android-Sent-Millis",
+        "X-Cache",
+        "X-Powered-By",
+    };
+    for (String name : names) {
+      sCommonHeaderNames.put(name, name);
+      String lowerCaseName = name.toLowerCase(Locale.US);
+      sCommonHeaderNames.put(lowerCaseName, lowerCaseName);
+    }
+  }
+
+  private HeadersHelper() {
+  }
+
+  public static JSONObject formatHeadersAsJSON(NetworkEventReporter.InspectorHeaders headers) {
+    JSONObject json = new JSONObject();
+
+    // Lazily allocated only when a duplicate name is actually encountered, which is the
+    // uncommon case (typically just Set-Cookie).
+    Map<String, StringBuilder> merged = null;
+
+    try {
+      for (int i = 0, count = headers.headerCount(); i < count; i++) {
+        String name = internHeaderName(headers.headerName(i));
+        String value = headers.headerValue(i);
+        if (merged != null) {
+          StringBuilder builder = merged.get(name);
+          if (builder != null) {
+            // Multiple headers are separated with a new line.
+            builder.append('\n').append(value);
+            continue;
+          }
+        }
+        Object existing = json.opt(name);
+        if (existing == null) {
+          json.put(name, value);
+        } else {
+          if (merged == null) {
+            merged = new HashMap<>();
+          }
+          StringBuilder builder = new StringBuilder((String) existing);
+          builder.append('\n').append(value);
+          merged.put(name, builder);
+        }
+      }
+
+      if (merged != null) {
+        for (Map.Entry<String, StringBuilder> entry : merged.entrySet()) {
+          json.put(entry.getKey(), entry.getValue().toString());
+        }
+      }
+    } catch (JSONException e) {
+      throw new RuntimeException(e);
+    }
+    return json;
+  }
+
+  //@VisibleForTesting
+  static String internHeaderName(String name) {
+    String common = sCommonHeaderNames.get(name);
+    return common != null ? common : name;
+  }
+}
@@ -9,30 +9,46 @@
 
 package com.facebook.stetho.inspector.network;
 
-import android.os.SystemClock;
+import com.facebook.stetho.common.LogRedirector;
 import com.facebook.stetho.common.Utf8Charset;
 import com.facebook.stetho.inspector.console.CLog;
+import com.facebook.stetho.inspector.helper.ChromePeerManager;
 import com.facebook.stetho.inspector.protocol.module.Console;
 import com.facebook.stetho.inspector.protocol.module.Network;
 import com.facebook.stetho.inspector.protocol.module.Page;
 import org.apache.http.protocol.HTTP;
-import org.json.JSONException;
-import org.json.JSONObject;
 
 import javax.annotation.Nonnull;
 import javax.annotation.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Implementation of {@link NetworkEventReporter} which allows callers to inform the Stetho
  * system of network traffic.  Callers can safely eagerly access this class and store a
  * reference if they wish.  When WebKit Inspector clients are connected, the internal
  * implementation will be automatically wired up to them.
+ * <p/>
+ * This implementation also accepts phase timings via {@link NetworkTimingReporter}.
  */
-public class NetworkEventReporterImpl implements NetworkEventReporter {
+public class NetworkEventReporterImpl implements NetworkEventReporter, NetworkTimingReporter {
+  private static final String TAG = "NetworkEventReporterImpl";
+  private static final String CHARSET_PARAM = "charset=";
+  private static final int BINARY_SNIFF_LENGTH = 512;
+
+  /**
+   * Stand-in for the Network domain's peers when only the {@link NetworkLog} is observing a
+   * response.  Nothing is ever registered with it, so console messages sent to it are dropped.
+   */
+  private static final ChromePeerManager NO_PEERS = new ChromePeerManager();
+
+  private final ResourceTimingTracker mTimingTracker = new ResourceTimingTracker();
+
   @Nullable
   private ResourceTypeHelper mResourceTypeHelper;
 
@@ -55,7 +71,7 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
   @Override
   public boolean isEnabled() {
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
-    return peerManager != null;
+    return peerManager != null || getNetworkLogIfEnabled() != null;
   }
 
   @Nullable
@@ -67,15 +83,34 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
     return null;
   }
 
+  @Nullable
+  private static NetworkLog getNetworkLogIfEnabled() {
+    NetworkLog networkLog = NetworkLog.get();
+    return networkLog.isEnabled() ? networkLog : null;
+  }
+
   @Override
   public void requestWillBeSent(InspectorRequest request) {
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (peerManager == null && networkLog == null) {
+      return;
+    }
+
+    String postData = readBodyAsString(peerManager, request);
+    long nowNanos = System.nanoTime();
+    long now = TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    mTimingTracker.requestStarted(request.id(), nowNanos);
+    if (networkLog != null) {
+      networkLog.requestWillBeSent(request, postData, System.currentTimeMillis(), now);
+    }
+
     if (peerManager != null) {
       Network.Request requestJSON = new Network.Request();
       requestJSON.url = request.url();
       requestJSON.method = request.method();
-      requestJSON.headers = formatHeadersAsJSON(request);
-      requestJSON.postData = readBodyAsString(peerManager, request);
+      requestJSON.headers = HeadersHelper.formatHeadersAsJSON(request);
+      requestJSON.postData = postData;
 
       // Hack to use the initiator of SCRIPT to generate a fake call stack that includes
       // the request's "friendly" name.
@@ -95,7 +130,7 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
       params.loaderId = "1";
       params.documentURL = request.url();
       params.request = requestJSON;
-      params.timestamp = stethoNow() / 1000.0;
+      params.timestamp = now / 1000.0;
       params.initiator = initiatorJSON;
       params.redirectResponse = null;
 
@@ -110,44 +145,119 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
 
   @Nullable
   private static String readBodyAsString(
-      NetworkPeerManager peerManager,
+      @Nullable NetworkPeerManager peerManager,
       InspectorRequest request) {
     try {
       byte[] body = request.body();
       if (body != null) {
-        return new String(body, Utf8Charset.INSTANCE);
+        return decodeBodyForDisplay(body, request.firstHeaderValue(HTTP.CONTENT_TYPE));
       }
     } catch (IOException | OutOfMemoryError e) {
-      CLog.writeToConsole(
-          peerManager,
-          Console.MessageLevel.WARNING,
-          Console.MessageSource.NETWORK,
-          "Could not reproduce POST body: " + e);
+      String message = "Could not reproduce POST body: " + e;
+      if (peerManager != null) {
+        CLog.writeToConsole(
+            peerManager,
+            Console.MessageLevel.WARNING,
+            Console.MessageSource.NETWORK,
+            message);
+      } else {
+        LogRedirector.w(TAG, message);
+      }
     }
     return null;
   }
 
+  /**
+   * Decode a captured request body for display, honoring the {@code charset} parameter of the
+   * supplied content type.  Bodies which are evidently binary are summarized rather than being
+   * forced through a text decoder, which would otherwise produce a large, useless string.
+   */
+  //@VisibleForTesting
+  static String decodeBodyForDisplay(byte[] body, @Nullable String contentType) {
+    if (isBinaryBody(body, contentType)) {
+      return "[" + body.length + " bytes of binary data]";
+    }
+    return new String(body, getCharset(contentType));
+  }
+
+  private static boolean isBinaryBody(byte[] body, @Nullable String contentType) {
+    if (contentType != null) {
+      String mimeType = contentType.toLowerCase(Locale.US);
+      if (mimeType.startsWith("image/") ||
+          mimeType.startsWith("audio/") ||
+          mimeType.startsWith("video/") ||
+          mimeType.startsWith("application/octet-stream") ||
+          mimeType.startsWith("application/x-protobuf")) {
+        return true;
+      }
+    }
+    // Text encodings we would reasonably expect here never contain NUL in the first few
+    // hundred bytes, whereas nearly every binary format does.
+    for (int i = 0, n = Math.min(body.length, BINARY_SNIFF_LENGTH); i < n; i++) {
+      if (body[i] == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static Charset getCharset(@Nullable String contentType) {
+    if (contentType != null) {
+      int index = contentType.toLowerCase(Locale.US).indexOf(CHARSET_PARAM);
+      if (index >= 0) {
+        int start = index + CHARSET_PARAM.length();
+        int end = contentType.indexOf(';', start);
+        String charsetName = end >= 0 ?
+            contentType.substring(start, end) :
+            contentType.substring(start);
+        charsetName = charsetName.trim().replace("\"", "");
+        try {
+          return Charset.forName(charsetName);
+        } catch (IllegalArgumentException e) {
+          // Fall through to the default.
+        }
+      }
+    }
+    return Utf8Charset.INSTANCE;
+  }
+
   @Override
   public void responseHeadersReceived(InspectorResponse response) {
+    // Always claim the pending timings, even if the peer went away in the meantime.
+    long nowNanos = System.nanoTime();
+    Network.ResourceTiming timing = mTimingTracker.finish(response.requestId(), nowNanos);
+
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (peerManager == null && networkLog == null) {
+      return;
+    }
+
+    String contentType = getContentType(response);
+    String mimeType = contentType != null ?
+        getResourceTypeHelper().stripContentExtras(contentType) :
+        "application/octet-stream";
+    long now = TimeUnit.NANOSECONDS.toMillis(nowNanos);
+    if (networkLog != null) {
+      networkLog.responseHeadersReceived(response, mimeType, now, timing);
+    }
+
     if (peerManager != null) {
       Network.Response responseJSON = new Network.Response();
       responseJSON.url = response.url();
       responseJSON.status = response.statusCode();
       responseJSON.statusText = response.reasonPhrase();
-      responseJSON.headers = formatHeadersAsJSON(response);
-      String contentType = getContentType(response);
-      responseJSON.mimeType = contentType != null ?
-          getResourceTypeHelper().stripContentExtras(contentType) :
-          "application/octet-stream";
+      responseJSON.headers = HeadersHelper.formatHeadersAsJSON(response);
+      responseJSON.mimeType = mimeType;
       responseJSON.connectionReused = response.connectionReused();
       responseJSON.connectionId = response.connectionId();
       responseJSON.fromDiskCache = response.fromDiskCache();
+      responseJSON.timing = timing;
       Network.ResponseReceivedParams receivedParams = new Network.ResponseReceivedParams();
       receivedParams.requestId = response.requestId();
       receivedParams.frameId = "1";
       receivedParams.loaderId = "1";
-      receivedParams.timestamp = stethoNow() / 1000.0;
+      receivedParams.timestamp = now / 1000.0;
       receivedParams.response = responseJSON;
       AsyncPrettyPrinter asyncPrettyPrinter =
           initAsyncPrettyPrinterForResponse(response, peerManager);
@@ -247,6 +357,20 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
             Console.MessageSource.NETWORK,
             "Error writing response body data for request #" + requestId);
       }
+    } else if (getNetworkLogIfEnabled() != null) {
+      if (availableInputStream == null) {
+        responseHandler.onEOF();
+        return null;
+      }
+      // Nobody is attached to look at the body, but the network log still needs to observe
+      // the size of the response and when it was fully consumed.
+      return new ResponseHandlingInputStream(
+          availableInputStream,
+          requestId,
+          new NullOutputStream(),
+          null /* decompressedCounter */,
+          NO_PEERS,
+          responseHandler);
     }
     return availableInputStream;
   }
@@ -262,11 +386,19 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
   }
 
   private void loadingFinished(String requestId) {
+    mTimingTracker.discard(requestId);
+
+    long now = stethoNow();
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (networkLog != null) {
+      networkLog.loadingFinished(requestId, now);
+    }
+
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
     if (peerManager != null) {
       Network.LoadingFinishedParams finishedParams = new Network.LoadingFinishedParams();
       finishedParams.requestId = requestId;
-      finishedParams.timestamp = stethoNow() / 1000.0;
+      finishedParams.timestamp = now / 1000.0;
       peerManager.sendNotificationToPeers("Network.loadingFinished", finishedParams);
     }
   }
@@ -277,26 +409,44 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
   }
 
   private void loadingFailed(String requestId, String errorText) {
+    mTimingTracker.discard(requestId);
+
+    long now = stethoNow();
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (networkLog != null) {
+      networkLog.loadingFailed(requestId, errorText, now);
+    }
+
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
     if (peerManager != null) {
       Network.LoadingFailedParams failedParams = new Network.LoadingFailedParams();
       failedParams.requestId = requestId;
-      failedParams.timestamp = stethoNow() / 1000.0;
+      failedParams.timestamp = now / 1000.0;
       failedParams.errorText = errorText;
       failedParams.type = Page.ResourceType.OTHER;
       peerManager.sendNotificationToPeers("Network.loadingFailed", failedParams);
     }
   }
 
+  @Override
+  public void requestTiming(String requestId, TimingPhase phase, long nanoTime) {
+    mTimingTracker.mark(requestId, phase, nanoTime);
+  }
+
   @Override
   public void dataSent(
       String requestId,
       int dataLength,
       int encodedDataLength) {
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (networkLog != null) {
+      networkLog.dataSent(requestId, dataLength);
+    }
+
     // The inspector protocol only gives us the dataReceived event, but we can happily combine
     // upstream and downstream data into this to visualize the real size of the request, not
     // strictly the size of the "content" as reported in the UI.
-    dataReceived(requestId, dataLength, encodedDataLength);
+    sendDataReceived(requestId, dataLength, encodedDataLength);
   }
 
   @Override
@@ -304,6 +454,17 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
       String requestId,
       int dataLength,
       int encodedDataLength) {
+    NetworkLog networkLog = getNetworkLogIfEnabled();
+    if (networkLog != null) {
+      networkLog.dataReceived(requestId, dataLength, encodedDataLength);
+    }
+    sendDataReceived(requestId, dataLength, encodedDataLength);
+  }
+
+  private void sendDataReceived(
+      String requestId,
+      int dataLength,
+      int encodedDataLength) {
     NetworkPeerManager peerManager = getPeerManagerIfEnabled();
     if (peerManager != null) {
       Network.DataReceivedParams dataReceivedParams = new Network.DataReceivedParams();
@@ -322,25 +483,6 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
     return headers.firstHeaderValue(HTTP.CONTENT_TYPE);
   }
 
-  private static JSONObject formatHeadersAsJSON(InspectorHeaders headers) {
-    JSONObject json = new JSONObject();
-    for (int i = 0; i < headers.headerCount(); i++) {
-      String name = headers.headerName(i);
-      String value = headers.headerValue(i);
-      try {
-        if (json.has(name)) {
-          // Multiple headers are separated with a new line.
-          json.put(name, json.getString(name) + "\n" + value);
-        } else {
-          json.put(name, value);
-        }
-      } catch (JSONException e) {
-        throw new RuntimeException(e);
-      }
-    }
-    return json;
-  }
-
   @Nonnull
   private ResourceTypeHelper getResourceTypeHelper() {
     if (mResourceTypeHelper == null) {
@@ -349,7 +491,21 @@ public class NetworkEventReporterImpl implements NetworkEventReporter {
     return mResourceTypeHelper;
   }
 
+  /**
+   * Current time in milliseconds.  This shares a time base with {@link System#nanoTime()} so that
+   * event timestamps line up with the phase timings passed to {@link #requestTiming}.
+   */
   private static long stethoNow() {
-    return SystemClock.elapsedRealtime();
+    return TimeUnit.NANOSECONDS.toMillis(System.nanoTime());
+  }
+
+  private static class NullOutputStream extends OutputStream {
+    @Override
+    public void write(int oneByte) {
+    }
+
+    @Override
+    public void write(byte[] buffer, int offset, int count) {
+    }
   }
 }
@@ -0,0 +1,307 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import com.facebook.stetho.inspector.protocol.module.Network;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded, in-process record of the network traffic reported through
+ * {@link NetworkEventReporterImpl}.  The log is disabled by default; once enabled (typically via
+ * {@code dumpapp network enable}) traffic is recorded whether or not a WebKit Inspector peer is
+ * attached, so that it can later be exported for offline analysis with {@link HarWriter}.
+ * <p />
+ * Only the most recent {@link #getMaxEntries()} exchanges are retained.  Request bodies are
+ * truncated to {@link #MAX_POST_DATA_LENGTH} characters each, and once the retained bodies
+ * exceed {@link #POST_DATA_BUDGET} characters in total the bodies of the oldest entries are
+ * dropped (their other details are kept).
+ */
+public class NetworkLog {
+  public static final int DEFAULT_MAX_ENTRIES = 1000;
+  public static final int MAX_POST_DATA_LENGTH = 16 * 1024;
+  public static final int POST_DATA_BUDGET = 1024 * 1024;
+
+  private static NetworkLog sInstance;
+
+  private volatile boolean mEnabled;
+
+  @GuardedBy("this")
+  private int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+  /**
+   * Exchanges that have not yet finished, keyed by request id.  Request ids may be re-used by
+   * callers once an exchange completes so this cannot be used to look up finished entries.
+   */
+  @GuardedBy("this")
+  private final Map<String, Entry> mInFlight = new HashMap<>();
+
+  @GuardedBy("this")
+  private final ArrayDeque<Entry> mEntries = new ArrayDeque<>();
+
+  /**
+   * Subset of {@link #mEntries} which still hold a request body, oldest first.
+   */
+  @GuardedBy("this")
+  private final ArrayDeque<Entry> mEntriesWithPostData = new ArrayDeque<>();
+
+  @GuardedBy("this")
+  private int mPostDataLength;
+
+  public static synchronized NetworkLog get() {
+    if (sInstance == null) {
+      sInstance = new NetworkLog();
+    }
+    return sInstance;
+  }
+
+  /**
+   * Cheap, unsynchronized check used by {@link NetworkEventReporterImpl} on every event.
+   */
+  public boolean isEnabled() {
+    return mEnabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    mEnabled = enabled;
+  }
+
+  public synchronized int getMaxEntries() {
+    return mMaxEntries;
+  }
+
+  public synchronized void setMaxEntries(int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries must be > 0");
+    }
+    mMaxEntries = maxEntries;
+    trimLocked();
+  }
+
+  public synchronized void clear() {
+    mInFlight.clear();
+    mEntries.clear();
+    mEntriesWithPostData.clear();
+    mPostDataLength = 0;
+  }
+
+  /**
+   * Copy of all retained entries (including those still in flight) in the order in which
+   * their requests were sent.
+   */
+  public synchronized List<Entry> snapshot() {
+    ArrayList<Entry> snapshot = new ArrayList<>(mEntries.size());
+    for (Entry entry : mEntries) {
+      snapshot.add(entry.copy());
+    }
+    return snapshot;
+  }
+
+  /**
+   * Add an entry that was recorded elsewhere (for instance imported from a HAR file).
+   */
+  public synchronized void addEntry(Entry entry) {
+    addEntryLocked(entry);
+  }
+
+  synchronized void requestWillBeSent(
+      NetworkEventReporter.InspectorRequest request,
+      @Nullable String postData,
+      long wallTime,
+      long timestamp) {
+    Entry entry = new Entry();
+    entry.requestId = request.id();
+    entry.startedDateTime = wallTime;
+    entry.requestTime = timestamp;
+    entry.url = request.url();
+    entry.method = request.method();
+    entry.requestHeaders = copyHeaders(request);
+    entry.postData = postData;
+    entry.postDataMimeType = request.firstHeaderValue("Content-Type");
+
+    Entry previous = mInFlight.put(entry.requestId, entry);
+    if (previous != null) {
+      previous.errorText = "Request id re-used before completion";
+    }
+    addEntryLocked(entry);
+  }
+
+  synchronized void responseHeadersReceived(
+      NetworkEventReporter.InspectorResponse response,
+      @Nullable String mimeType,
+      long timestamp,
+      @Nullable Network.ResourceTiming timing) {
+    Entry entry = mInFlight.get(response.requestId());
+    if (entry != null) {
+      entry.responseTime = timestamp;
+      entry.timing = timing;
+      entry.statusCode = response.statusCode();
+      entry.reasonPhrase = response.reasonPhrase();
+      entry.responseHeaders = copyHeaders(response);
+      entry.mimeType = mimeType;
+      entry.fromDiskCache = response.fromDiskCache();
+      entry.connectionId = response.connectionId();
+    }
+  }
+
+  synchronized void dataSent(String requestId, int dataLength) {
+    Entry entry = mInFlight.get(requestId);
+    if (entry != null) {
+      entry.requestBodySize += dataLength;
+    }
+  }
+
+  synchronized void dataReceived(String requestId, int dataLength, int encodedDataLength) {
+    Entry entry = mInFlight.get(requestId);
+    if (entry != null) {
+      entry.dataLength += dataLength;
+      entry.encodedDataLength += encodedDataLength;
+    }
+  }
+
+  synchronized void loadingFinished(String requestId, long timestamp) {
+    Entry entry = mInFlight.remove(requestId);
+    if (entry != null) {
+      entry.endTime = timestamp;
+    }
+  }
+
+  synchronized void loadingFailed(String requestId, String errorText, long timestamp) {
+    Entry entry = mInFlight.remove(requestId);
+    if (entry != null) {
+      entry.endTime = timestamp;
+      entry.errorText = errorText;
+    }
+  }
+
+  private void addEntryLocked(Entry entry) {
+    if (entry.postData != null && entry.postData.length() > MAX_POST_DATA_LENGTH) {
+      entry.postData = entry.postData.substring(0, MAX_POST_DATA_LENGTH);
+      entry.postDataTruncated = true;
+    }
+    mEntries.addLast(entry);
+    if (entry.postData != null) {
+      mEntriesWithPostData.addLast(entry);
+      mPostDataLength += entry.postData.length();
+    }
+    trimLocked();
+  }
+
+  private void trimLocked() {
+    while (mEntries.size() > mMaxEntries) {
+      Entry evicted = mEntries.removeFirst();
+      if (mInFlight.get(evicted.requestId) == evicted) {
+        mInFlight.remove(evicted.requestId);
+      }
+      if (evicted.postData != null) {
+        mEntriesWithPostData.removeFirstOccurrence(evicted);
+        mPostDataLength -= evicted.postData.length();
+      }
+    }
+    while (mPostDataLength > POST_DATA_BUDGET) {
+      Entry oldest = mEntriesWithPostData.removeFirst();
+      mPostDataLength -= oldest.postData.length();
+      oldest.postData = null;
+      oldest.postDataTruncated = true;
+    }
+  }
+
+  private static String[] copyHeaders(NetworkEventReporter.InspectorHeaders headers) {
+    int count = headers.headerCount();
+    String[] namesAndValues = new String[count * 2];
+    for (int i = 0; i < count; i++) {
+      namesAndValues[i * 2] = headers.headerName(i);
+      namesAndValues[i * 2 + 1] = headers.headerValue(i);
+    }
+    return namesAndValues;
+  }
+
+  /**
+   * Summary of a single HTTP exchange.  Times are in milliseconds; {@link #startedDateTime} is
+   * wall clock time whereas the other timestamps share the monotonic time base used by
+   * {@link NetworkEventReporterImpl}.  Unknown timestamps are {@code -1}.
+   */
+  public static class Entry {
+    public String requestId;
+    public long startedDateTime;
+    public long requestTime = -1;
+    public long responseTime = -1;
+    public long endTime = -1;
+
+    public String url;
+    public String method;
+
+    /** Alternating header names and values. */
+    public String[] requestHeaders = new String[0];
+
+    @Nullable public String postData;
+    @Nullable public String postDataMimeType;
+
+    /** True if {@link #postData} is only a prefix of the body, or was dropped entirely. */
+    public boolean postDataTruncated;
+    public long requestBodySize;
+
+    public int statusCode;
+    @Nullable public String reasonPhrase;
+
+    /** Alternating header names and values. */
+    public String[] responseHeaders = new String[0];
+
+    @Nullable public String mimeType;
+    public boolean fromDiskCache;
+    public int connectionId;
+
+    /** Phase timings relative to {@link #requestTime}, if the network stack reported any. */
+    @Nullable public Network.ResourceTiming timing;
+
+    public long dataLength;
+    public long encodedDataLength;
+
+    @Nullable public String errorText;
+
+    public boolean isComplete() {
+      return endTime >= 0;
+    }
+
+    Entry copy() {
+      Entry copy = new Entry();
+      copy.requestId = requestId;
+      copy.startedDateTime = startedDateTime;
+      copy.requestTime = requestTime;
+      copy.responseTime = responseTime;
+      copy.endTime = endTime;
+      copy.url = url;
+      copy.method = method;
+      copy.requestHeaders = requestHeaders;
+      copy.postData = postData;
+      copy.postDataMimeType = postDataMimeType;
+      copy.postDataTruncated = postDataTruncated;
+      copy.requestBodySize = requestBodySize;
+      copy.statusCode = statusCode;
+      copy.reasonPhrase = reasonPhrase;
+      copy.responseHeaders = responseHeaders;
+      copy.mimeType = mimeType;
+      copy.fromDiskCache = fromDiskCache;
+      copy.connectionId = connectionId;
+      copy.timing = timing;
+      copy.dataLength = dataLength;
+      copy.encodedDataLength = encodedDataLength;
+      copy.errorText = errorText;
+      return copy;
+    }
+  }
+}
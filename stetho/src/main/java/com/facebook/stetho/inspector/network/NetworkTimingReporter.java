@@ -0,0 +1,56 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+/**
+ * Optional extension of {@link NetworkEventReporter} for integrations which can observe the
+ * individual phases of an HTTP exchange (DNS lookup, connect, TLS handshake, etc).  Callers should
+ * check for it with {@code instanceof} before use:
+ *
+ * <pre>
+ *   if (reporter instanceof NetworkTimingReporter) {
+ *     ((NetworkTimingReporter)reporter).requestTiming(
+ *         requestId,
+ *         NetworkTimingReporter.TimingPhase.CONNECT_END,
+ *         System.nanoTime());
+ *   }
+ * </pre>
+ */
+public interface NetworkTimingReporter {
+  /**
+   * Report the time at which a particular phase of the HTTP exchange began or ended so that it
+   * can be shown in the WebKit Inspector's timing waterfall.  Phases must be reported after
+   * {@link NetworkEventReporter#requestWillBeSent} and before
+   * {@link NetworkEventReporter#responseHeadersReceived} for the same request; the end of the
+   * response headers is recorded automatically.  Only report phases that were actually observed;
+   * phases that are never reported are shown as unavailable.
+   *
+   * @param requestId Unique identifier for the request as per
+   *     {@link NetworkEventReporter.InspectorRequest#id()}
+   * @param phase Phase boundary being reported.
+   * @param nanoTime Monotonic time at which the boundary was reached, as per
+   *     {@link System#nanoTime()}.
+   */
+  void requestTiming(String requestId, TimingPhase phase, long nanoTime);
+
+  /**
+   * Phase boundaries that can be reported via {@link #requestTiming}.
+   */
+  enum TimingPhase {
+    DNS_START,
+    DNS_END,
+    CONNECT_START,
+    CONNECT_END,
+    SSL_START,
+    SSL_END,
+    SEND_START,
+    SEND_END,
+  }
+}
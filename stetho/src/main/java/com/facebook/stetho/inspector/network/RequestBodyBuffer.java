@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Sink for captured request bodies which retains only the first {@code maxRetainedBytes} bytes
+ * written to it; anything beyond that is counted and discarded, so that a large upload
+ * (multipart images, etc) doesn't have to be held in memory just so that we can show a prefix of
+ * it in the Inspector UI.
+ * <p/>
+ * The retained bytes are read back with {@link #readHead} once the sink has been closed.
+ */
+class RequestBodyBuffer extends OutputStream {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private final int mMaxRetainedBytes;
+
+  private byte[] mBuffer;
+  private int mBufferCount;
+
+  private long mSize;
+  private boolean mClosed;
+
+  /**
+   * @param maxRetainedBytes Number of bytes from the start of the body to retain.
+   */
+  public RequestBodyBuffer(int maxRetainedBytes) {
+    mMaxRetainedBytes = maxRetainedBytes;
+    mBuffer = new byte[Math.min(maxRetainedBytes, INITIAL_CAPACITY)];
+  }
+
+  /**
+   * Total number of bytes written to this sink, including those that weren't retained.
+   */
+  public long size() {
+    return mSize;
+  }
+
+  public boolean isClosed() {
+    return mClosed;
+  }
+
+  @Override
+  public void write(int oneByte) throws IOException {
+    throwIfClosed();
+    if (mBufferCount < mMaxRetainedBytes) {
+      ensureCapacity(mBufferCount + 1);
+      mBuffer[mBufferCount++] = (byte)oneByte;
+    }
+    mSize++;
+  }
+
+  @Override
+  public void write(byte[] buffer, int offset, int length) throws IOException {
+    throwIfClosed();
+    mSize += length;
+
+    int retained = Math.min(length, mMaxRetainedBytes - mBufferCount);
+    if (retained > 0) {
+      ensureCapacity(mBufferCount + retained);
+      System.arraycopy(buffer, offset, mBuffer, mBufferCount, retained);
+      mBufferCount += retained;
+    }
+  }
+
+  @Override
+  public void close() {
+    mClosed = true;
+  }
+
+  /**
+   * Read at most {@code maxBytes} from the start of the retained body.  When the body fits
+   * exactly in the backing array, it's returned without copying.
+   */
+  public byte[] readHead(int maxBytes) {
+    if (!mClosed) {
+      throw new IllegalStateException("Request body sink must be closed first");
+    }
+    int count = Math.min(mBufferCount, maxBytes);
+    if (count == mBuffer.length) {
+      return mBuffer;
+    }
+    return Arrays.copyOf(mBuffer, count);
+  }
+
+  /**
+   * Discard the retained bytes.
+   */
+  public void release() {
+    mClosed = true;
+    mBuffer = new byte[0];
+    mBufferCount = 0;
+  }
+
+  private void ensureCapacity(int minCapacity) {
+    if (minCapacity > mBuffer.length) {
+      int newCapacity = Math.max(minCapacity, Math.min(mBuffer.length * 2, mMaxRetainedBytes));
+      mBuffer = Arrays.copyOf(mBuffer, newCapacity);
+    }
+  }
+
+  private void throwIfClosed() throws IOException {
+    if (mClosed) {
+      throw new IOException("Request body sink has been closed");
+    }
+  }
+}
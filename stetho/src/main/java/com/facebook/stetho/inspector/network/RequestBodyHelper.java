@@ -11,7 +11,6 @@ package com.facebook.stetho.inspector.network;
 
 import javax.annotation.Nullable;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.zip.InflaterOutputStream;
@@ -25,22 +24,41 @@ import java.util.zip.InflaterOutputStream;
  * written.  Then invoke {@link #getDisplayBody()} to retrieve the possibly decoded body.
  * Finally, {@link #reportDataSent()} can be called to report to Stetho the raw and decompressed
  * payload sizes.
+ * <p />
+ * Only the first {@link #MAX_DISPLAY_BODY_SIZE} bytes of the decoded body are kept, which is all
+ * that is practical to show in the UI anyway; the rest is only counted.
  */
 public class RequestBodyHelper {
+  /**
+   * Maximum number of decoded body bytes that are kept and handed back by
+   * {@link #getDisplayBody()}.
+   */
+  public static final int MAX_DISPLAY_BODY_SIZE = 1024 * 1024;
+
   private final NetworkEventReporter mEventReporter;
   private final String mRequestId;
 
-  private ByteArrayOutputStream mDeflatedOutput;
+  private RequestBodyBuffer mDeflatedOutput;
   private CountingOutputStream mDeflatingOutput;
 
+  @Nullable private byte[] mDisplayBody;
+
   public RequestBodyHelper(NetworkEventReporter eventReporter, String requestId) {
     mEventReporter = eventReporter;
     mRequestId = requestId;
   }
 
+  /**
+   * Creates the stream that the raw body should be written to.  The caller should close it once
+   * the body has been written.
+   */
   public OutputStream createBodySink(@Nullable String contentEncoding) throws IOException {
+    if (mDeflatedOutput != null) {
+      mDeflatedOutput.release();
+    }
+
     OutputStream deflatingOutput;
-    ByteArrayOutputStream deflatedOutput = new ByteArrayOutputStream();
+    RequestBodyBuffer deflatedOutput = new RequestBodyBuffer(MAX_DISPLAY_BODY_SIZE);
     if (DecompressionHelper.GZIP_ENCODING.equals(contentEncoding)) {
       deflatingOutput = GunzippingOutputStream.create(deflatedOutput);
     } else if (DecompressionHelper.DEFLATE_ENCODING.equals(contentEncoding)) {
@@ -51,13 +69,22 @@ public class RequestBodyHelper {
 
     mDeflatingOutput = new CountingOutputStream(deflatingOutput);
     mDeflatedOutput = deflatedOutput;
+    mDisplayBody = null;
 
     return mDeflatingOutput;
   }
 
+  /**
+   * Returns the decoded body, truncated to {@link #MAX_DISPLAY_BODY_SIZE} bytes.
+   */
   public byte[] getDisplayBody() {
     throwIfNoBody();
-    return mDeflatedOutput.toByteArray();
+    if (mDisplayBody == null) {
+      // A no-op if the caller has already closed the sink, as it should have.
+      mDeflatedOutput.close();
+      mDisplayBody = mDeflatedOutput.readHead(MAX_DISPLAY_BODY_SIZE);
+    }
+    return mDisplayBody;
   }
 
   public boolean hasBody() {
@@ -68,7 +95,7 @@ public class RequestBodyHelper {
     throwIfNoBody();
     mEventReporter.dataSent(
         mRequestId,
-        mDeflatedOutput.size(),
+        (int)mDeflatedOutput.size(),
         (int)mDeflatingOutput.getCount());
   }
 
@@ -0,0 +1,124 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.facebook.stetho.inspector.network.NetworkTimingReporter.TimingPhase;
+import com.facebook.stetho.inspector.protocol.module.Network;
+
+/**
+ * Collects the phase timings reported via {@link NetworkTimingReporter#requestTiming} between
+ * {@link NetworkEventReporter#requestWillBeSent} and
+ * {@link NetworkEventReporter#responseHeadersReceived}, and converts them into the
+ * {@link Network.ResourceTiming} representation expected by the WebKit Inspector.
+ * <p/>
+ * Requests which never reach {@link #finish} or {@link #discard} (because the integration lost
+ * track of them, say) are evicted oldest first once more than {@code maxPendingRequests} are
+ * outstanding.
+ */
+class ResourceTimingTracker {
+  private static final int DEFAULT_MAX_PENDING_REQUESTS = 256;
+
+  private static final int REQUEST_START_INDEX = TimingPhase.values().length;
+  private static final int SLOT_COUNT = REQUEST_START_INDEX + 1;
+  private static final long UNSET = Long.MIN_VALUE;
+
+  private static final double NANOS_PER_MILLI = 1000.0 * 1000.0;
+  private static final double NANOS_PER_SECOND = 1000.0 * 1000.0 * 1000.0;
+
+  @GuardedBy("this")
+  private final Map<String, long[]> mTimings;
+
+  public ResourceTimingTracker() {
+    this(DEFAULT_MAX_PENDING_REQUESTS);
+  }
+
+  public ResourceTimingTracker(final int maxPendingRequests) {
+    mTimings = new LinkedHashMap<String, long[]>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, long[]> eldest) {
+        return size() > maxPendingRequests;
+      }
+    };
+  }
+
+  public synchronized int getPendingCount() {
+    return mTimings.size();
+  }
+
+  public synchronized void requestStarted(String requestId, long nanoTime) {
+    long[] timings = new long[SLOT_COUNT];
+    Arrays.fill(timings, UNSET);
+    timings[REQUEST_START_INDEX] = nanoTime;
+    mTimings.put(requestId, timings);
+  }
+
+  public synchronized void mark(
+      String requestId,
+      TimingPhase phase,
+      long nanoTime) {
+    long[] timings = mTimings.get(requestId);
+    if (timings != null) {
+      timings[phase.ordinal()] = nanoTime;
+    }
+  }
+
+  public synchronized void discard(String requestId) {
+    mTimings.remove(requestId);
+  }
+
+  /**
+   * Remove the timings for the given request and express them relative to the start of the
+   * request.
+   *
+   * @param receivedHeadersEnd Monotonic time at which the response headers were received.
+   * @return Timing data or null if {@link #requestStarted} was never invoked for the request.
+   */
+  @Nullable
+  public Network.ResourceTiming finish(String requestId, long receivedHeadersEnd) {
+    long[] timings;
+    synchronized (this) {
+      timings = mTimings.remove(requestId);
+    }
+    if (timings == null) {
+      return null;
+    }
+
+    long start = timings[REQUEST_START_INDEX];
+    Network.ResourceTiming timing = new Network.ResourceTiming();
+    timing.requestTime = start / NANOS_PER_SECOND;
+    timing.proxyStart = -1;
+    timing.proxyEnd = -1;
+    timing.dnsStart = relative(timings, TimingPhase.DNS_START, start);
+    timing.dnsEnd = relative(timings, TimingPhase.DNS_END, start);
+    timing.connectionStart = relative(timings, TimingPhase.CONNECT_START, start);
+    timing.connectionEnd = relative(timings, TimingPhase.CONNECT_END, start);
+    timing.sslStart = relative(timings, TimingPhase.SSL_START, start);
+    timing.sslEnd = relative(timings, TimingPhase.SSL_END, start);
+    timing.sendStart = relative(timings, TimingPhase.SEND_START, start);
+    timing.sendEnd = relative(timings, TimingPhase.SEND_END, start);
+    timing.receivedHeadersEnd = (receivedHeadersEnd - start) / NANOS_PER_MILLI;
+    return timing;
+  }
+
+  private static double relative(
+      long[] timings,
+      TimingPhase phase,
+      long start) {
+    long value = timings[phase.ordinal()];
+    return value != UNSET ? (value - start) / NANOS_PER_MILLI : -1;
+  }
+}
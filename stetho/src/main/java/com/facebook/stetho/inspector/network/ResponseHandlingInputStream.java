@@ -26,6 +26,19 @@ import java.io.OutputStream;
  * {@link OutputStream}. This also guarantees that we will attempt to reach EOF on the
  * {@link InputStream} passing all data to the {@link OutputStream}.
  * This is done to allow us to guarantee all responses are represented in the webkit inspector.
+ * <p>
+ * Small reads are accumulated into a local tee buffer which is only forwarded to the
+ * {@link OutputStream} and {@link ResponseHandler} once it fills up or, when a later read finds
+ * it has been held for longer than {@link #TEE_FLUSH_INTERVAL_NS}, on that read.  This keeps
+ * callers that read byte-by-byte from paying for a synchronized write to disk and a handler
+ * callback on every call.  Reads of at least {@link #DIRECT_WRITE_THRESHOLD} bytes are already
+ * amortized and bypass the tee buffer.
+ * <p>
+ * The tee buffer is only ever flushed from the reading thread, in {@code read}, {@code skip} or
+ * {@code close}, or on EOF or error; nothing flushes it on a timer.  So while a streaming or
+ * long-polling response is stalled, up to {@link #TEE_BUFFER_SIZE} bytes that the caller has
+ * already read may not be reported until more data arrives or the stream ends.
+ * Like most {@link InputStream} implementations, this class assumes a single reading thread.
  */
 // @VisibleForTest
 public final class ResponseHandlingInputStream extends FilterInputStream {
@@ -34,6 +47,14 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
 
   private static final int BUFFER_SIZE = 1024;
 
+  private static final int TEE_BUFFER_SIZE = 8 * 1024;
+  private static final int DIRECT_WRITE_THRESHOLD = BUFFER_SIZE;
+
+  /**
+   * Maximum age of the tee buffer's contents before the next read flushes it.
+   */
+  private static final long TEE_FLUSH_INTERVAL_NS = 100L * 1000 * 1000;
+
   private final String mRequestId;
   private final OutputStream mOutputStream;
   @Nullable private final CountingOutputStream mDecompressedCounter;
@@ -55,6 +76,15 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
 
   private long mLastDecompressedCount = 0;
 
+  /**
+   * Bytes read by the caller but not yet written to {@link #mOutputStream} or reported
+   * to {@link #mResponseHandler}.  Only accessed from the reading thread.
+   */
+  @Nullable
+  private byte[] mTeeBuffer;
+  private int mTeeBufferCount;
+  private long mTeeBufferStartTime;
+
   /**
    * @param inputStream
    * @param requestId the requestId to use when we call the {@link NetworkEventReporter}
@@ -83,22 +113,29 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
     mClosed = false;
   }
 
-  private synchronized int checkEOF(int n) {
+  private int checkEOF(int n) {
     if (n == -1) {
-      closeOutputStreamQuietly();
-      mResponseHandler.onEOF();
-      mEofSeen = true;
+      onEOF();
     }
     return n;
   }
 
+  private synchronized void onEOF() {
+    flushTeeBuffer();
+    closeOutputStreamQuietly();
+    mResponseHandler.onEOF();
+    mEofSeen = true;
+  }
+
   @Override
   public int read() throws IOException {
     try {
       int result = checkEOF(in.read());
       if (result != -1) {
-        mResponseHandler.onRead(1);
-        writeToOutputStream(result);
+        byte[] teeBuffer = getTeeBuffer();
+        boolean wasEmpty = mTeeBufferCount == 0;
+        teeBuffer[mTeeBufferCount++] = (byte)result;
+        onTeeBufferAppended(wasEmpty);
       }
       return result;
     } catch (IOException ex) {
@@ -116,8 +153,20 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
     try {
       int result = checkEOF(in.read(b, off, len));
       if (result != -1) {
-        mResponseHandler.onRead(result);
-        writeToOutputStream(b, off, result);
+        if (result >= DIRECT_WRITE_THRESHOLD) {
+          flushTeeBuffer();
+          mResponseHandler.onRead(result);
+          writeToOutputStream(b, off, result);
+        } else {
+          byte[] teeBuffer = getTeeBuffer();
+          if (mTeeBufferCount + result > teeBuffer.length) {
+            flushTeeBuffer();
+          }
+          boolean wasEmpty = mTeeBufferCount == 0;
+          System.arraycopy(b, off, teeBuffer, mTeeBufferCount, result);
+          mTeeBufferCount += result;
+          onTeeBufferAppended(wasEmpty);
+        }
       }
       return result;
     } catch (IOException ex) {
@@ -218,6 +267,7 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
    * @return
    */
   private IOException handleIOException(IOException ex) {
+    flushTeeBuffer();
     mResponseHandler.onError(ex);
     return ex;
   }
@@ -231,26 +281,41 @@ public final class ResponseHandlingInputStream extends FilterInputStream {
     }
   }
 
-  /**
-   * Writes the byte to all the output streams. If we get an exception when writing to any
-   * of the streams, we close all the streams, and then propagate the first exception that
-   * occurred when writing.
-   */
-  private synchronized void writeToOutputStream(int oneByte) {
-    if (mClosed) {
-      return;
+  @Nonnull
+  private byte[] getTeeBuffer() {
+    if (mTeeBuffer == null) {
+      mTeeBuffer = new byte[TEE_BUFFER_SIZE];
     }
+    return mTeeBuffer;
+  }
 
-    try {
-      mOutputStream.write(oneByte);
-      reportDecodedSizeIfApplicable();
-    } catch (IOException e) {
-      handleIOExceptionWritingToStream(e);
+  private void onTeeBufferAppended(boolean wasEmpty) {
+    long now = System.nanoTime();
+    if (wasEmpty) {
+      mTeeBufferStartTime = now;
+    }
+    if (mTeeBufferCount == mTeeBuffer.length ||
+        now - mTeeBufferStartTime >= TEE_FLUSH_INTERVAL_NS) {
+      flushTeeBuffer();
+    }
+  }
+
+  /**
+   * Forwards any bytes accumulated in the tee buffer to the output stream and response handler
+   * in a single chunk.
+   */
+  private void flushTeeBuffer() {
+    int count = mTeeBufferCount;
+    if (count > 0) {
+      mTeeBufferCount = 0;
+      mResponseHandler.onRead(count);
+      writeToOutputStream(mTeeBuffer, 0, count);
     }
   }
 
   /**
-   * Same as {@link #writeToOutputStream(int)}, but we write a buffer instead.
+   * Writes the buffer to the output stream. If we get an exception when writing, we close the
+   * stream and log the failure to the console rather than propagating it to the caller.
    */
   private synchronized void writeToOutputStream(byte[] b, int offset, int count) {
     if (mClosed) {
@@ -10,17 +10,19 @@
 package com.facebook.stetho.inspector.protocol.module;
 
 import android.graphics.Color;
-import com.facebook.stetho.common.Accumulator;
-import com.facebook.stetho.common.ArrayListAccumulator;
+import com.facebook.stetho.common.LogRedirector;
 import com.facebook.stetho.common.LogUtil;
 import com.facebook.stetho.common.UncheckedCallable;
 import com.facebook.stetho.common.Util;
+import com.facebook.stetho.inspector.elements.ChildNodeChanges;
 import com.facebook.stetho.inspector.elements.DocumentView;
 import com.facebook.stetho.inspector.elements.Document;
 import com.facebook.stetho.inspector.elements.ElementInfo;
 import com.facebook.stetho.inspector.elements.NodeDescriptor;
 import com.facebook.stetho.inspector.elements.NodeType;
+import com.facebook.stetho.inspector.elements.RenderAnalysis;
 import com.facebook.stetho.inspector.helper.ChromePeerManager;
+import com.facebook.stetho.inspector.helper.CoalescingCommandQueue;
 import com.facebook.stetho.inspector.helper.PeersRegisteredListener;
 import com.facebook.stetho.inspector.jsonrpc.JsonRpcException;
 import com.facebook.stetho.inspector.jsonrpc.JsonRpcPeer;
@@ -32,29 +34,71 @@ import com.facebook.stetho.json.ObjectMapper;
 import com.facebook.stetho.json.annotation.JsonProperty;
 import org.json.JSONObject;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.nio.channels.NotYetConnectedException;
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.RandomAccess;
 import java.util.concurrent.atomic.AtomicInteger;
 
 public class DOM implements ChromeDevtoolsDomain {
+  /**
+   * Depth used by {@link #getDocument} when the peer doesn't ask for one: the root, the
+   * application, and its activities.  Anything deeper is sent on demand via
+   * {@link #requestChildNodes}.
+   */
+  private static final int DEFAULT_GET_DOCUMENT_DEPTH = 2;
+  private static final int DEFAULT_REQUEST_CHILD_NODES_DEPTH = 1;
+
+  /**
+   * Passed as a depth to send the entire sub-tree.
+   */
+  private static final int UNLIMITED_DEPTH = -1;
+
+  private static final int DEFAULT_RENDER_ANALYSIS_MAX_RESULTS = 100;
+
+  /**
+   * Keys for commands of which only the most recent pending one needs to run.
+   */
+  private static final Object HIGHLIGHT_COMMAND_KEY = new Object();
+  private static final Object INSPECT_MODE_COMMAND_KEY = new Object();
+  private static final Object RENDER_PROFILING_COMMAND_KEY = new Object();
+
   private final ObjectMapper mObjectMapper;
   private final Document mDocument;
-  private final Map<String, List<Integer>> mSearchResults;
+  private final CoalescingCommandQueue mCommandQueue;
   private final AtomicInteger mResultCounter;
   private final ChromePeerManager mPeerManager;
   private final DocumentUpdateListener mListener;
 
+  /**
+   * Whether {@link #mDocument} is held on behalf of our peers.  Commands that were posted but
+   * haven't run by the time the last peer goes away are dropped rather than run against the
+   * released document.
+   */
+  private volatile boolean mIsDocumentAttached;
+
   private ChildNodeRemovedEvent mCachedChildNodeRemovedEvent;
   private ChildNodeInsertedEvent mCachedChildNodeInsertedEvent;
 
+  @GuardedBy("this")
+  private final Map<JsonRpcPeer, PeerState> mPeerStates = new HashMap<>();
+
+  @GuardedBy("this")
+  private PeerState[] mPeerStatesSnapshot;
+
   public DOM(Document document) {
     mObjectMapper = new ObjectMapper();
     mDocument = Util.throwIfNull(document);
-    mSearchResults = Collections.synchronizedMap(
-      new HashMap<String, List<Integer>>());
+    mCommandQueue = new CoalescingCommandQueue(mDocument);
     mResultCounter = new AtomicInteger(0);
     mPeerManager = new ChromePeerManager();
     mPeerManager.setListener(new PeerManagerListener());
@@ -73,19 +117,61 @@ public class DOM implements ChromeDevtoolsDomain {
 
   @ChromeDevtoolsMethod
   public JsonRpcResult getDocument(JsonRpcPeer peer, JSONObject params) {
+    final GetDocumentRequest request =
+        mObjectMapper.convertValue(params, GetDocumentRequest.class);
+    final int depth = (request != null && request.depth != null)
+        ? request.depth
+        : DEFAULT_GET_DOCUMENT_DEPTH;
+    final PeerState peerState = getPeerState(peer);
+
     final GetDocumentResponse result = new GetDocumentResponse();
 
-    result.root = mDocument.postAndWait(new UncheckedCallable<Node>() {
+    result.root = mCommandQueue.postAndWait(new UncheckedCallable<Node>() {
       @Override
       public Node call() {
+        // The peer discards any nodes it knew about when it asks for the document.
+        if (peerState != null) {
+          peerState.clear();
+        }
         Object element = mDocument.getRootElement();
-        return createNodeForElement(element, mDocument.getDocumentView());
+        return createNodeForElement(element, mDocument.getDocumentView(), depth, peerState);
       }
     });
 
     return result;
   }
 
+  @ChromeDevtoolsMethod
+  public void requestChildNodes(JsonRpcPeer peer, JSONObject params) throws JsonRpcException {
+    final RequestChildNodesRequest request =
+        mObjectMapper.convertValue(params, RequestChildNodesRequest.class);
+    final int depth = (request.depth != null) ? request.depth : DEFAULT_REQUEST_CHILD_NODES_DEPTH;
+    final PeerState peerState = getPeerState(peer);
+    if (peerState == null) {
+      return;
+    }
+
+    boolean found = mCommandQueue.postAndWait(new UncheckedCallable<Boolean>() {
+      @Override
+      public Boolean call() {
+        Object element = mDocument.getElementForNodeId(request.nodeId);
+        if (element == null) {
+          return false;
+        }
+        sendChildNodes(peerState, element, mDocument.getDocumentView(), depth);
+        return true;
+      }
+    });
+
+    if (!found) {
+      throw new JsonRpcException(
+          new JsonRpcError(
+              JsonRpcError.ErrorCode.INVALID_PARAMS,
+              "No known nodeId=" + request.nodeId,
+              null /* data */));
+    }
+  }
+
   @ChromeDevtoolsMethod
   public void highlightNode(JsonRpcPeer peer, JSONObject params) {
     final HighlightNodeRequest request =
@@ -101,7 +187,7 @@ public class DOM implements ChromeDevtoolsDomain {
       return;
     }
 
-    mDocument.postAndWait(new Runnable() {
+    postDocumentCommand(HIGHLIGHT_COMMAND_KEY, new Runnable() {
       @Override
       public void run() {
         Object element = mDocument.getElementForNodeId(request.nodeId);
@@ -114,7 +200,7 @@ public class DOM implements ChromeDevtoolsDomain {
 
   @ChromeDevtoolsMethod
   public void hideHighlight(JsonRpcPeer peer, JSONObject params) {
-    mDocument.postAndWait(new Runnable() {
+    postDocumentCommand(HIGHLIGHT_COMMAND_KEY, new Runnable() {
       @Override
       public void run() {
         mDocument.hideHighlight();
@@ -127,7 +213,7 @@ public class DOM implements ChromeDevtoolsDomain {
       throws JsonRpcException {
     final ResolveNodeRequest request = mObjectMapper.convertValue(params, ResolveNodeRequest.class);
 
-    final Object element = mDocument.postAndWait(new UncheckedCallable<Object>() {
+    final Object element = mCommandQueue.postAndWait(new UncheckedCallable<Object>() {
       @Override
       public Object call() {
         return mDocument.getElementForNodeId(request.nodeId);
@@ -163,7 +249,7 @@ public class DOM implements ChromeDevtoolsDomain {
         params,
         SetAttributesAsTextRequest.class);
 
-    mDocument.postAndWait(new Runnable() {
+    postDocumentCommand(null /* key */, new Runnable() {
       @Override
       public void run() {
         Object element = mDocument.getElementForNodeId(request.nodeId);
@@ -180,7 +266,7 @@ public class DOM implements ChromeDevtoolsDomain {
         params,
         SetInspectModeEnabledRequest.class);
 
-    mDocument.postAndWait(new Runnable() {
+    postDocumentCommand(INSPECT_MODE_COMMAND_KEY, new Runnable() {
       @Override
       public void run() {
         mDocument.setInspectModeEnabled(request.enabled);
@@ -188,30 +274,108 @@ public class DOM implements ChromeDevtoolsDomain {
     });
   }
 
+  /**
+   * Stetho extension: while enabled, Views report what they cost to measure, lay out and draw as
+   * attributes, and are highlighted in a color that reflects it.
+   */
   @ChromeDevtoolsMethod
-  public PerformSearchResponse performSearch(JsonRpcPeer peer, final JSONObject params) {
-    final PerformSearchRequest request = mObjectMapper.convertValue(
+  public void setRenderProfilingEnabled(JsonRpcPeer peer, JSONObject params) {
+    final SetRenderProfilingEnabledRequest request = mObjectMapper.convertValue(
         params,
-        PerformSearchRequest.class);
-
-    final ArrayListAccumulator<Integer> resultNodeIds = new ArrayListAccumulator<>();
+        SetRenderProfilingEnabledRequest.class);
 
-    mDocument.postAndWait(new Runnable() {
+    postDocumentCommand(RENDER_PROFILING_COMMAND_KEY, new Runnable() {
       @Override
       public void run() {
-        mDocument.findMatchingElements(request.query, resultNodeIds);
+        mDocument.setRenderProfilingEnabled(request.enabled);
+      }
+    });
+  }
+
+  /**
+   * Stetho extension: reports the nesting depth, overdraw and hidden descendants of each View,
+   * worst first.  The nodes are sent to the peer so that they can be highlighted.
+   */
+  @ChromeDevtoolsMethod
+  public GetRenderAnalysisResponse getRenderAnalysis(JsonRpcPeer peer, JSONObject params) {
+    final GetRenderAnalysisRequest request = mObjectMapper.convertValue(
+        params,
+        GetRenderAnalysisRequest.class);
+
+    final PeerState peerState = getPeerState(peer);
+    if (peerState == null) {
+      LogUtil.w("DOM.getRenderAnalysis called before DOM.enable");
+      return null;
+    }
+
+    final RenderAnalysis.SortOrder sortOrder = getRenderAnalysisSortOrder(
+        (request != null) ? request.sortBy : null);
+    final int maxResults = (request != null && request.maxResults != null)
+        ? request.maxResults
+        : DEFAULT_RENDER_ANALYSIS_MAX_RESULTS;
+
+    final GetRenderAnalysisResponse response = new GetRenderAnalysisResponse();
+    response.nodes = mCommandQueue.postAndWait(new UncheckedCallable<List<RenderAnalysisNode>>() {
+      @Override
+      public List<RenderAnalysisNode> call() {
+        List<RenderAnalysis.NodeReport> reports = mDocument.analyzeRendering(sortOrder);
+        List<RenderAnalysisNode> nodes = new ArrayList<>();
+        for (int i = 0, N = reports.size(); i < N && nodes.size() < maxResults; ++i) {
+          final RenderAnalysis.NodeReport report = reports.get(i);
+          final Integer nodeId = mDocument.getNodeIdForElement(report.element);
+          if (nodeId == null) {
+            continue;
+          }
+          pushNodePathToPeer(peerState, report.element);
+
+          RenderAnalysisNode node = new RenderAnalysisNode();
+          node.nodeId = nodeId;
+          node.depth = report.depth;
+          node.overdraw = report.opaqueLayersBeneath;
+          node.hiddenCount = report.hiddenCount;
+          nodes.add(node);
+        }
+        return nodes;
       }
     });
 
+    return response;
+  }
+
+  private static RenderAnalysis.SortOrder getRenderAnalysisSortOrder(@Nullable String sortBy) {
+    if ("depth".equals(sortBy)) {
+      return RenderAnalysis.SortOrder.DEPTH;
+    } else if ("hiddenCount".equals(sortBy)) {
+      return RenderAnalysis.SortOrder.HIDDEN_COUNT;
+    } else {
+      return RenderAnalysis.SortOrder.OVERDRAW;
+    }
+  }
+
+  @ChromeDevtoolsMethod
+  public PerformSearchResponse performSearch(JsonRpcPeer peer, final JSONObject params) {
+    final PerformSearchRequest request = mObjectMapper.convertValue(
+        params,
+        PerformSearchRequest.class);
+
+    final PeerState peerState = getPeerState(peer);
+    if (peerState == null) {
+      LogUtil.w("DOM.performSearch called before DOM.enable");
+      return null;
+    }
+
+    // Matching is answered from the search index; only ordering the matches visits the shadow tree.
+    final int[] resultNodeIds = mDocument.findMatchingElements(request.query);
+
     // Each search action has a unique ID so that
     // it can be queried later.
     final String searchId = String.valueOf(mResultCounter.getAndIncrement());
 
-    mSearchResults.put(searchId, resultNodeIds);
+    peerState.putSearchResults(searchId, resultNodeIds);
 
     final PerformSearchResponse response = new PerformSearchResponse();
     response.searchId = searchId;
-    response.resultCount = resultNodeIds.size();
+    response.resultCount = resultNodeIds.length;
 
     return response;
   }
@@ -227,14 +391,33 @@ public class DOM implements ChromeDevtoolsDomain {
       return null;
     }
 
-    final List<Integer> results = mSearchResults.get(request.searchId);
+    final PeerState peerState = getPeerState(peer);
+    final int[] results = (peerState != null)
+        ? peerState.getSearchResults(request.searchId)
+        : null;
 
     if (results == null) {
       LogUtil.w("\"" + request.searchId + "\" is not a valid reference to a search result");
       return null;
     }
 
-    final List<Integer> resultsRange = results.subList(request.fromIndex, request.toIndex);
+    final int fromIndex = Math.max(0, Math.min(request.fromIndex, results.length));
+    final int toIndex = Math.max(fromIndex, Math.min(request.toIndex, results.length));
+    final List<Integer> resultsRange = new IntArraySlice(results, fromIndex, toIndex);
+
+    // Results may lie anywhere in the tree, so make sure the peer has been sent their nodes.
+    mCommandQueue.postAndWait(new UncheckedCallable<Void>() {
+      @Override
+      public Void call() {
+        for (int i = fromIndex; i < toIndex; ++i) {
+          Object element = mDocument.getElementForNodeId(results[i]);
+          if (element != null) {
+            pushNodePathToPeer(peerState, element);
+          }
+        }
+        return null;
+      }
+    });
 
     final GetSearchResultsResponse response = new GetSearchResultsResponse();
     response.nodeIds = resultsRange;
@@ -248,12 +431,21 @@ public class DOM implements ChromeDevtoolsDomain {
       params,
       DiscardSearchResultsRequest.class);
 
-    if (request.searchId != null) {
-      mSearchResults.remove(request.searchId);
+    final PeerState peerState = getPeerState(peer);
+    if (request.searchId != null && peerState != null) {
+      peerState.removeSearchResults(request.searchId);
     }
   }
 
-  private Node createNodeForElement(Object element, DocumentView view) {
+  /**
+   * @param depth Number of levels of children to include, or {@link #UNLIMITED_DEPTH}.
+   * @param peerState If non-null, records the nodes being sent to the peer.
+   */
+  private Node createNodeForElement(
+      Object element,
+      DocumentView view,
+      int depth,
+      @Nullable PeerState peerState) {
     NodeDescriptor descriptor = mDocument.getNodeDescriptor(element);
 
     Node node = new DOM.Node();
@@ -263,28 +455,101 @@ public class DOM implements ChromeDevtoolsDomain {
     node.localName = descriptor.getLocalName(element);
     node.nodeValue = descriptor.getNodeValue(element);
 
-    Document.AttributeListAccumulator accumulator = new Document.AttributeListAccumulator();
-    descriptor.getAttributes(element, accumulator);
+    ElementInfo elementInfo = view.getElementInfo(element);
 
-    // Attributes
-    node.attributes = accumulator;
+    // Attributes, from the snapshot taken when the element was last walked if there is one
+    if (elementInfo.attributes != null) {
+      node.attributes = elementInfo.attributes;
+    } else {
+      Document.AttributeListAccumulator accumulator = new Document.AttributeListAccumulator();
+      descriptor.getAttributes(element, accumulator);
+      node.attributes = accumulator;
+    }
 
     // Children
-    ElementInfo elementInfo = view.getElementInfo(element);
+    node.childNodeCount = elementInfo.children.size();
+    if (peerState != null) {
+      peerState.knownNodeIds.add(node.nodeId);
+    }
+
+    if (depth != 0) {
+      node.children = createNodesForChildren(elementInfo, view, depth, peerState);
+      if (peerState != null) {
+        peerState.expandedNodeIds.add(node.nodeId);
+      }
+    } else if (peerState != null) {
+      // The peer is replacing any node it had for this element, along with its children.
+      peerState.expandedNodeIds.remove(node.nodeId);
+    }
+
+    return node;
+  }
+
+  private List<Node> createNodesForChildren(
+      ElementInfo elementInfo,
+      DocumentView view,
+      int depth,
+      @Nullable PeerState peerState) {
     List<Node> childrenNodes = (elementInfo.children.size() == 0)
         ? Collections.<Node>emptyList()
         : new ArrayList<Node>(elementInfo.children.size());
 
+    final int childDepth = (depth == UNLIMITED_DEPTH) ? UNLIMITED_DEPTH : depth - 1;
     for (int i = 0, N = elementInfo.children.size(); i < N; ++i) {
       final Object childElement = elementInfo.children.get(i);
-      Node childNode = createNodeForElement(childElement, view);
+      Node childNode = createNodeForElement(childElement, view, childDepth, peerState);
       childrenNodes.add(childNode);
     }
 
-    node.children = childrenNodes;
-    node.childNodeCount = childrenNodes.size();
+    return childrenNodes;
+  }
 
-    return node;
+  private void sendChildNodes(
+      PeerState peerState,
+      Object element,
+      DocumentView view,
+      int depth) {
+    ElementInfo elementInfo = view.getElementInfo(element);
+    SetChildNodesEvent event = new SetChildNodesEvent();
+    event.parentId = mDocument.getNodeIdForElement(element);
+    event.nodes = createNodesForChildren(elementInfo, view, depth, peerState);
+    peerState.expandedNodeIds.add(event.parentId);
+    peerState.sendNotification("DOM.setChildNodes", event);
+  }
+
+  /**
+   * Makes sure the peer knows about {@code element} by sending the children of each of its
+   * ancestors that it hasn't yet seen.  Must be called before referring to a node that the peer
+   * may not have requested, such as a search result.
+   */
+  private void pushNodePathToPeer(PeerState peerState, Object element) {
+    DocumentView view = mDocument.getDocumentView();
+    ArrayList<Object> ancestors = new ArrayList<>();
+    ElementInfo elementInfo = view.getElementInfo(element);
+    while (elementInfo != null && elementInfo.parentElement != null) {
+      ancestors.add(elementInfo.parentElement);
+      elementInfo = view.getElementInfo(elementInfo.parentElement);
+    }
+
+    for (int i = ancestors.size() - 1; i >= 0; --i) {
+      final Object ancestor = ancestors.get(i);
+      if (!peerState.expandedNodeIds.contains(mDocument.getNodeIdForElement(ancestor))) {
+        sendChildNodes(peerState, ancestor, view, DEFAULT_REQUEST_CHILD_NODES_DEPTH);
+      }
+    }
+  }
+
+  @Nullable
+  private synchronized PeerState getPeerState(JsonRpcPeer peer) {
+    return mPeerStates.get(peer);
+  }
+
+  private synchronized PeerState[] getPeerStatesSnapshot() {
+    if (mPeerStatesSnapshot == null) {
+      mPeerStatesSnapshot = mPeerStates.values().toArray(
+          new PeerState[mPeerStates.size()]);
+    }
+    return mPeerStatesSnapshot;
   }
 
   private ChildNodeInsertedEvent acquireChildNodeInsertedEvent() {
@@ -324,16 +589,27 @@ public class DOM implements ChromeDevtoolsDomain {
 
   private final class DocumentUpdateListener implements Document.UpdateListener {
     public void onAttributeModified(Object element, String name, String value) {
+      Integer nodeId = mDocument.getNodeIdForElement(element);
+      if (nodeId == null) {
+        // The peer will see the attribute when the element is first sent.
+        return;
+      }
+
       AttributeModifiedEvent message = new AttributeModifiedEvent();
-      message.nodeId = mDocument.getNodeIdForElement(element);
+      message.nodeId = nodeId;
       message.name = name;
       message.value = value;
-      mPeerManager.sendNotificationToPeers("DOM.onAttributeModified", message);
+      mPeerManager.sendNotificationToPeers("DOM.attributeModified", message);
     }
 
     public void onAttributeRemoved(Object element, String name) {
+      Integer nodeId = mDocument.getNodeIdForElement(element);
+      if (nodeId == null) {
+        return;
+      }
+
       AttributeRemovedEvent message = new AttributeRemovedEvent();
-      message.nodeId = mDocument.getNodeIdForElement(element);
+      message.nodeId = nodeId;
       message.name = name;
       mPeerManager.sendNotificationToPeers("DOM.attributeRemoved", message);
     }
@@ -348,39 +624,213 @@ public class DOM implements ChromeDevtoolsDomain {
       } else {
         InspectNodeRequestedEvent message = new InspectNodeRequestedEvent();
         message.nodeId = nodeId;
-        mPeerManager.sendNotificationToPeers("DOM.inspectNodeRequested", message);
+        for (PeerState peerState : getPeerStatesSnapshot()) {
+          pushNodePathToPeer(peerState, element);
+          peerState.sendNotification("DOM.inspectNodeRequested", message);
+        }
+      }
+    }
+
+    // Peers only receive child node events for nodes whose children they've been sent.  For
+    // other nodes that they know about, we just keep the child count up to date so that they
+    // know whether there's anything to request.
+
+    @Override
+    public void onChildNodesChanged(DocumentView view, ChildNodeChanges changes) {
+      final List<ChildNodeChanges.Change> changeList = changes.getChanges();
+
+      HashMap<Integer, Integer> changeCounts = new HashMap<>();
+      for (int i = 0, N = changeList.size(); i < N; ++i) {
+        final Integer parentNodeId = changeList.get(i).parentNodeId;
+        final Integer count = changeCounts.get(parentNodeId);
+        changeCounts.put(parentNodeId, (count != null) ? count + 1 : 1);
+      }
+
+      for (PeerState peerState : getPeerStatesSnapshot()) {
+        sendChildNodeChanges(peerState, view, changeList, changeCounts);
       }
     }
 
-    public void onChildNodeRemoved(
-        int parentNodeId,
-        int nodeId) {
+    private void sendChildNodeChanges(
+        PeerState peerState,
+        DocumentView view,
+        List<ChildNodeChanges.Change> changeList,
+        Map<Integer, Integer> changeCounts) {
+      // Parents which are cheaper to resend in full than to update one change at a time, and
+      // parents whose child count needs updating, mapped to their elements.
+      LinkedHashMap<Integer, Object> resendParents = new LinkedHashMap<>();
+      LinkedHashMap<Integer, Object> countUpdatedParents = new LinkedHashMap<>();
+      boolean sentResends = false;
+
+      for (int i = 0, N = changeList.size(); i < N; ++i) {
+        final ChildNodeChanges.Change change = changeList.get(i);
+
+        // Changes are ordered with all removals first. Resending a parent's children must wait
+        // until then, in case it now holds elements that are being removed from elsewhere.
+        if (change.isInsertion && !sentResends) {
+          sendResends(peerState, view, resendParents);
+          sentResends = true;
+        }
+
+        if (peerState.expandedNodeIds.contains(change.parentNodeId)) {
+          if (resendParents.containsKey(change.parentNodeId)) {
+            // Already covered.
+          } else if (changeCounts.get(change.parentNodeId) >
+              view.getElementInfo(change.parentElement).children.size()) {
+            resendParents.put(change.parentNodeId, change.parentElement);
+          } else if (change.isInsertion) {
+            sendChildNodeInserted(peerState, view, change);
+          } else {
+            sendChildNodeRemoved(peerState, change);
+          }
+        } else if (peerState.knownNodeIds.contains(change.parentNodeId)) {
+          countUpdatedParents.put(change.parentNodeId, change.parentElement);
+        }
+
+        if (!change.isInsertion) {
+          peerState.knownNodeIds.remove(change.nodeId);
+          peerState.expandedNodeIds.remove(change.nodeId);
+        }
+      }
+
+      if (!sentResends) {
+        sendResends(peerState, view, resendParents);
+      }
+
+      for (Map.Entry<Integer, Object> entry : countUpdatedParents.entrySet()) {
+        sendChildNodeCountUpdated(peerState, view, entry.getValue(), entry.getKey());
+      }
+    }
+
+    private void sendResends(
+        PeerState peerState,
+        DocumentView view,
+        Map<Integer, Object> resendParents) {
+      for (Object parentElement : resendParents.values()) {
+        sendChildNodes(peerState, parentElement, view, DEFAULT_REQUEST_CHILD_NODES_DEPTH);
+      }
+    }
+
+    private void sendChildNodeRemoved(PeerState peerState, ChildNodeChanges.Change change) {
       ChildNodeRemovedEvent removedEvent = acquireChildNodeRemovedEvent();
 
-      removedEvent.parentNodeId = parentNodeId;
-      removedEvent.nodeId = nodeId;
-      mPeerManager.sendNotificationToPeers("DOM.childNodeRemoved", removedEvent);
+      removedEvent.parentNodeId = change.parentNodeId;
+      removedEvent.nodeId = change.nodeId;
+      peerState.sendNotification("DOM.childNodeRemoved", removedEvent);
 
       releaseChildNodeRemovedEvent(removedEvent);
     }
 
-    public void onChildNodeInserted(
+    private void sendChildNodeInserted(
+        PeerState peerState,
         DocumentView view,
-        Object element,
-        int parentNodeId,
-        int previousNodeId,
-        Accumulator<Object> insertedElements) {
+        ChildNodeChanges.Change change) {
       ChildNodeInsertedEvent insertedEvent = acquireChildNodeInsertedEvent();
 
-      insertedEvent.parentNodeId = parentNodeId;
-      insertedEvent.previousNodeId = previousNodeId;
-      insertedEvent.node = createNodeForElement(element, view);
-
-      insertedElements.store(element);
-      mPeerManager.sendNotificationToPeers("DOM.childNodeInserted", insertedEvent);
+      insertedEvent.parentNodeId = change.parentNodeId;
+      insertedEvent.previousNodeId = change.previousNodeId;
+      insertedEvent.node = createNodeForElement(change.element, view, 0 /* depth */, peerState);
+      peerState.sendNotification("DOM.childNodeInserted", insertedEvent);
 
       releaseChildNodeInsertedEvent(insertedEvent);
     }
+
+    private void sendChildNodeCountUpdated(
+        PeerState peerState,
+        DocumentView view,
+        Object parentElement,
+        int parentNodeId) {
+      if (!peerState.knownNodeIds.contains(parentNodeId)) {
+        return;
+      }
+      ElementInfo parentElementInfo = view.getElementInfo(parentElement);
+      if (parentElementInfo == null) {
+        return;
+      }
+      ChildNodeCountUpdatedEvent countEvent = new ChildNodeCountUpdatedEvent();
+      countEvent.nodeId = parentNodeId;
+      countEvent.childNodeCount = parentElementInfo.children.size();
+      peerState.sendNotification("DOM.childNodeCountUpdated", countEvent);
+    }
+  }
+
+  /**
+   * State kept for each peer, which is dropped when the peer goes away.
+   * <p/>
+   * {@link #knownNodeIds} are the nodes which the peer has been sent, and
+   * {@link #expandedNodeIds} those whose children it has been sent.  These are only accessed on
+   * the {@link Document}'s thread.
+   * <p/>
+   * Search results are held until discarded by the peer, or until it has performed
+   * {@link #MAX_SEARCH_RESULTS} newer searches; the frontend only ever pages through the most
+   * recent one, but doesn't always discard it.
+   */
+  private static final class PeerState {
+    private static final String TAG = "DOM";
+    private static final int MAX_SEARCH_RESULTS = 4;
+
+    public final JsonRpcPeer peer;
+    public final HashSet<Integer> knownNodeIds = new HashSet<>();
+    public final HashSet<Integer> expandedNodeIds = new HashSet<>();
+
+    @GuardedBy("this")
+    private final LinkedHashMap<String, int[]> mSearchResults =
+        new LinkedHashMap<String, int[]>(
+            MAX_SEARCH_RESULTS + 1,
+            1.0f /* loadFactor */,
+            true /* accessOrder */) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, int[]> eldest) {
+            return size() > MAX_SEARCH_RESULTS;
+          }
+        };
+
+    public PeerState(JsonRpcPeer peer) {
+      this.peer = peer;
+    }
+
+    public synchronized void putSearchResults(String searchId, int[] nodeIds) {
+      mSearchResults.put(searchId, nodeIds);
+    }
+
+    @Nullable
+    public synchronized int[] getSearchResults(String searchId) {
+      return mSearchResults.get(searchId);
+    }
+
+    public synchronized void removeSearchResults(String searchId) {
+      mSearchResults.remove(searchId);
+    }
+
+    public void clear() {
+      knownNodeIds.clear();
+      expandedNodeIds.clear();
+    }
+
+    public void sendNotification(String method, Object params) {
+      try {
+        peer.invokeMethod(method, params, null /* callback */);
+      } catch (NotYetConnectedException e) {
+        LogRedirector.e(TAG, "Error delivering data to Chrome", e);
+      }
+    }
+  }
+
+  /**
+   * Queues a command that needs the document, to be run asynchronously on its thread.
+   *
+   * @see CoalescingCommandQueue#post
+   */
+  private void postDocumentCommand(@Nullable Object key, final Runnable command) {
+    mCommandQueue.post(key, new Runnable() {
+      @Override
+      public void run() {
+        // The document is only torn down on its own thread, so it can't go away while we run.
+        if (mIsDocumentAttached) {
+          command.run();
+        }
+      }
+    });
   }
 
   private final class PeerManagerListener extends PeersRegisteredListener {
@@ -388,14 +838,38 @@ public class DOM implements ChromeDevtoolsDomain {
     protected synchronized void onFirstPeerRegistered() {
       mDocument.addRef();
       mDocument.addUpdateListener(mListener);
+      mIsDocumentAttached = true;
     }
 
     @Override
     protected synchronized void onLastPeerUnregistered() {
-      mSearchResults.clear();
+      // Let commands that the last peer already got a response for run before the document goes.
+      mCommandQueue.flush();
+      mIsDocumentAttached = false;
       mDocument.removeUpdateListener(mListener);
       mDocument.release();
     }
+
+    @Override
+    protected void onPeerAdded(JsonRpcPeer peer) {
+      synchronized (DOM.this) {
+        mPeerStates.put(peer, new PeerState(peer));
+        mPeerStatesSnapshot = null;
+      }
+    }
+
+    @Override
+    protected void onPeerRemoved(JsonRpcPeer peer) {
+      synchronized (DOM.this) {
+        mPeerStates.remove(peer);
+        mPeerStatesSnapshot = null;
+      }
+    }
+  }
+
+  private static class GetDocumentRequest {
+    @JsonProperty
+    public Integer depth;
   }
 
   private static class GetDocumentResponse implements JsonRpcResult {
@@ -459,6 +933,30 @@ public class DOM implements ChromeDevtoolsDomain {
     public Node node;
   }
 
+  private static class ChildNodeCountUpdatedEvent {
+    @JsonProperty(required = true)
+    public int nodeId;
+
+    @JsonProperty(required = true)
+    public int childNodeCount;
+  }
+
+  private static class RequestChildNodesRequest {
+    @JsonProperty(required = true)
+    public int nodeId;
+
+    @JsonProperty
+    public Integer depth;
+  }
+
+  private static class SetChildNodesEvent {
+    @JsonProperty(required = true)
+    public int parentId;
+
+    @JsonProperty(required = true)
+    public List<Node> nodes;
+  }
+
   private static class ChildNodeRemovedEvent {
     @JsonProperty(required = true)
     public int parentNodeId;
@@ -488,6 +986,45 @@ public class DOM implements ChromeDevtoolsDomain {
     public int nodeId;
   }
 
+  private static class GetRenderAnalysisRequest {
+    /**
+     * One of {@code "overdraw"} (the default), {@code "depth"} or {@code "hiddenCount"}.
+     */
+    @JsonProperty
+    public String sortBy;
+
+    @JsonProperty
+    public Integer maxResults;
+  }
+
+  private static class GetRenderAnalysisResponse implements JsonRpcResult {
+    @JsonProperty(required = true)
+    public List<RenderAnalysisNode> nodes;
+  }
+
+  private static class RenderAnalysisNode {
+    @JsonProperty(required = true)
+    public int nodeId;
+
+    @JsonProperty(required = true)
+    public int depth;
+
+    /**
+     * Upper bound on the number of opaque layers drawn beneath this node; see
+     * {@link RenderAnalysis.NodeReport#opaqueLayersBeneath}.
+     */
+    @JsonProperty(required = true)
+    public int overdraw;
+
+    @JsonProperty(required = true)
+    public int hiddenCount;
+  }
+
+  private static class SetRenderProfilingEnabledRequest {
+    @JsonProperty(required = true)
+    public boolean enabled;
+  }
+
   private static class SetInspectModeEnabledRequest {
     @JsonProperty(required = true)
     public boolean enabled;
@@ -573,6 +1110,35 @@ public class DOM implements ChromeDevtoolsDomain {
     public int toIndex;
   }
 
+  /**
+   * Read-only view of part of an {@code int[]}, which lets us serialize a page of search results
+   * without copying them.
+   */
+  private static final class IntArraySlice extends AbstractList<Integer> implements RandomAccess {
+    private final int[] mValues;
+    private final int mFromIndex;
+    private final int mSize;
+
+    public IntArraySlice(int[] values, int fromIndex, int toIndex) {
+      mValues = values;
+      mFromIndex = fromIndex;
+      mSize = toIndex - fromIndex;
+    }
+
+    @Override
+    public Integer get(int index) {
+      if (index < 0 || index >= mSize) {
+        throw new IndexOutOfBoundsException();
+      }
+      return mValues[mFromIndex + index];
+    }
+
+    @Override
+    public int size() {
+      return mSize;
+    }
+  }
+
   private static class GetSearchResultsResponse implements JsonRpcResult {
     @JsonProperty(required = true)
     public List<Integer> nodeIds;
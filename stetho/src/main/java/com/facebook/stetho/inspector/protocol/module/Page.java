@@ -16,18 +16,43 @@ import java.util.List;
 
 import android.content.Context;
 import com.facebook.stetho.common.ProcessUtil;
+import com.facebook.stetho.inspector.screencast.ScreencastDispatcher;
+import com.facebook.stetho.inspector.jsonrpc.DisconnectReceiver;
 import com.facebook.stetho.inspector.jsonrpc.JsonRpcPeer;
 import com.facebook.stetho.inspector.jsonrpc.JsonRpcResult;
 import com.facebook.stetho.inspector.protocol.ChromeDevtoolsDomain;
 import com.facebook.stetho.inspector.protocol.ChromeDevtoolsMethod;
 import com.facebook.stetho.inspector.domstorage.SharedPreferencesHelper;
+import com.facebook.stetho.json.ObjectMapper;
 import com.facebook.stetho.json.annotation.JsonProperty;
 import com.facebook.stetho.json.annotation.JsonValue;
 
 import org.json.JSONObject;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
 public class Page implements ChromeDevtoolsDomain {
   private final Context mContext;
+  private final ObjectMapper mObjectMapper = new ObjectMapper();
+
+  @GuardedBy("this")
+  private @Nullable ScreencastDispatcher mScreencastDispatcher;
+
+  @GuardedBy("this")
+  private @Nullable JsonRpcPeer mScreencastPeer;
+
+  private final DisconnectReceiver mScreencastDisconnectReceiver = new DisconnectReceiver() {
+    @Override
+    public void onDisconnect() {
+      // The dispatcher stops itself when its peer goes away, so all that's left is to let go of
+      // both.  The peer's receivers can't be modified while it's notifying them.
+      synchronized (Page.this) {
+        mScreencastDispatcher = null;
+        mScreencastPeer = null;
+      }
+    }
+  };
 
   public Page(Context context) {
     mContext = context;
@@ -41,6 +66,7 @@ public class Page implements ChromeDevtoolsDomain {
 
   @ChromeDevtoolsMethod
   public void disable(JsonRpcPeer peer, JSONObject params) {
+    stopScreencast(peer, null /* params */);
   }
 
   private void notifyExecutionContexts(JsonRpcPeer peer) {
@@ -130,7 +156,46 @@ public class Page implements ChromeDevtoolsDomain {
 
   @ChromeDevtoolsMethod
   public JsonRpcResult canScreencast(JsonRpcPeer peer, JSONObject params) {
-    return new SimpleBooleanResult(false);
+    return new SimpleBooleanResult(true);
+  }
+
+  @ChromeDevtoolsMethod
+  public synchronized void startScreencast(JsonRpcPeer peer, JSONObject params) {
+    final StartScreencastRequest request =
+        mObjectMapper.convertValue(params, StartScreencastRequest.class);
+
+    // There's only one screen to cast, so the most recent request wins.
+    stopScreencastLocked();
+    mScreencastDispatcher = new ScreencastDispatcher(
+        peer,
+        (request != null) ? request : new StartScreencastRequest());
+    mScreencastPeer = peer;
+    peer.registerDisconnectReceiver(mScreencastDisconnectReceiver);
+    mScreencastDispatcher.start();
+  }
+
+  @ChromeDevtoolsMethod
+  public synchronized void stopScreencast(JsonRpcPeer peer, JSONObject params) {
+    if (mScreencastPeer == peer) {
+      stopScreencastLocked();
+    }
+  }
+
+  @GuardedBy("this")
+  private void stopScreencastLocked() {
+    if (mScreencastDispatcher != null) {
+      mScreencastPeer.unregisterDisconnectReceiver(mScreencastDisconnectReceiver);
+      mScreencastDispatcher.stop();
+      mScreencastDispatcher = null;
+      mScreencastPeer = null;
+    }
+  }
+
+  @ChromeDevtoolsMethod
+  public synchronized void screencastFrameAck(JsonRpcPeer peer, JSONObject params) {
+    if (mScreencastDispatcher != null && mScreencastPeer == peer) {
+      mScreencastDispatcher.onFrameAck();
+    }
   }
 
   @ChromeDevtoolsMethod
@@ -227,6 +292,54 @@ public class Page implements ChromeDevtoolsDomain {
     }
   }
 
+  public static class StartScreencastRequest {
+    @JsonProperty
+    public String format;
+
+    @JsonProperty
+    public Integer quality;
+
+    @JsonProperty
+    public Integer maxWidth;
+
+    @JsonProperty
+    public Integer maxHeight;
+
+    @JsonProperty
+    public Integer everyNthFrame;
+  }
+
+  public static class ScreencastFrameEvent {
+    @JsonProperty(required = true)
+    public String data;
+
+    @JsonProperty
+    public ScreencastFrameEventMetadata metadata;
+
+    @JsonProperty
+    public int sessionId;
+  }
+
+  public static class ScreencastFrameEventMetadata {
+    @JsonProperty(required = true)
+    public float pageScaleFactor;
+
+    @JsonProperty(required = true)
+    public int offsetTop;
+
+    @JsonProperty(required = true)
+    public int deviceWidth;
+
+    @JsonProperty(required = true)
+    public int deviceHeight;
+
+    @JsonProperty(required = true)
+    public int scrollOffsetX;
+
+    @JsonProperty(required = true)
+    public int scrollOffsetY;
+  }
+
   private static class ExecutionContextCreatedParams {
     @JsonProperty(required = true)
     public ExecutionContextDescription context;
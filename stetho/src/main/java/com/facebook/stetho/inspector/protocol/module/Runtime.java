@@ -27,6 +27,7 @@ import com.facebook.stetho.json.annotation.JsonValue;
 import org.json.JSONException;
 import org.json.JSONObject;
 
+import java.lang.ref.WeakReference;
 import java.lang.reflect.Array;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
@@ -57,8 +58,13 @@ public class Runtime implements ChromeDevtoolsDomain {
     mReplFactory = replFactory;
   }
 
+  /**
+   * Maps an object that's owned by the app, such as an element of the DOM, so that the peer can
+   * inspect it.  The session only holds it weakly: once the app lets go of it (say, a destroyed
+   * {@code Activity}) the peer shouldn't be keeping it alive until it disconnects.
+   */
   public static int mapObject(JsonRpcPeer peer, Object object) {
-    return getSession(peer).getObjects().putObject(object);
+    return getSession(peer).getObjects().putWeakObject(object);
   }
 
   @Nonnull
@@ -145,10 +151,19 @@ public class Runtime implements ChromeDevtoolsDomain {
   }
 
   private static class ObjectProtoContainer {
-    public final Object object;
+    /**
+     * Weak because the container itself is mapped strongly, while the object it wraps may have
+     * been mapped weakly with {@link #mapObject}.
+     */
+    private final WeakReference<Object> mObject;
 
     public ObjectProtoContainer(Object object) {
-      this.object = object;
+      mObject = new WeakReference<>(object);
+    }
+
+    @Nullable
+    public Object getObject() {
+      return mObject.get();
     }
   }
 
@@ -312,8 +327,15 @@ public class Runtime implements ChromeDevtoolsDomain {
     // Normally JavaScript will return the full class hierarchy as a list.  That seems less
     // useful for Java since it's more natural (IMO) to see all available member variables in one
     // big list.
-    private GetPropertiesResponse getPropertiesForProtoContainer(ObjectProtoContainer proto) {
-      Object target = proto.object;
+    private GetPropertiesResponse getPropertiesForProtoContainer(ObjectProtoContainer proto)
+        throws JsonRpcException {
+      Object target = proto.getObject();
+      if (target == null) {
+        throw new JsonRpcException(new JsonRpcError(
+            JsonRpcError.ErrorCode.INVALID_REQUEST,
+            "Object has been garbage collected",
+            null /* data */));
+      }
       RemoteObject protoRemote = new RemoteObject();
       protoRemote.type = ObjectType.OBJECT;
       protoRemote.subtype = ObjectSubType.NODE;
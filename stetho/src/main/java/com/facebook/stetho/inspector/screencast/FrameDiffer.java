@@ -0,0 +1,141 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.screencast;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import javax.annotation.Nullable;
+
+import java.util.Arrays;
+
+/**
+ * Finds the region of a frame that differs from the previous one by hashing it in square tiles.
+ * <p/>
+ * Pixels are read a band of tiles at a time, so the only buffers needed are one band of pixels
+ * and a hash per tile for the previous and current frame, rather than a copy of each frame.
+ */
+final class FrameDiffer {
+  private final int mTileSize;
+
+  private int mWidth;
+  private int mHeight;
+  private int mTileColumns;
+
+  private int[] mBand = new int[0];
+  private int[] mTileHashes = new int[0];
+  private int[] mPreviousTileHashes = new int[0];
+  private boolean mHasPrevious;
+
+  private final Rect mDirtyRect = new Rect();
+
+  public FrameDiffer(int tileSize) {
+    mTileSize = tileSize;
+  }
+
+  /**
+   * @return The bounds of the tiles which changed since the last call, which are the entire frame
+   *     if its size changed; or null if nothing changed.  The result is only valid until the next
+   *     call.
+   */
+  @Nullable
+  public Rect diff(Bitmap bitmap) {
+    final int width = bitmap.getWidth();
+    final int height = bitmap.getHeight();
+    begin(width, height);
+    for (int top = 0; top < height; top += mTileSize) {
+      final int rows = Math.min(mTileSize, height - top);
+      bitmap.getPixels(mBand, 0 /* offset */, width, 0 /* x */, top, width, rows);
+      addBand(mBand, top, rows);
+    }
+    return end();
+  }
+
+  /**
+   * Forgets the previous frame so that the next one is entirely dirty.
+   */
+  public void reset() {
+    mHasPrevious = false;
+  }
+
+  //@VisibleForTesting
+  void begin(int width, int height) {
+    if (width != mWidth || height != mHeight) {
+      mWidth = width;
+      mHeight = height;
+      mTileColumns = (width + mTileSize - 1) / mTileSize;
+      final int tileRows = (height + mTileSize - 1) / mTileSize;
+      mBand = new int[width * mTileSize];
+      mTileHashes = new int[mTileColumns * tileRows];
+      mPreviousTileHashes = new int[mTileColumns * tileRows];
+      mHasPrevious = false;
+    }
+    Arrays.fill(mTileHashes, 0);
+  }
+
+  /**
+   * @param pixels {@code rows} rows of {@code width} pixels, starting at row {@code top}, which
+   *     must be a multiple of the tile size.
+   */
+  //@VisibleForTesting
+  void addBand(int[] pixels, int top, int rows) {
+    final int tileRowOffset = (top / mTileSize) * mTileColumns;
+    for (int y = 0; y < rows; ++y) {
+      final int rowOffset = y * mWidth;
+      for (int column = 0; column < mTileColumns; ++column) {
+        final int left = column * mTileSize;
+        final int right = Math.min(left + mTileSize, mWidth);
+        int hash = mTileHashes[tileRowOffset + column];
+        for (int x = left; x < right; ++x) {
+          hash = 31 * hash + pixels[rowOffset + x];
+        }
+        mTileHashes[tileRowOffset + column] = hash;
+      }
+    }
+  }
+
+  //@VisibleForTesting
+  @Nullable
+  Rect end() {
+    final int tileRows = (mHeight + mTileSize - 1) / mTileSize;
+    int minColumn = Integer.MAX_VALUE;
+    int minRow = Integer.MAX_VALUE;
+    int maxColumn = -1;
+    int maxRow = -1;
+
+    for (int row = 0; row < tileRows; ++row) {
+      for (int column = 0; column < mTileColumns; ++column) {
+        final int i = row * mTileColumns + column;
+        if (!mHasPrevious || mTileHashes[i] != mPreviousTileHashes[i]) {
+          minColumn = Math.min(minColumn, column);
+          maxColumn = Math.max(maxColumn, column);
+          minRow = Math.min(minRow, row);
+          maxRow = Math.max(maxRow, row);
+        }
+      }
+    }
+
+    int[] swap = mPreviousTileHashes;
+    mPreviousTileHashes = mTileHashes;
+    mTileHashes = swap;
+    mHasPrevious = true;
+
+    if (maxColumn < 0) {
+      return null;
+    }
+
+    mDirtyRect.set(
+        minColumn * mTileSize,
+        minRow * mTileSize,
+        Math.min((maxColumn + 1) * mTileSize, mWidth),
+        Math.min((maxRow + 1) * mTileSize, mHeight));
+    return mDirtyRect;
+  }
+}
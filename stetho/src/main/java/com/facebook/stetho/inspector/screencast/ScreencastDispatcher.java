@@ -0,0 +1,347 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.screencast;
+
+import android.app.Activity;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Rect;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Base64;
+import android.util.Base64OutputStream;
+import android.util.Log;
+import android.view.View;
+import com.facebook.stetho.common.LogUtil;
+import com.facebook.stetho.common.Util;
+import com.facebook.stetho.inspector.elements.android.ActivityTracker;
+import com.facebook.stetho.inspector.jsonrpc.DisconnectReceiver;
+import com.facebook.stetho.inspector.jsonrpc.JsonRpcPeer;
+import com.facebook.stetho.inspector.protocol.module.Page;
+
+import javax.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.NotYetConnectedException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Streams the content of the top {@link Activity} to a peer as {@code Page.screencastFrame}
+ * events.
+ * <p/>
+ * Frames are drawn on the main thread straight into a bitmap of the requested size, then
+ * compressed and sent on a background thread.  Only one frame is in flight at a time: the next
+ * one isn't captured until the peer acknowledges the last one with {@code Page.screencastFrameAck},
+ * so a slow connection lowers the frame rate rather than building up a backlog.  Frames are also
+ * never captured more often than {@link #MIN_FRAME_INTERVAL_MS} (or the interval implied by the
+ * request's {@code everyNthFrame}).
+ * <p/>
+ * Each frame is compared to the previous one by {@link FrameDiffer} before it's compressed.  A
+ * frame that hasn't changed isn't sent at all (and needs no acknowledgement), and while the screen
+ * stays unchanged captures back off up to {@link #IDLE_INTERVAL_MS}.  The protocol has no way to
+ * update part of a frame, so a frame that has changed is always sent whole; the size of the dirty
+ * region is only reported with the per-frame metrics, which are logged at verbose level.
+ * <p/>
+ * Instances are single-use; a new screencast gets a new dispatcher.
+ */
+public final class ScreencastDispatcher {
+  private static final long FRAME_INTERVAL_MS = 16;
+  private static final long MIN_FRAME_INTERVAL_MS = 2 * FRAME_INTERVAL_MS;
+
+  /**
+   * How long to wait before looking again when there's nothing to capture.
+   */
+  private static final long IDLE_INTERVAL_MS = 500;
+
+  private static final int DEFAULT_QUALITY = 80;
+
+  private static final int TILE_SIZE = 32;
+
+  private final JsonRpcPeer mPeer;
+  private final Bitmap.CompressFormat mFormat;
+  private final int mQuality;
+  private final int mMaxWidth;
+  private final int mMaxHeight;
+  private final long mFrameIntervalMs;
+
+  private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+  private final HandlerThread mEncoderThread = new HandlerThread("Stetho-Screencast");
+  private Handler mEncoderHandler;
+
+  private final DisconnectReceiver mDisconnectReceiver = new DisconnectReceiver() {
+    @Override
+    public void onDisconnect() {
+      // The peer's receivers can't be modified while it's notifying them, and it's going away
+      // anyway.
+      stop(false /* unregister */);
+    }
+  };
+
+  private final Runnable mCaptureRunnable = new Runnable() {
+    @Override
+    public void run() {
+      capture();
+    }
+  };
+
+  // Main thread state.
+  private boolean mIsRunning;
+  private boolean mIsFrameInFlight;
+  private long mLastCaptureTime;
+  private int mNextSessionId;
+  private long mUnchangedDelayMs;
+  private @Nullable Bitmap mBitmap;
+  private @Nullable Canvas mCanvas;
+
+  // Encoder thread state.
+  private final ByteArrayOutputStream mEncodeBuffer = new ByteArrayOutputStream();
+  private final FrameDiffer mFrameDiffer = new FrameDiffer(TILE_SIZE);
+  private int mFramesSent;
+  private int mFramesSkipped;
+  private long mBytesSent;
+
+  public ScreencastDispatcher(JsonRpcPeer peer, Page.StartScreencastRequest request) {
+    mPeer = Util.throwIfNull(peer);
+    mFormat = "png".equals(request.format)
+        ? Bitmap.CompressFormat.PNG
+        : Bitmap.CompressFormat.JPEG;
+    mQuality = (request.quality != null)
+        ? Math.max(0, Math.min(100, request.quality))
+        : DEFAULT_QUALITY;
+    mMaxWidth = (request.maxWidth != null && request.maxWidth > 0)
+        ? request.maxWidth
+        : Integer.MAX_VALUE;
+    mMaxHeight = (request.maxHeight != null && request.maxHeight > 0)
+        ? request.maxHeight
+        : Integer.MAX_VALUE;
+    mFrameIntervalMs = (request.everyNthFrame != null && request.everyNthFrame > 0)
+        ? Math.max(MIN_FRAME_INTERVAL_MS, request.everyNthFrame * FRAME_INTERVAL_MS)
+        : MIN_FRAME_INTERVAL_MS;
+  }
+
+  public void start() {
+    mEncoderThread.start();
+    mEncoderHandler = new Handler(mEncoderThread.getLooper());
+    mPeer.registerDisconnectReceiver(mDisconnectReceiver);
+
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mIsRunning = true;
+        capture();
+      }
+    });
+  }
+
+  public void stop() {
+    stop(true /* unregister */);
+  }
+
+  private void stop(boolean unregister) {
+    if (unregister) {
+      mPeer.unregisterDisconnectReceiver(mDisconnectReceiver);
+    }
+
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mIsRunning = false;
+        mMainHandler.removeCallbacks(mCaptureRunnable);
+        mBitmap = null;
+        mCanvas = null;
+      }
+    });
+
+    // Let a frame that's already being encoded finish first.
+    mEncoderHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        mEncoderThread.quit();
+      }
+    });
+  }
+
+  /**
+   * Called when the peer acknowledges a frame, which allows the next one to be captured.
+   */
+  public void onFrameAck() {
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (mIsRunning && mIsFrameInFlight) {
+          mIsFrameInFlight = false;
+          mUnchangedDelayMs = 0;
+          scheduleCapture();
+        }
+      }
+    });
+  }
+
+  private void onFrameUnchanged() {
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (mIsRunning && mIsFrameInFlight) {
+          mIsFrameInFlight = false;
+          mUnchangedDelayMs = Math.min(
+              IDLE_INTERVAL_MS,
+              Math.max(mFrameIntervalMs, mUnchangedDelayMs * 2));
+          scheduleCapture();
+        }
+      }
+    });
+  }
+
+  private void onFrameSendFailed() {
+    mMainHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        if (mIsRunning && mIsFrameInFlight) {
+          // No acknowledgement is coming for a frame that was never sent.  If the peer is gone
+          // for good, its disconnect will stop us before the retry.
+          mIsFrameInFlight = false;
+          mMainHandler.removeCallbacks(mCaptureRunnable);
+          mMainHandler.postDelayed(mCaptureRunnable, IDLE_INTERVAL_MS);
+        }
+      }
+    });
+  }
+
+  private void scheduleCapture() {
+    long sinceLastCaptureMs = SystemClock.uptimeMillis() - mLastCaptureTime;
+    long intervalMs = Math.max(mFrameIntervalMs, mUnchangedDelayMs);
+    mMainHandler.removeCallbacks(mCaptureRunnable);
+    mMainHandler.postDelayed(
+        mCaptureRunnable,
+        Math.max(0, intervalMs - sinceLastCaptureMs));
+  }
+
+  private void capture() {
+    if (!mIsRunning || mIsFrameInFlight) {
+      return;
+    }
+
+    View rootView = getTopRootView();
+    if (rootView == null || rootView.getWidth() <= 0 || rootView.getHeight() <= 0) {
+      mMainHandler.postDelayed(mCaptureRunnable, IDLE_INTERVAL_MS);
+      return;
+    }
+
+    final int viewWidth = rootView.getWidth();
+    final int viewHeight = rootView.getHeight();
+    final float scale = Math.min(
+        1.0f,
+        Math.min((float) mMaxWidth / viewWidth, (float) mMaxHeight / viewHeight));
+    final int width = Math.max(1, (int) (viewWidth * scale));
+    final int height = Math.max(1, (int) (viewHeight * scale));
+
+    if (mBitmap == null || mBitmap.getWidth() != width || mBitmap.getHeight() != height) {
+      try {
+        mBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.RGB_565);
+      } catch (OutOfMemoryError e) {
+        LogUtil.w("Out of memory allocating screencast frame");
+        mBitmap = null;
+        mCanvas = null;
+        mMainHandler.postDelayed(mCaptureRunnable, IDLE_INTERVAL_MS);
+        return;
+      }
+      mCanvas = new Canvas(mBitmap);
+    }
+
+    // Drawing scaled avoids both a full size bitmap and a second pass to shrink it.
+    mCanvas.save();
+    mCanvas.scale((float) width / viewWidth, (float) height / viewHeight);
+    rootView.draw(mCanvas);
+    mCanvas.restore();
+
+    mLastCaptureTime = SystemClock.uptimeMillis();
+    mIsFrameInFlight = true;
+
+    final Bitmap bitmap = mBitmap;
+    final Page.ScreencastFrameEvent event = new Page.ScreencastFrameEvent();
+    event.sessionId = mNextSessionId++;
+    event.metadata = new Page.ScreencastFrameEventMetadata();
+    event.metadata.pageScaleFactor = 1;
+    event.metadata.deviceWidth = viewWidth;
+    event.metadata.deviceHeight = viewHeight;
+
+    // The bitmap isn't drawn into again until this frame is acknowledged, which is only after
+    // it's been sent.
+    mEncoderHandler.post(new Runnable() {
+      @Override
+      public void run() {
+        encodeAndSend(bitmap, event);
+      }
+    });
+  }
+
+  @Nullable
+  private static View getTopRootView() {
+    List<Activity> activities = ActivityTracker.get().getActivitiesView();
+    if (activities.isEmpty()) {
+      return null;
+    }
+    Activity activity = activities.get(activities.size() - 1);
+    return activity.getWindow().peekDecorView();
+  }
+
+  private void encodeAndSend(Bitmap bitmap, Page.ScreencastFrameEvent event) {
+    final long startNanos = System.nanoTime();
+    final Rect dirtyRect = mFrameDiffer.diff(bitmap);
+    if (dirtyRect == null) {
+      ++mFramesSkipped;
+      onFrameUnchanged();
+      return;
+    }
+    final int dirtyPercent = 100 * dirtyRect.width() * dirtyRect.height() /
+        (bitmap.getWidth() * bitmap.getHeight());
+
+    mEncodeBuffer.reset();
+    Base64OutputStream base64Stream = new Base64OutputStream(mEncodeBuffer, Base64.NO_WRAP);
+    try {
+      bitmap.compress(mFormat, mQuality, base64Stream);
+      base64Stream.close();
+    } catch (IOException e) {
+      // Not possible with a ByteArrayOutputStream.
+      throw new RuntimeException(e);
+    }
+    event.data = mEncodeBuffer.toString();
+    final long encodeMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+
+    try {
+      mPeer.invokeMethod("Page.screencastFrame", event, null /* callback */);
+    } catch (NotYetConnectedException e) {
+      LogUtil.w(e, "Could not send screencast frame");
+      // The peer never saw this frame, so the next one mustn't be compared against it.
+      mFrameDiffer.reset();
+      onFrameSendFailed();
+      return;
+    }
+
+    ++mFramesSent;
+    mBytesSent += event.data.length();
+    if (LogUtil.isLoggable(Log.VERBOSE)) {
+      LogUtil.v(
+          "Screencast frame %d: %d bytes, %d%% dirty, encoded in %dms " +
+              "(%d frames sent, %d unchanged, %d bytes total)",
+          event.sessionId,
+          event.data.length(),
+          dirtyPercent,
+          encodeMs,
+          mFramesSent,
+          mFramesSkipped,
+          mBytesSent);
+    }
+  }
+}
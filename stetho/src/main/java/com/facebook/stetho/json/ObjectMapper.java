@@ -98,6 +98,8 @@ public class ObjectMapper {
     Field[] fields = type.getFields();
     for (int i = 0; i < fields.length; ++i) {
       Field field = fields[i];
+      // The field is public, but its class may not be (Dalvik doesn't mind, the JVM does).
+      field.setAccessible(true);
       Object value = jsonObject.opt(field.getName());
       Object setValue = getValueForField(field, value);
       try {
@@ -234,6 +236,7 @@ public class ObjectMapper {
     for (int i = 0; i < fields.length; ++i) {
       JsonProperty property = fields[i].getAnnotation(JsonProperty.class);
       if (property != null) {
+        fields[i].setAccessible(true);
         // AutoBox here ...
         Object value = fields[i].get(fromValue);
         Class clazz = fields[i].getType();
@@ -0,0 +1,70 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class AbstractChainedDescriptorTest {
+  @Test
+  public void testContentHashIsUnknownByDefault() {
+    AbstractChainedDescriptor<Object> descriptor = new AbstractChainedDescriptor<Object>() {
+      @Override
+      protected void onGetAttributes(Object element, AttributeAccumulator attributes) {
+        attributes.store("name", "value");
+      }
+    };
+    descriptor.setSuper(new ObjectDescriptor());
+    assertEquals(
+        ContentHashDescriptor.UNKNOWN_CONTENT_HASH,
+        descriptor.getContentHash(new Object()));
+  }
+
+  @Test
+  public void testUnknownContentHashPropagates() {
+    AbstractChainedDescriptor<Object> unknown = new AbstractChainedDescriptor<Object>() {
+    };
+    unknown.setSuper(new ObjectDescriptor());
+    AbstractChainedDescriptor<Object> descriptor = new HashedDescriptor(42);
+    descriptor.setSuper(unknown);
+    assertEquals(
+        ContentHashDescriptor.UNKNOWN_CONTENT_HASH,
+        descriptor.getContentHash(new Object()));
+  }
+
+  @Test
+  public void testContentHashCombinesLevels() {
+    Object element = new Object();
+    AbstractChainedDescriptor<Object> first = new HashedDescriptor(1);
+    first.setSuper(new ObjectDescriptor());
+    AbstractChainedDescriptor<Object> second = new HashedDescriptor(2);
+    second.setSuper(new ObjectDescriptor());
+    assertTrue(first.getContentHash(element) != ContentHashDescriptor.UNKNOWN_CONTENT_HASH);
+    assertTrue(first.getContentHash(element) != second.getContentHash(element));
+    assertEquals(first.getContentHash(element), first.getContentHash(element));
+  }
+
+  private static class HashedDescriptor extends AbstractChainedDescriptor<Object> {
+    private final int mHash;
+
+    public HashedDescriptor(int hash) {
+      mHash = hash;
+    }
+
+    @Override
+    protected int onGetContentHash(Object element) {
+      return mHash;
+    }
+  }
+}
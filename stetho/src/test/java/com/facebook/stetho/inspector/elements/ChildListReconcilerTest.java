@@ -0,0 +1,172 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ChildListReconcilerTest {
+  private static final int RANDOM_ITERATIONS = 500;
+  private static final int MAX_RANDOM_SIZE = 40;
+
+  @Test
+  public void testUnchanged() {
+    List<Object> elements = createElements(5);
+    RecordingEditor editor = reconcile(elements, elements);
+    assertEquals(0, editor.removals);
+    assertEquals(0, editor.insertions);
+  }
+
+  @Test
+  public void testMoveToFront() {
+    List<Object> elements = createElements(5);
+    List<Object> target = new ArrayList<>(elements);
+    target.add(0, target.remove(4));
+
+    RecordingEditor editor = reconcile(elements, target);
+    assertEquals(1, editor.removals);
+    assertEquals(1, editor.insertions);
+  }
+
+  @Test
+  public void testInsertAndRemove() {
+    List<Object> elements = createElements(5);
+    List<Object> target = new ArrayList<>(elements);
+    target.remove(1);
+    target.add(3, new Object());
+    target.add(new Object());
+
+    RecordingEditor editor = reconcile(elements, target);
+    assertEquals(1, editor.removals);
+    assertEquals(2, editor.insertions);
+  }
+
+  @Test
+  public void testReversed() {
+    List<Object> elements = createElements(10);
+    List<Object> target = new ArrayList<>(elements);
+    Collections.reverse(target);
+
+    RecordingEditor editor = reconcile(elements, target);
+    assertEquals(9, editor.removals);
+    assertEquals(9, editor.insertions);
+  }
+
+  @Test
+  public void testFindLongestIncreasingSubsequence() {
+    boolean[] members =
+        ChildListReconciler.findLongestIncreasingSubsequence(new int[] { 3, -1, 0, 4, 1, 2, 5 });
+    assertTrue(Arrays.equals(
+        new boolean[] { false, false, true, false, true, true, true },
+        members));
+  }
+
+  @Test
+  public void testRandomListsReachTargetWithMinimalEdits() {
+    Random random = new Random(0x5747);
+    for (int iteration = 0; iteration < RANDOM_ITERATIONS; iteration++) {
+      List<Object> pool = createElements(random.nextInt(MAX_RANDOM_SIZE) + 1);
+      List<Object> current = randomSubsetInRandomOrder(random, pool);
+      List<Object> target = randomSubsetInRandomOrder(random, pool);
+
+      RecordingEditor editor = reconcile(current, target);
+
+      // Only elements outside of the longest run whose relative order is preserved may be
+      // removed or inserted.
+      int kept = longestCommonSubsequenceLength(current, target);
+      assertEquals(current.size() - kept, editor.removals);
+      assertEquals(target.size() - kept, editor.insertions);
+    }
+  }
+
+  private static RecordingEditor reconcile(List<Object> current, List<Object> target) {
+    RecordingEditor editor = new RecordingEditor(current);
+    ChildListReconciler.reconcile(editor.list, target, editor);
+    assertEquals(target.size(), editor.list.size());
+    for (int i = 0; i < target.size(); i++) {
+      assertSame(target.get(i), editor.list.get(i));
+    }
+    return editor;
+  }
+
+  private static List<Object> createElements(int count) {
+    List<Object> elements = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      elements.add(new Object());
+    }
+    return elements;
+  }
+
+  private static List<Object> randomSubsetInRandomOrder(Random random, List<Object> pool) {
+    List<Object> subset = new ArrayList<>();
+    for (Object element : pool) {
+      if (random.nextInt(4) != 0) {
+        subset.add(element);
+      }
+    }
+    // Shuffle only some of the time so that mostly-sorted lists are covered too.
+    if (random.nextBoolean()) {
+      Collections.shuffle(subset, random);
+    } else if (subset.size() > 1) {
+      subset.add(random.nextInt(subset.size()), subset.remove(random.nextInt(subset.size())));
+    }
+    return subset;
+  }
+
+  /**
+   * Reference O(n*m) implementation; since elements are distinct this equals the length of the
+   * longest increasing subsequence computed by {@link ChildListReconciler}.
+   */
+  private static int longestCommonSubsequenceLength(List<Object> a, List<Object> b) {
+    int[][] lengths = new int[a.size() + 1][b.size() + 1];
+    for (int i = 1; i <= a.size(); i++) {
+      for (int j = 1; j <= b.size(); j++) {
+        if (a.get(i - 1) == b.get(j - 1)) {
+          lengths[i][j] = lengths[i - 1][j - 1] + 1;
+        } else {
+          lengths[i][j] = Math.max(lengths[i - 1][j], lengths[i][j - 1]);
+        }
+      }
+    }
+    return lengths[a.size()][b.size()];
+  }
+
+  private static class RecordingEditor implements ChildListReconciler.Editor {
+    public final List<Object> list;
+    public int removals;
+    public int insertions;
+
+    public RecordingEditor(List<Object> initial) {
+      list = new ArrayList<>(initial);
+    }
+
+    @Override
+    public void remove(int index) {
+      list.remove(index);
+      removals++;
+    }
+
+    @Override
+    public void insert(int index, Object element) {
+      list.add(index, element);
+      insertions++;
+    }
+  }
+}
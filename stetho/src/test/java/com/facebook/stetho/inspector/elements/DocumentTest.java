@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import android.os.Build;
+import com.facebook.stetho.inspector.elements.FakeDocumentProvider.Element;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class DocumentTest {
+  // Node ids are handed out breadth-first, so the nested view gets a higher id than its
+  // parent's sibling even though it comes before it in the document.
+  private final Element mNestedView = new Element("NestedView");
+  private final Element mFirstView = new Element("FirstView", mNestedView);
+  private final Element mSecondView = new Element("SecondView");
+  private final Element mRoot = new Element("RootView", mFirstView, mSecondView);
+
+  private final FakeDocumentProvider mProvider = new FakeDocumentProvider(mRoot);
+  private final Document mDocument = new Document(mProvider);
+
+  @Before
+  public void setUp() {
+    mDocument.addRef();
+  }
+
+  @After
+  public void tearDown() {
+    mDocument.release();
+  }
+
+  @Test
+  public void testFindMatchingElementsInDocumentOrder() {
+    assertEquals(
+        Arrays.<Object>asList(mFirstView, mNestedView, mSecondView),
+        findMatchingElements("view"));
+  }
+
+  @Test
+  public void testFindMatchingElementsExcludesRoot() {
+    assertEquals(Arrays.asList(), findMatchingElements("RootView"));
+  }
+
+  @Test
+  public void testFindMatchingElementsAfterChange() {
+    Element insertedView = new Element("InsertedView");
+    mRoot.children.add(0, insertedView);
+    mFirstView.children.remove(mNestedView);
+    mProvider.notifySubtreeChanged(mRoot);
+    mProvider.runPending();
+
+    assertEquals(
+        Arrays.<Object>asList(insertedView, mFirstView, mSecondView),
+        findMatchingElements("view"));
+  }
+
+  private List<Object> findMatchingElements(String query) {
+    List<Object> elements = new ArrayList<>();
+    for (int nodeId : mDocument.findMatchingElements(query)) {
+      elements.add(mDocument.getElementForNodeId(nodeId));
+    }
+    return elements;
+  }
+}
@@ -0,0 +1,238 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import com.facebook.stetho.common.Accumulator;
+import com.facebook.stetho.common.UncheckedCallable;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * {@link DocumentProvider} over a tree of {@link Element}s which the test edits directly, for
+ * exercising {@link Document} (and the DOM domain built on it) without any views.
+ * <p/>
+ * The thread that creates the provider plays the part of the UI thread.  Anything posted to it
+ * is queued until {@link #runPending} is called, and {@code postAndWait} may only be called from
+ * that thread, where it runs inline.
+ */
+public class FakeDocumentProvider implements DocumentProvider, DocumentProvider.Factory {
+  private final Thread mThread = Thread.currentThread();
+  private final ArrayList<Runnable> mPosted = new ArrayList<>();
+  private final Element mRoot;
+  private final ElementDescriptor mDescriptor = new ElementDescriptor();
+
+  @Nullable
+  private Listener mListener;
+
+  public FakeDocumentProvider(Element root) {
+    mRoot = root;
+  }
+
+  /**
+   * Reports that the children of {@code element} may have changed, as a provider would after a
+   * layout.
+   */
+  public void notifySubtreeChanged(Element element) {
+    verifyThreadAccess();
+    if (mListener != null) {
+      mListener.onSubtreesPossiblyChanged(Collections.<Object>singletonList(element));
+    }
+  }
+
+  /**
+   * Runs everything posted so far, including anything posted while doing so, regardless of delay.
+   */
+  public void runPending() {
+    verifyThreadAccess();
+    while (!mPosted.isEmpty()) {
+      mPosted.remove(0).run();
+    }
+  }
+
+  @Override
+  public DocumentProvider create() {
+    return this;
+  }
+
+  @Override
+  public void setListener(@Nullable Listener listener) {
+    mListener = listener;
+  }
+
+  @Override
+  public void dispose() {
+    mListener = null;
+  }
+
+  @Override
+  public Object getRootElement() {
+    return mRoot;
+  }
+
+  @Override
+  public NodeDescriptor getNodeDescriptor(@Nullable Object element) {
+    return mDescriptor;
+  }
+
+  @Override
+  public void highlightElement(Object element, int color) {
+  }
+
+  @Override
+  public void hideHighlight() {
+  }
+
+  @Override
+  public void setInspectModeEnabled(boolean enabled) {
+  }
+
+  @Override
+  public void setRenderProfilingEnabled(boolean enabled) {
+  }
+
+  @Override
+  public void setAttributesAsText(Object element, String text) {
+  }
+
+  @Override
+  public int getRenderFlags(Object element) {
+    return 0;
+  }
+
+  @Override
+  public boolean checkThreadAccess() {
+    return Thread.currentThread() == mThread;
+  }
+
+  @Override
+  public void verifyThreadAccess() {
+    if (!checkThreadAccess()) {
+      throw new IllegalStateException();
+    }
+  }
+
+  @Override
+  public <V> V postAndWait(UncheckedCallable<V> c) {
+    verifyThreadAccess();
+    return c.call();
+  }
+
+  @Override
+  public void postAndWait(Runnable r) {
+    verifyThreadAccess();
+    r.run();
+  }
+
+  @Override
+  public void postDelayed(Runnable r, long delayMillis) {
+    mPosted.add(r);
+  }
+
+  @Override
+  public void removeCallbacks(Runnable r) {
+    mPosted.removeAll(Collections.singleton(r));
+  }
+
+  public static class Element {
+    public final String name;
+    public final List<Element> children;
+
+    public Element(String name, Element... children) {
+      this.name = name;
+      this.children = new ArrayList<>(Arrays.asList(children));
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  private class ElementDescriptor implements NodeDescriptor {
+    @Override
+    public void hook(Object element) {
+    }
+
+    @Override
+    public void unhook(Object element) {
+    }
+
+    @Override
+    public NodeType getNodeType(Object element) {
+      return (element == mRoot) ? NodeType.DOCUMENT_NODE : NodeType.ELEMENT_NODE;
+    }
+
+    @Override
+    public String getNodeName(Object element) {
+      return ((Element) element).name;
+    }
+
+    @Override
+    public String getLocalName(Object element) {
+      return ((Element) element).name;
+    }
+
+    @Nullable
+    @Override
+    public String getNodeValue(Object element) {
+      return null;
+    }
+
+    @Override
+    public void getChildren(Object element, Accumulator<Object> children) {
+      for (Element child : ((Element) element).children) {
+        children.store(child);
+      }
+    }
+
+    @Override
+    public void getAttributes(Object element, AttributeAccumulator attributes) {
+    }
+
+    @Override
+    public void setAttributesAsText(Object element, String text) {
+    }
+
+    @Override
+    public boolean checkThreadAccess() {
+      return FakeDocumentProvider.this.checkThreadAccess();
+    }
+
+    @Override
+    public void verifyThreadAccess() {
+      FakeDocumentProvider.this.verifyThreadAccess();
+    }
+
+    @Override
+    public <V> V postAndWait(UncheckedCallable<V> c) {
+      return FakeDocumentProvider.this.postAndWait(c);
+    }
+
+    @Override
+    public void postAndWait(Runnable r) {
+      FakeDocumentProvider.this.postAndWait(r);
+    }
+
+    @Override
+    public void postDelayed(Runnable r, long delayMillis) {
+      FakeDocumentProvider.this.postDelayed(r, delayMillis);
+    }
+
+    @Override
+    public void removeCallbacks(Runnable r) {
+      FakeDocumentProvider.this.removeCallbacks(r);
+    }
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RenderAnalysisTest {
+  private final Map<Object, ElementInfo> mInfos = new IdentityHashMap<>();
+  private final Map<Object, Integer> mFlags = new IdentityHashMap<>();
+
+  private final Object mRoot = new Object();
+  private final Object mWindow = new Object();
+  private final Object mDecorView = new Object();
+  private final Object mContent = new Object();
+  private final Object mHiddenGroup = new Object();
+  private final Object mHiddenChild = new Object();
+  private final Object mLeaf = new Object();
+
+  private final DocumentView mView = new DocumentView() {
+    @Override
+    public Object getRootElement() {
+      return mRoot;
+    }
+
+    @Override
+    public ElementInfo getElementInfo(Object element) {
+      return mInfos.get(element);
+    }
+  };
+
+  private final RenderAnalysis.FlagsProvider mFlagsProvider = new RenderAnalysis.FlagsProvider() {
+    @Override
+    public int getRenderFlags(Object element) {
+      Integer flags = mFlags.get(element);
+      return (flags != null) ? flags : 0;
+    }
+  };
+
+  @Before
+  public void setUp() {
+    // root -> window -> decor view (opaque) -> content (opaque) -> hidden group, leaf
+    // hidden group (opaque) -> hidden child
+    add(mRoot, null, 0, mWindow);
+    add(mWindow, mRoot, 0, mDecorView);
+    add(mDecorView, mWindow,
+        RenderAnalysis.FLAG_DRAWS | RenderAnalysis.FLAG_OPAQUE_BACKGROUND, mContent);
+    add(mContent, mDecorView,
+        RenderAnalysis.FLAG_DRAWS | RenderAnalysis.FLAG_OPAQUE_BACKGROUND, mHiddenGroup, mLeaf);
+    add(mHiddenGroup, mContent,
+        RenderAnalysis.FLAG_DRAWS
+            | RenderAnalysis.FLAG_OPAQUE_BACKGROUND
+            | RenderAnalysis.FLAG_HIDDEN,
+        mHiddenChild);
+    add(mHiddenChild, mHiddenGroup, RenderAnalysis.FLAG_DRAWS);
+    add(mLeaf, mContent, RenderAnalysis.FLAG_DRAWS);
+  }
+
+  @Test
+  public void testReportsOnlyDrawnElements() {
+    List<RenderAnalysis.NodeReport> reports =
+        RenderAnalysis.analyze(mView, mFlagsProvider, RenderAnalysis.SortOrder.DEPTH);
+    assertEquals(4, reports.size());
+
+    RenderAnalysis.NodeReport decorView = find(reports, mDecorView);
+    assertEquals(0, decorView.depth);
+    assertEquals(0, decorView.opaqueLayersBeneath);
+    assertEquals(2, decorView.hiddenCount);
+
+    RenderAnalysis.NodeReport leaf = find(reports, mLeaf);
+    assertEquals(2, leaf.depth);
+    assertEquals(2, leaf.opaqueLayersBeneath);
+    assertEquals(0, leaf.hiddenCount);
+  }
+
+  @Test
+  public void testHiddenSubtreeIsNotDrawn() {
+    List<RenderAnalysis.NodeReport> reports =
+        RenderAnalysis.analyze(mView, mFlagsProvider, RenderAnalysis.SortOrder.OVERDRAW);
+
+    RenderAnalysis.NodeReport hiddenGroup = find(reports, mHiddenGroup);
+    assertEquals(2, hiddenGroup.depth);
+    assertEquals(2, hiddenGroup.opaqueLayersBeneath);
+    assertEquals(2, hiddenGroup.hiddenCount);
+
+    for (RenderAnalysis.NodeReport report : reports) {
+      assertNotSame(mHiddenChild, report.element);
+    }
+  }
+
+  @Test
+  public void testSortOrders() {
+    List<RenderAnalysis.NodeReport> reports =
+        RenderAnalysis.analyze(mView, mFlagsProvider, RenderAnalysis.SortOrder.OVERDRAW);
+    assertEquals(2, reports.get(0).opaqueLayersBeneath);
+    assertSame(mDecorView, reports.get(reports.size() - 1).element);
+
+    reports = RenderAnalysis.analyze(mView, mFlagsProvider, RenderAnalysis.SortOrder.HIDDEN_COUNT);
+    assertEquals(2, reports.get(0).hiddenCount);
+    assertEquals(0, reports.get(reports.size() - 1).hiddenCount);
+  }
+
+  private void add(Object element, Object parent, int flags, Object... children) {
+    mInfos.put(element, new ElementInfo(element, parent, new ArrayList<>(Arrays.asList(children))));
+    mFlags.put(element, flags);
+  }
+
+  private static RenderAnalysis.NodeReport find(
+      List<RenderAnalysis.NodeReport> reports,
+      Object element) {
+    for (RenderAnalysis.NodeReport report : reports) {
+      if (report.element == element) {
+        return report;
+      }
+    }
+    fail();
+    return null;
+  }
+}
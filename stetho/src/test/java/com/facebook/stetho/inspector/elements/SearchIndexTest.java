@@ -0,0 +1,120 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class SearchIndexTest {
+  private SearchIndex mIndex;
+
+  @Before
+  public void setUp() {
+    mIndex = new SearchIndex();
+    SearchIndex.Batch batch = new SearchIndex.Batch();
+    batch.put(3, text("TextView", "text", "Hello World"));
+    batch.put(1, text("LinearLayout", "id", "container"));
+    batch.put(2, text("Button", "text", "Say hello"));
+    mIndex.apply(batch);
+  }
+
+  @Test
+  public void testFindIgnoresCase() {
+    assertEquals(Arrays.asList(2, 3), find("HELLO"));
+  }
+
+  @Test
+  public void testFindMatchesNodeNameAndAttributeName() {
+    assertEquals(Arrays.asList(1), find("linear"));
+    assertEquals(Arrays.asList(2, 3), find("text"));
+  }
+
+  @Test
+  public void testShortQuery() {
+    assertEquals(Arrays.asList(1, 2), find("ut"));
+    assertEquals(Arrays.asList(1, 2, 3), find(""));
+  }
+
+  @Test
+  public void testMatchDoesNotSpanAttributes() {
+    assertEquals(0, find("idcontainer").size());
+    assertEquals(0, find("textsay").size());
+  }
+
+  @Test
+  public void testGramsPresentButNotContiguous() {
+    // "wor" and "hel" are both present in node 3, but not as "worhel".
+    assertEquals(0, find("worhel").size());
+  }
+
+  @Test
+  public void testUpdateReplacesText() {
+    SearchIndex.Batch batch = new SearchIndex.Batch();
+    batch.put(3, text("TextView", "text", "Goodbye"));
+    mIndex.apply(batch);
+
+    assertEquals(Arrays.asList(2), find("hello"));
+    assertEquals(Arrays.asList(3), find("goodbye"));
+  }
+
+  @Test
+  public void testRemove() {
+    SearchIndex.Batch batch = new SearchIndex.Batch();
+    batch.remove(2);
+    mIndex.apply(batch);
+
+    assertEquals(Arrays.asList(3), find("hello"));
+    assertEquals(0, find("button").size());
+  }
+
+  @Test
+  public void testManyNodesShareGram() {
+    SearchIndex.Batch batch = new SearchIndex.Batch();
+    for (int nodeId = 100; nodeId > 3; --nodeId) {
+      batch.put(nodeId, text("ImageView", "id", "icon"));
+    }
+    mIndex.apply(batch);
+    assertEquals(97, find("icon").size());
+
+    batch = new SearchIndex.Batch();
+    for (int nodeId = 5; nodeId <= 100; ++nodeId) {
+      batch.remove(nodeId);
+    }
+    mIndex.apply(batch);
+    assertEquals(Arrays.asList(4), find("icon"));
+  }
+
+  @Test
+  public void testClear() {
+    mIndex.clear();
+    assertEquals(0, find("").size());
+  }
+
+  private List<Integer> find(String query) {
+    List<Integer> results = new ArrayList<>();
+    for (int nodeId : mIndex.find(query)) {
+      results.add(nodeId);
+    }
+    return results;
+  }
+
+  private static String text(String nodeName, String... attributes) {
+    return SearchIndex.getSearchableText(nodeName, new ArrayList<>(Arrays.asList(attributes)));
+  }
+}
@@ -0,0 +1,284 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements;
+
+import android.os.Build;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for incremental updates via {@link ShadowDocument#beginUpdate(java.util.Collection)},
+ * using a synthetic tree large enough that a full walk would be noticeable on the UI thread.
+ */
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class ShadowDocumentTest {
+  private static final int FAN_OUT = 10;
+  private static final int DEPTH = 4;
+
+  // 1 + 10 + 100 + 1,000 + 10,000
+  private static final int NODE_COUNT = 11111;
+
+  private final Map<Object, List<Object>> mTree = new IdentityHashMap<>();
+  private Object mRoot;
+  private ShadowDocument mShadowDocument;
+
+  @Before
+  public void setUp() {
+    mRoot = createSubtree(DEPTH);
+    mShadowDocument = new ShadowDocument(mRoot);
+    assertEquals(NODE_COUNT, update(null /* dirtyRoots */));
+  }
+
+  @Test
+  public void testNoChangesVisitsOnlyPathToDirtyRoot() {
+    Object leafParent = getFirstDescendant(DEPTH - 1);
+    int visited = update(Collections.singletonList(leafParent));
+
+    // root, 2 intermediate levels, the dirty root, and its children.
+    assertEquals(DEPTH + FAN_OUT, visited);
+  }
+
+  @Test
+  public void testChildAddedInDirtySubtree() {
+    Object leafParent = getFirstDescendant(DEPTH - 1);
+    Object newLeaf = new Node();
+    mTree.put(newLeaf, new ArrayList<Object>());
+    mTree.get(leafParent).add(newLeaf);
+
+    ShadowDocument.UpdateBuilder builder =
+        mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    walk(builder);
+    ShadowDocument.Update update = builder.build();
+    assertTrue(update.isElementChanged(leafParent));
+    assertTrue(update.isElementChanged(newLeaf));
+    update.commit();
+
+    assertSame(leafParent, mShadowDocument.getElementInfo(newLeaf).parentElement);
+    assertEquals(FAN_OUT + 1, mShadowDocument.getElementInfo(leafParent).children.size());
+  }
+
+  @Test
+  public void testNewSubtreeOutsideDirtyRootsIsVisited() {
+    // A change outside of the dirty sub-trees but along the path to one of them is still
+    // detected, and new elements are examined in full.
+    Object pathElement = getFirstDescendant(1);
+    Object newSubtree = createSubtree(1);
+    mTree.get(pathElement).add(newSubtree);
+
+    int visited = update(Collections.singletonList(getFirstDescendant(DEPTH - 1)));
+    assertEquals(DEPTH + FAN_OUT + 1 + FAN_OUT, visited);
+    assertSame(pathElement, mShadowDocument.getElementInfo(newSubtree).parentElement);
+  }
+
+  @Test
+  public void testChildRemovedInDirtySubtree() {
+    Object parent = getFirstDescendant(DEPTH - 2);
+    Object removed = mTree.get(parent).remove(0);
+    Object removedLeaf = mTree.get(removed).get(0);
+
+    update(Collections.singletonList(parent));
+
+    assertNull(mShadowDocument.getElementInfo(removed));
+    assertNull(mShadowDocument.getElementInfo(removedLeaf));
+  }
+
+  @Test
+  public void testUnknownDirtyRootFallsBackToFullUpdate() {
+    ShadowDocument.UpdateBuilder builder =
+        mShadowDocument.beginUpdate(Collections.<Object>singletonList(new Node()));
+    assertTrue(builder.isSubtreeDirty(mRoot));
+    builder.build().abandon();
+
+    assertEquals(NODE_COUNT, update(Collections.<Object>singletonList(new Node())));
+  }
+
+  @Test
+  public void testCleanSubtreeIsNotVisited() {
+    ShadowDocument.UpdateBuilder builder =
+        mShadowDocument.beginUpdate(Collections.singletonList(getFirstDescendant(DEPTH - 1)));
+    Object cleanChild = mTree.get(mRoot).get(FAN_OUT - 1);
+    assertFalse(builder.isSubtreeDirty(cleanChild));
+    assertFalse(builder.shouldVisitSubtree(cleanChild));
+    builder.build().abandon();
+  }
+
+  @Test
+  public void testUpdateSpanningTreeChangeIsInconsistent() {
+    ShadowDocument.UpdateBuilder builder = mShadowDocument.beginUpdate(null /* dirtyRoots */);
+    List<Object> rootChildren = mTree.get(mRoot);
+    Object first = rootChildren.get(0);
+    Object second = rootChildren.get(1);
+    Object moved = mTree.get(first).get(0);
+
+    // Observe the first element's children, then move one of them before observing the second.
+    builder.setElementChildren(mRoot, rootChildren);
+    builder.setElementChildren(first, new ArrayList<>(mTree.get(first)));
+    mTree.get(first).remove(moved);
+    mTree.get(second).add(moved);
+    builder.setElementChildren(second, mTree.get(second));
+
+    ShadowDocument.Update update = builder.build();
+    assertFalse(update.isConsistent());
+    update.abandon();
+
+    update(null /* dirtyRoots */);
+    assertSame(second, mShadowDocument.getElementInfo(moved).parentElement);
+  }
+
+  @Test
+  public void testAttributeSnapshots() {
+    Object leaf = getFirstDescendant(DEPTH);
+    Object leafParent = getFirstDescendant(DEPTH - 1);
+    assertNull(mShadowDocument.getElementInfo(leaf).attributes);
+
+    ShadowDocument.UpdateBuilder builder =
+        mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    builder.setElementChildren(leaf, mTree.get(leaf));
+    assertTrue(builder.setElementAttributes(leaf, 1 /* contentHash */, Arrays.asList("text", "a")));
+    builder.build().commit();
+
+    ElementInfo leafInfo = mShadowDocument.getElementInfo(leaf);
+    assertEquals(Arrays.asList("text", "a"), leafInfo.attributes);
+    assertSame(leafParent, leafInfo.parentElement);
+    int version = leafInfo.attributesVersion;
+
+    // Unchanged attributes don't produce a change, and the snapshot survives structural changes.
+    builder = mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    mTree.get(leafParent).remove(1);
+    builder.setElementChildren(leafParent, mTree.get(leafParent));
+    builder.setElementChildren(leaf, mTree.get(leaf));
+    assertFalse(builder.setElementAttributes(leaf, 1 /* contentHash */, Arrays.asList("text", "a")));
+    ShadowDocument.Update update = builder.build();
+    assertFalse(update.isElementChanged(leaf));
+    update.commit();
+    assertEquals(version, mShadowDocument.getElementInfo(leaf).attributesVersion);
+
+    builder = mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    builder.setElementChildren(leaf, mTree.get(leaf));
+    assertTrue(builder.setElementAttributes(leaf, 2 /* contentHash */, Arrays.asList("text", "b")));
+    update = builder.build();
+    assertTrue(update.isElementChanged(leaf));
+    assertTrue(update.isConsistent());
+    update.commit();
+    assertEquals(version + 1, mShadowDocument.getElementInfo(leaf).attributesVersion);
+    assertEquals(Arrays.asList("text", "b"), mShadowDocument.getElementInfo(leaf).attributes);
+  }
+
+  @Test
+  public void testContentHash() {
+    Object leaf = getFirstDescendant(DEPTH);
+    Object leafParent = getFirstDescendant(DEPTH - 1);
+
+    ShadowDocument.UpdateBuilder builder =
+        mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    assertFalse(builder.hasElementAttributes(leaf, 0 /* contentHash */));
+    builder.setElementChildren(leaf, mTree.get(leaf));
+    assertTrue(builder.setElementAttributes(leaf, 1 /* contentHash */, Arrays.asList("id", "a")));
+    assertTrue(builder.hasElementAttributes(leaf, 1 /* contentHash */));
+    builder.build().commit();
+    int version = mShadowDocument.getElementInfo(leaf).attributesVersion;
+
+    // A new hash with the same attributes is recorded, but doesn't count as an attribute change.
+    builder = mShadowDocument.beginUpdate(Collections.singletonList(leafParent));
+    assertTrue(builder.hasElementAttributes(leaf, 1 /* contentHash */));
+    assertFalse(builder.hasElementAttributes(leaf, 2 /* contentHash */));
+    builder.setElementChildren(leaf, mTree.get(leaf));
+    assertFalse(builder.setElementAttributes(leaf, 2 /* contentHash */, Arrays.asList("id", "a")));
+    builder.build().commit();
+
+    ElementInfo leafInfo = mShadowDocument.getElementInfo(leaf);
+    assertEquals(2, leafInfo.contentHash);
+    assertEquals(version, leafInfo.attributesVersion);
+    assertEquals(Arrays.asList("id", "a"), leafInfo.attributes);
+  }
+
+  private Object createSubtree(int depth) {
+    Node node = new Node();
+    List<Object> children = new ArrayList<>();
+    if (depth > 0) {
+      for (int i = 0; i < FAN_OUT; i++) {
+        children.add(createSubtree(depth - 1));
+      }
+    }
+    mTree.put(node, children);
+    return node;
+  }
+
+  private Object getFirstDescendant(int depth) {
+    Object element = mRoot;
+    for (int i = 0; i < depth; i++) {
+      element = mTree.get(element).get(0);
+    }
+    return element;
+  }
+
+  /**
+   * Performs and commits an update the same way {@link Document} does.
+   *
+   * @return Number of elements whose children were examined.
+   */
+  private int update(@Nullable List<Object> dirtyRoots) {
+    ShadowDocument.UpdateBuilder builder = mShadowDocument.beginUpdate(dirtyRoots);
+    int visited = walk(builder);
+    ShadowDocument.Update update = builder.build();
+    if (update.isEmpty()) {
+      update.abandon();
+    } else {
+      update.commit();
+    }
+    return visited;
+  }
+
+  private int walk(ShadowDocument.UpdateBuilder builder) {
+    int visited = 0;
+    Queue<Object> queue = new ArrayDeque<>();
+    queue.add(mRoot);
+    queue.add(builder.isSubtreeDirty(mRoot));
+    while (!queue.isEmpty()) {
+      Object element = queue.remove();
+      boolean isSubtreeDirty = (Boolean) queue.remove();
+      List<Object> children = mTree.get(element);
+      builder.setElementChildren(element, children);
+      visited++;
+      for (Object child : children) {
+        boolean isChildSubtreeDirty = isSubtreeDirty || builder.isSubtreeDirty(child);
+        if (isChildSubtreeDirty || builder.shouldVisitSubtree(child)) {
+          queue.add(child);
+          queue.add(isChildSubtreeDirty);
+        }
+      }
+    }
+    return visited;
+  }
+
+  private static class Node {
+  }
+}
@@ -0,0 +1,73 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements.android;
+
+import android.app.Activity;
+import android.os.Build;
+import android.view.View;
+
+import com.facebook.stetho.inspector.elements.DocumentProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.util.Collections;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.reset;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class AndroidDocumentProviderTest {
+  private static final long IDLE_PERIOD_MS = 60 * 1000;
+
+  private final Activity mActivity = Robolectric.setupActivity(Activity.class);
+  private final DocumentProvider.Listener mListener = mock(DocumentProvider.Listener.class);
+  private AndroidDocumentProvider mProvider;
+
+  @Before
+  public void setUp() {
+    ActivityTracker.get().add(mActivity);
+    mProvider = (AndroidDocumentProvider)
+        new AndroidDocumentProviderFactory(Robolectric.application).create();
+    mProvider.setListener(mListener);
+
+    // Let the provider report the initial set of windows.
+    Robolectric.getUiThreadScheduler().advanceBy(IDLE_PERIOD_MS);
+    reset(mListener);
+  }
+
+  @After
+  public void tearDown() {
+    mProvider.dispose();
+    ActivityTracker.get().remove(mActivity);
+  }
+
+  @Test
+  public void testIdleScreenIsNotWalked() {
+    Robolectric.getUiThreadScheduler().advanceBy(IDLE_PERIOD_MS);
+    verifyZeroInteractions(mListener);
+  }
+
+  @Test
+  public void testLaidOutViewIsReported() {
+    View decorView = mActivity.getWindow().peekDecorView();
+    mProvider.onViewLaidOut(decorView);
+    Robolectric.getUiThreadScheduler().advanceBy(IDLE_PERIOD_MS);
+    verify(mListener).onSubtreesPossiblyChanged(Collections.<Object>singletonList(decorView));
+  }
+}
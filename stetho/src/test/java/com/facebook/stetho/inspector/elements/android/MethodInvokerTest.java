@@ -10,7 +10,10 @@
 package com.facebook.stetho.inspector.elements.android;
 
 import android.app.Activity;
+import android.graphics.Color;
 import android.os.Build;
+import android.text.TextUtils;
+import android.util.TypedValue;
 import android.widget.CheckBox;
 import android.widget.TextView;
 import org.junit.Before;
@@ -59,6 +62,34 @@ public class MethodInvokerTest {
     assertEquals(true, mCheckBox.isChecked());
   }
 
+  @Test
+  public void testSetEnum() {
+    mInvoker.invoke(mTextView, "setEllipsize", "end");
+    assertEquals(TextUtils.TruncateAt.END, mTextView.getEllipsize());
+  }
+
+  @Test
+  public void testSetColor() {
+    mInvoker.invoke(mTextView, "setTextColor", "#ff0000");
+    assertEquals(Color.RED, mTextView.getCurrentTextColor());
+  }
+
+  @Test
+  public void testSetDimension() {
+    mInvoker.invoke(mTextView, "setMinimumHeight", "10dp");
+    int expected = (int) TypedValue.applyDimension(
+        TypedValue.COMPLEX_UNIT_DIP,
+        10,
+        mActivity.getResources().getDisplayMetrics());
+    assertEquals(expected, mTextView.getMinimumHeight());
+  }
+
+  @Test
+  public void testSetResourceReference() {
+    mInvoker.invoke(mTextView, "setText", "@android:string/ok");
+    assertEquals(mActivity.getString(android.R.string.ok), mTextView.getText().toString());
+  }
+
   @Test
   public void testSetAttributeAsTextIgnoreUnknownAttribute() {
     // Should not throw
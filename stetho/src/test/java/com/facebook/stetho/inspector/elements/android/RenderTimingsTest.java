@@ -0,0 +1,71 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.elements.android;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RenderTimingsTest {
+  private static final long NANOS_PER_MS = 1000000;
+
+  @Test
+  public void testAverages() {
+    RenderTimings timings = new RenderTimings();
+    assertEquals(0, timings.getSampleCount());
+    assertEquals(0f, timings.getTotalMs(), 0f);
+
+    timings.addSample(1 * NANOS_PER_MS, 2 * NANOS_PER_MS, 4 * NANOS_PER_MS);
+    timings.addSample(3 * NANOS_PER_MS, 4 * NANOS_PER_MS, 6 * NANOS_PER_MS);
+
+    assertEquals(2, timings.getSampleCount());
+    assertEquals(2f, timings.getMeasureMs(), 0.001f);
+    assertEquals(3f, timings.getLayoutMs(), 0.001f);
+    assertEquals(5f, timings.getDrawMs(), 0.001f);
+    assertEquals(10f, timings.getTotalMs(), 0.001f);
+  }
+
+  @Test
+  public void testWindowSlides() {
+    RenderTimings timings = new RenderTimings();
+    for (int i = 0; i < RenderTimings.WINDOW_SIZE; ++i) {
+      timings.addSample(100 * NANOS_PER_MS, 0, 0);
+    }
+    for (int i = 0; i < RenderTimings.WINDOW_SIZE; ++i) {
+      timings.addSample(1 * NANOS_PER_MS, 0, 0);
+    }
+
+    assertEquals(RenderTimings.WINDOW_SIZE, timings.getSampleCount());
+    assertEquals(1f, timings.getMeasureMs(), 0.001f);
+  }
+
+  @Test
+  public void testSamplesWithoutLayout() {
+    RenderTimings timings = new RenderTimings();
+    timings.addSample(1 * NANOS_PER_MS, 4 * NANOS_PER_MS);
+    assertEquals(0f, timings.getLayoutMs(), 0f);
+
+    timings.addSample(3 * NANOS_PER_MS, 2 * NANOS_PER_MS, 6 * NANOS_PER_MS);
+    timings.addSample(5 * NANOS_PER_MS, 8 * NANOS_PER_MS);
+
+    assertEquals(3, timings.getSampleCount());
+    assertEquals(3f, timings.getMeasureMs(), 0.001f);
+    assertEquals(2f, timings.getLayoutMs(), 0.001f);
+    assertEquals(6f, timings.getDrawMs(), 0.001f);
+  }
+
+  @Test
+  public void testFormat() {
+    assertEquals("1.50", RenderTimings.formatMs(1.5f));
+  }
+}
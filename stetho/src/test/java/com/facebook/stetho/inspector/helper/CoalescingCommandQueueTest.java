@@ -0,0 +1,261 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.helper;
+
+import android.os.Build;
+import com.facebook.stetho.common.ThreadBound;
+import com.facebook.stetho.common.UncheckedCallable;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+/**
+ * Tests for {@link CoalescingCommandQueue}.  The test thread plays the part of the thread that
+ * commands run on, and runs whatever the queue posts to it when asked to.
+ */
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class CoalescingCommandQueueTest {
+  private final FakeThreadBound mThreadBound = new FakeThreadBound();
+  private final CoalescingCommandQueue mQueue = new CoalescingCommandQueue(mThreadBound);
+  private final List<String> mLog = Collections.synchronizedList(new ArrayList<String>());
+
+  @Test
+  public void testLatestKeyedCommandWins() {
+    mQueue.post("highlight", log("first"));
+    mQueue.post(null /* key */, log("unkeyed"));
+    mQueue.post("highlight", log("second"));
+    mThreadBound.runPosted();
+
+    // The replacement takes its place at the end of the queue.
+    assertEquals(Arrays.asList("unkeyed", "second"), mLog);
+  }
+
+  @Test
+  public void testKeyOnlyReplacesPendingCommand() {
+    mQueue.post("highlight", log("first"));
+    mThreadBound.runPosted();
+    mQueue.post("highlight", log("second"));
+    mThreadBound.runPosted();
+
+    assertEquals(Arrays.asList("first", "second"), mLog);
+  }
+
+  @Test
+  public void testPostIsThrottledToFrames() {
+    mQueue.post(null /* key */, log("first"));
+    mThreadBound.runPosted();
+
+    // No time has passed since the last batch ran.
+    mQueue.post(null /* key */, log("second"));
+    assertEquals(CoalescingCommandQueue.FRAME_INTERVAL_MS, mThreadBound.getLastDelayMs());
+
+    // A burst of commands is still only one batch.
+    mQueue.post(null /* key */, log("third"));
+    assertEquals(1, mThreadBound.getPostedCount());
+  }
+
+  @Test
+  public void testPostAndWaitRunsInlineAfterPendingCommands() {
+    mQueue.post(null /* key */, log("first"));
+    mQueue.post("highlight", log("second"));
+
+    String result = mQueue.postAndWait(new UncheckedCallable<String>() {
+      @Override
+      public String call() {
+        mLog.add("waited");
+        return "result";
+      }
+    });
+
+    assertEquals("result", result);
+    assertEquals(Arrays.asList("first", "second", "waited"), mLog);
+
+    // Everything ran inline, so the scheduled batch was cancelled.
+    assertEquals(0, mThreadBound.getPostedCount());
+  }
+
+  @Test
+  public void testPostAndWaitFromAnotherThread() throws InterruptedException {
+    mQueue.post(null /* key */, log("first"));
+
+    final AtomicReference<String> result = new AtomicReference<>();
+    Thread caller = new Thread() {
+      @Override
+      public void run() {
+        result.set(mQueue.postAndWait(new UncheckedCallable<String>() {
+          @Override
+          public String call() {
+            mLog.add("waited");
+            return "result";
+          }
+        }));
+      }
+    };
+    caller.start();
+    while (caller.isAlive()) {
+      mThreadBound.runPosted();
+      caller.join(10 /* millis */);
+    }
+
+    assertEquals("result", result.get());
+    assertEquals(Arrays.asList("first", "waited"), mLog);
+
+    // The waiting caller doesn't wait for the next frame.
+    assertEquals(0, mThreadBound.getLastDelayMs());
+  }
+
+  @Test
+  public void testReentrantPostAndWait() {
+    mQueue.post(null /* key */, new Runnable() {
+      @Override
+      public void run() {
+        mLog.add("outer start");
+        mQueue.postAndWait(new UncheckedCallable<Void>() {
+          @Override
+          public Void call() {
+            mLog.add("inner");
+            return null;
+          }
+        });
+        mLog.add("outer end");
+      }
+    });
+    mQueue.post(null /* key */, log("next"));
+    mThreadBound.runPosted();
+
+    assertEquals(Arrays.asList("outer start", "inner", "outer end", "next"), mLog);
+
+    // The queue is still usable after the nested batch swapped its lists around.
+    mLog.clear();
+    mQueue.post(null /* key */, log("later"));
+    mQueue.flush();
+    assertEquals(Arrays.asList("later"), mLog);
+  }
+
+  @Test
+  public void testFailedCommandDoesNotStopBatch() {
+    mQueue.post(null /* key */, new Runnable() {
+      @Override
+      public void run() {
+        throw new IllegalStateException();
+      }
+    });
+    mQueue.post(null /* key */, log("next"));
+    mThreadBound.runPosted();
+
+    assertEquals(Arrays.asList("next"), mLog);
+  }
+
+  @Test
+  public void testPostAndWaitPropagatesFailure() {
+    final IllegalStateException failure = new IllegalStateException();
+    try {
+      mQueue.postAndWait(new UncheckedCallable<Void>() {
+        @Override
+        public Void call() {
+          throw failure;
+        }
+      });
+      fail();
+    } catch (RuntimeException e) {
+      assertSame(failure, e.getCause());
+    }
+  }
+
+  private Runnable log(final String message) {
+    return new Runnable() {
+      @Override
+      public void run() {
+        mLog.add(message);
+      }
+    };
+  }
+
+  private static class FakeThreadBound implements ThreadBound {
+    private final Thread mThread = Thread.currentThread();
+
+    @GuardedBy("this")
+    private final ArrayList<Runnable> mPosted = new ArrayList<>();
+
+    @GuardedBy("this")
+    private long mLastDelayMs = -1;
+
+    @Override
+    public boolean checkThreadAccess() {
+      return Thread.currentThread() == mThread;
+    }
+
+    @Override
+    public void verifyThreadAccess() {
+      if (!checkThreadAccess()) {
+        throw new IllegalStateException();
+      }
+    }
+
+    @Override
+    public <V> V postAndWait(UncheckedCallable<V> c) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void postAndWait(Runnable r) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public synchronized void postDelayed(Runnable r, long delayMillis) {
+      mPosted.add(r);
+      mLastDelayMs = delayMillis;
+    }
+
+    @Override
+    public synchronized void removeCallbacks(Runnable r) {
+      mPosted.removeAll(Collections.singleton(r));
+    }
+
+    public synchronized int getPostedCount() {
+      return mPosted.size();
+    }
+
+    public synchronized long getLastDelayMs() {
+      return mLastDelayMs;
+    }
+
+    /**
+     * Runs everything posted so far, regardless of delay.
+     */
+    public void runPosted() {
+      verifyThreadAccess();
+      while (true) {
+        @Nullable Runnable runnable;
+        synchronized (this) {
+          runnable = mPosted.isEmpty() ? null : mPosted.remove(0);
+        }
+        if (runnable == null) {
+          break;
+        }
+        runnable.run();
+      }
+    }
+  }
+}
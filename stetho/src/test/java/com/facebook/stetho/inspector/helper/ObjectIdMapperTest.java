@@ -0,0 +1,196 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.helper;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ObjectIdMapperTest {
+  private static final int RANDOM_OPERATIONS = 20000;
+  private static final int POOL_SIZE = 500;
+
+  @Test
+  public void testPutIsIdempotent() {
+    ObjectIdMapper mapper = new ObjectIdMapper();
+    Object object = new Object();
+    int id = mapper.putObject(object);
+    assertEquals(id, mapper.putObject(object));
+    assertEquals(1, mapper.size());
+    assertSame(object, mapper.getObjectForId(id));
+    assertEquals(Integer.valueOf(id), mapper.getIdForObject(object));
+  }
+
+  @Test
+  public void testIdsAreNotReused() {
+    ObjectIdMapper mapper = new ObjectIdMapper();
+    Object object = new Object();
+    int id = mapper.putObject(object);
+    assertEquals(Integer.valueOf(id), mapper.removeObject(object));
+    assertFalse(mapper.containsId(id));
+    assertFalse(mapper.containsObject(object));
+    assertTrue(mapper.putObject(object) != id);
+  }
+
+  @Test
+  public void testCallbacks() {
+    final List<Object> mapped = new ArrayList<>();
+    final List<Object> unmapped = new ArrayList<>();
+    ObjectIdMapper mapper = new ObjectIdMapper() {
+      @Override
+      protected void onMapped(Object object, int id) {
+        mapped.add(object);
+      }
+
+      @Override
+      protected void onUnmapped(Object object, int id) {
+        unmapped.add(object);
+      }
+    };
+
+    Object first = new Object();
+    Object second = new Object();
+    int firstId = mapper.putObject(first);
+    mapper.putObject(second);
+    mapper.putObject(second);
+    assertSame(first, mapper.removeObjectById(firstId));
+    mapper.clear();
+
+    assertEquals(2, mapped.size());
+    assertEquals(2, unmapped.size());
+    assertSame(first, unmapped.get(0));
+    assertSame(second, unmapped.get(1));
+    assertEquals(0, mapper.size());
+  }
+
+  @Test
+  public void testRandomOperationsMatchReference() {
+    ObjectIdMapper mapper = new ObjectIdMapper();
+    Map<Object, Integer> reference = new IdentityHashMap<>();
+    Random random = new Random(0x1d5);
+
+    List<Object> pool = new ArrayList<>(POOL_SIZE);
+    for (int i = 0; i < POOL_SIZE; i++) {
+      pool.add(new Object());
+    }
+
+    for (int i = 0; i < RANDOM_OPERATIONS; i++) {
+      Object object = pool.get(random.nextInt(POOL_SIZE));
+      switch (random.nextInt(3)) {
+        case 0:
+        case 1:
+          int id = mapper.putObject(object);
+          Integer expected = reference.get(object);
+          if (expected != null) {
+            assertEquals(expected.intValue(), id);
+          } else {
+            reference.put(object, id);
+          }
+          break;
+        case 2:
+          assertEquals(reference.remove(object), mapper.removeObject(object));
+          break;
+      }
+    }
+
+    assertEquals(reference.size(), mapper.size());
+    for (Object object : pool) {
+      Integer id = reference.get(object);
+      assertEquals(id, mapper.getIdForObject(object));
+      if (id != null) {
+        assertSame(object, mapper.getObjectForId(id));
+      }
+    }
+  }
+
+  @Test
+  public void testWeakObjects() {
+    ObjectIdMapper mapper = new ObjectIdMapper(true /* weakObjects */);
+    Object object = new Object();
+    int id = mapper.putObject(object);
+    assertSame(object, mapper.getObjectForId(id));
+    assertEquals(Integer.valueOf(id), mapper.getIdForObject(object));
+    assertEquals(Integer.valueOf(id), mapper.removeObject(object));
+    assertEquals(0, mapper.size());
+  }
+
+  @Test
+  public void testWeakObjectsInStrongMapper() {
+    ObjectIdMapper mapper = new ObjectIdMapper();
+    Object strongObject = new Object();
+    Object weakObject = new Object();
+    int strongId = mapper.putObject(strongObject);
+    int weakId = mapper.putWeakObject(weakObject);
+    assertEquals(strongId, mapper.putWeakObject(strongObject));
+    assertEquals(weakId, mapper.putObject(weakObject));
+    assertSame(weakObject, mapper.getObjectForId(weakId));
+    assertEquals(Integer.valueOf(weakId), mapper.getIdForObject(weakObject));
+    assertEquals(2, mapper.size());
+    assertSame(weakObject, mapper.removeObjectById(weakId));
+    assertEquals(1, mapper.size());
+  }
+
+  @Test
+  public void testLookupsDuringModification() throws InterruptedException {
+    final ObjectIdMapper mapper = new ObjectIdMapper();
+    final List<Object> stable = new ArrayList<>();
+    final int[] stableIds = new int[POOL_SIZE];
+    for (int i = 0; i < POOL_SIZE; i++) {
+      stable.add(new Object());
+      stableIds[i] = mapper.putObject(stable.get(i));
+    }
+
+    final AtomicBoolean done = new AtomicBoolean();
+    final AtomicReference<String> failure = new AtomicReference<>();
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (!done.get()) {
+          for (int i = 0; i < POOL_SIZE; i++) {
+            if (mapper.getObjectForId(stableIds[i]) != stable.get(i) ||
+                !Integer.valueOf(stableIds[i]).equals(mapper.getIdForObject(stable.get(i)))) {
+              failure.set("lost mapping for id " + stableIds[i]);
+              return;
+            }
+          }
+        }
+      }
+    };
+    reader.start();
+
+    // Churn the tables, including resizes, while the reader runs.
+    for (int round = 0; round < 20; round++) {
+      List<Object> transients = new ArrayList<>();
+      for (int i = 0; i < POOL_SIZE * 4; i++) {
+        Object object = new Object();
+        transients.add(object);
+        mapper.putObject(object);
+      }
+      for (Object object : transients) {
+        mapper.removeObject(object);
+      }
+    }
+
+    done.set(true);
+    reader.join();
+    assertNull(failure.get());
+  }
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import android.os.Build;
+import com.facebook.stetho.inspector.protocol.module.Network;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link HarWriter} and {@link HarReader}
+ */
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class HarWriterTest {
+  @Test
+  public void testWriteEntry() throws IOException, JSONException {
+    JSONObject har = new JSONObject(write(createEntry()));
+    JSONObject log = har.getJSONObject("log");
+    assertEquals("1.2", log.getString("version"));
+    assertEquals(1, log.getJSONArray("entries").length());
+
+    JSONObject entry = log.getJSONArray("entries").getJSONObject(0);
+    assertEquals(150, entry.getLong("time"));
+    JSONObject request = entry.getJSONObject("request");
+    assertEquals("POST", request.getString("method"));
+    assertEquals("{\"a\":\"line\\nbreak\"}", request.getJSONObject("postData").getString("text"));
+    JSONObject response = entry.getJSONObject("response");
+    assertEquals(200, response.getInt("status"));
+    assertEquals(
+        "Content-Type",
+        response.getJSONArray("headers").getJSONObject(0).getString("name"));
+    assertEquals(100, entry.getJSONObject("timings").getLong("wait"));
+    assertEquals(50, entry.getJSONObject("timings").getLong("receive"));
+    assertEquals(-1, entry.getJSONObject("timings").getLong("send"));
+    assertEquals(-1, entry.getJSONObject("timings").getLong("connect"));
+  }
+
+  @Test
+  public void testWriteResourceTiming() throws IOException, JSONException {
+    NetworkLog.Entry original = createEntry();
+    original.timing = new Network.ResourceTiming();
+    original.timing.dnsStart = -1;
+    original.timing.dnsEnd = -1;
+    original.timing.connectionStart = 0;
+    original.timing.connectionEnd = 30;
+    original.timing.sslStart = 10;
+    original.timing.sslEnd = 30;
+    original.timing.sendStart = 30;
+    original.timing.sendEnd = 35;
+    original.timing.receivedHeadersEnd = 100;
+
+    String har = write(original);
+    JSONObject timings = new JSONObject(har).getJSONObject("log")
+        .getJSONArray("entries").getJSONObject(0).getJSONObject("timings");
+    assertEquals(-1, timings.getLong("dns"));
+    assertEquals(30, timings.getLong("connect"));
+    assertEquals(20, timings.getLong("ssl"));
+    assertEquals(5, timings.getLong("send"));
+    assertEquals(65, timings.getLong("wait"));
+    assertEquals(50, timings.getLong("receive"));
+
+    NetworkLog.Entry entry = HarReader.read(har).get(0);
+    assertEquals(100, entry.responseTime - entry.requestTime);
+    assertEquals(150, entry.endTime - entry.requestTime);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException, JSONException {
+    NetworkLog.Entry original = createEntry();
+    List<NetworkLog.Entry> entries = HarReader.read(write(original));
+    assertEquals(1, entries.size());
+
+    NetworkLog.Entry entry = entries.get(0);
+    assertEquals(original.startedDateTime, entry.startedDateTime);
+    assertEquals(original.url, entry.url);
+    assertEquals(original.method, entry.method);
+    assertEquals(original.postData, entry.postData);
+    assertArrayEquals(original.requestHeaders, entry.requestHeaders);
+    assertArrayEquals(original.responseHeaders, entry.responseHeaders);
+    assertEquals(original.statusCode, entry.statusCode);
+    assertEquals(original.dataLength, entry.dataLength);
+    assertEquals(original.encodedDataLength, entry.encodedDataLength);
+    assertEquals(
+        original.endTime - original.requestTime,
+        entry.endTime - entry.requestTime);
+  }
+
+  private static String write(NetworkLog.Entry entry) throws IOException {
+    StringWriter out = new StringWriter();
+    HarWriter writer = new HarWriter(out);
+    writer.beginLog();
+    writer.writeEntry(entry);
+    writer.endLog();
+    return out.toString();
+  }
+
+  private static NetworkLog.Entry createEntry() {
+    NetworkLog.Entry entry = new NetworkLog.Entry();
+    entry.requestId = "1";
+    entry.startedDateTime = 1430000000123L;
+    entry.requestTime = 1000;
+    entry.responseTime = 1100;
+    entry.endTime = 1150;
+    entry.url = "http://example.com/path?q=1";
+    entry.method = "POST";
+    entry.requestHeaders = new String[] { "Content-Type", "application/json" };
+    entry.postData = "{\"a\":\"line\\nbreak\"}";
+    entry.postDataMimeType = "application/json";
+    entry.requestBodySize = 20;
+    entry.statusCode = 200;
+    entry.reasonPhrase = "OK";
+    entry.responseHeaders = new String[] { "Content-Type", "text/plain", "Set-Cookie", "a=b" };
+    entry.mimeType = "text/plain";
+    entry.dataLength = 4096;
+    entry.encodedDataLength = 1024;
+    return entry;
+  }
+}
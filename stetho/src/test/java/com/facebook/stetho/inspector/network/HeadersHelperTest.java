@@ -0,0 +1,94 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import android.os.Build;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import javax.annotation.Nullable;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link HeadersHelper}
+ */
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class HeadersHelperTest {
+  @Test
+  public void testSimpleHeaders() throws JSONException {
+    JSONObject json = HeadersHelper.formatHeadersAsJSON(new SimpleHeaders(
+        "Content-Type", "text/plain",
+        "X-Custom", "foo"));
+    assertEquals(2, json.length());
+    assertEquals("text/plain", json.getString("Content-Type"));
+    assertEquals("foo", json.getString("X-Custom"));
+  }
+
+  @Test
+  public void testDuplicateHeadersMerged() throws JSONException {
+    JSONObject json = HeadersHelper.formatHeadersAsJSON(new SimpleHeaders(
+        "Set-Cookie", "a=1",
+        "Content-Type", "text/plain",
+        "Set-Cookie", "b=2",
+        "Set-Cookie", "c=3"));
+    assertEquals(2, json.length());
+    assertEquals("a=1\nb=2\nc=3", json.getString("Set-Cookie"));
+    assertEquals("text/plain", json.getString("Content-Type"));
+  }
+
+  @Test
+  public void testInternHeaderName() {
+    String name = new String("Content-Type");
+    assertSame("Content-Type", HeadersHelper.internHeaderName(name));
+    String custom = new String("X-Not-Common");
+    assertSame(custom, HeadersHelper.internHeaderName(custom));
+  }
+
+  private static class SimpleHeaders implements NetworkEventReporter.InspectorHeaders {
+    private final String[] mNamesAndValues;
+
+    public SimpleHeaders(String... namesAndValues) {
+      mNamesAndValues = namesAndValues;
+    }
+
+    @Override
+    public int headerCount() {
+      return mNamesAndValues.length / 2;
+    }
+
+    @Override
+    public String headerName(int index) {
+      return mNamesAndValues[index * 2];
+    }
+
+    @Override
+    public String headerValue(int index) {
+      return mNamesAndValues[index * 2 + 1];
+    }
+
+    @Nullable
+    @Override
+    public String firstHeaderValue(String name) {
+      for (int i = 0, count = headerCount(); i < count; i++) {
+        if (name.equals(headerName(i))) {
+          return headerValue(i);
+        }
+      }
+      return null;
+    }
+  }
+}
@@ -0,0 +1,82 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class NetworkLogTest {
+  @Test
+  public void testLongPostDataIsTruncated() {
+    NetworkLog log = new NetworkLog();
+    log.addEntry(createEntry(NetworkLog.MAX_POST_DATA_LENGTH + 1));
+    log.addEntry(createEntry(10));
+
+    List<NetworkLog.Entry> entries = log.snapshot();
+    assertEquals(NetworkLog.MAX_POST_DATA_LENGTH, entries.get(0).postData.length());
+    assertTrue(entries.get(0).postDataTruncated);
+    assertEquals(10, entries.get(1).postData.length());
+    assertFalse(entries.get(1).postDataTruncated);
+  }
+
+  @Test
+  public void testPostDataBudgetDropsOldestBodies() {
+    NetworkLog log = new NetworkLog();
+    int perEntry = NetworkLog.MAX_POST_DATA_LENGTH;
+    int fitting = NetworkLog.POST_DATA_BUDGET / perEntry;
+    for (int i = 0; i < fitting + 2; i++) {
+      log.addEntry(createEntry(perEntry));
+    }
+
+    List<NetworkLog.Entry> entries = log.snapshot();
+    assertEquals(fitting + 2, entries.size());
+    for (int i = 0; i < 2; i++) {
+      assertNull(entries.get(i).postData);
+      assertTrue(entries.get(i).postDataTruncated);
+    }
+    for (int i = 2; i < entries.size(); i++) {
+      assertEquals(perEntry, entries.get(i).postData.length());
+    }
+  }
+
+  @Test
+  public void testEvictionReleasesBudget() {
+    NetworkLog log = new NetworkLog();
+    log.setMaxEntries(1);
+    int perEntry = NetworkLog.MAX_POST_DATA_LENGTH;
+    int fitting = NetworkLog.POST_DATA_BUDGET / perEntry;
+    for (int i = 0; i < fitting + 2; i++) {
+      log.addEntry(createEntry(perEntry));
+    }
+
+    List<NetworkLog.Entry> entries = log.snapshot();
+    assertEquals(1, entries.size());
+    assertEquals(perEntry, entries.get(0).postData.length());
+    assertFalse(entries.get(0).postDataTruncated);
+  }
+
+  private static NetworkLog.Entry createEntry(int postDataLength) {
+    char[] postData = new char[postDataLength];
+    Arrays.fill(postData, 'a');
+    NetworkLog.Entry entry = new NetworkLog.Entry();
+    entry.requestId = "1";
+    entry.url = "http://example.com/";
+    entry.method = "POST";
+    entry.postData = new String(postData);
+    return entry;
+  }
+}
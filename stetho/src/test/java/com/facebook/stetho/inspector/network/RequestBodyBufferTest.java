@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class RequestBodyBufferTest {
+  @Test
+  public void testRetainsBody() throws IOException {
+    byte[] data = createData(100);
+    RequestBodyBuffer buffer = new RequestBodyBuffer(4096);
+    buffer.write(data, 0, 50);
+    buffer.write(data[50]);
+    buffer.write(data, 51, 49);
+    buffer.close();
+    assertEquals(100, buffer.size());
+    assertArrayEquals(data, buffer.readHead(Integer.MAX_VALUE));
+    assertArrayEquals(Arrays.copyOf(data, 10), buffer.readHead(10));
+  }
+
+  @Test
+  public void testDiscardsBeyondRetainedBytes() throws IOException {
+    byte[] data = createData(4096);
+    RequestBodyBuffer buffer = new RequestBodyBuffer(3000);
+    buffer.write(data, 0, 2999);
+    buffer.write(data[2999]);
+    buffer.write(data[3000]);
+    buffer.write(data, 3001, data.length - 3001);
+    buffer.close();
+    assertEquals(data.length, buffer.size());
+    assertArrayEquals(Arrays.copyOf(data, 3000), buffer.readHead(Integer.MAX_VALUE));
+  }
+
+  @Test
+  public void testRelease() throws IOException {
+    RequestBodyBuffer buffer = new RequestBodyBuffer(100);
+    buffer.write(createData(50));
+    buffer.release();
+    assertTrue(buffer.isClosed());
+    assertEquals(0, buffer.readHead(Integer.MAX_VALUE).length);
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testReadBeforeClose() throws IOException {
+    RequestBodyBuffer buffer = new RequestBodyBuffer(100);
+    buffer.write(1);
+    buffer.readHead(Integer.MAX_VALUE);
+  }
+
+  @Test(expected = IOException.class)
+  public void testWriteAfterClose() throws IOException {
+    RequestBodyBuffer buffer = new RequestBodyBuffer(4096);
+    buffer.close();
+    buffer.write(1);
+  }
+
+  private static byte[] createData(int length) {
+    byte[] data = new byte[length];
+    for (int i = 0; i < length; i++) {
+      data[i] = (byte)(i % 0xff);
+    }
+    return data;
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.network;
+
+import com.facebook.stetho.inspector.network.NetworkTimingReporter.TimingPhase;
+import com.facebook.stetho.inspector.protocol.module.Network;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+
+import static org.junit.Assert.*;
+
+@RunWith(JUnit4.class)
+public class ResourceTimingTrackerTest {
+  private static final long MILLIS = 1000L * 1000L;
+  private static final double EPSILON = 0.0001;
+
+  @Test
+  public void testReportedPhasesAreRelativeToStart() {
+    ResourceTimingTracker tracker = new ResourceTimingTracker();
+    long start = 5000 * MILLIS;
+    tracker.requestStarted("1", start);
+    tracker.mark("1", TimingPhase.CONNECT_START, start + 2 * MILLIS);
+    tracker.mark("1", TimingPhase.CONNECT_END, start + 10 * MILLIS);
+
+    Network.ResourceTiming timing = tracker.finish("1", start + 30 * MILLIS);
+    assertNotNull(timing);
+    assertEquals(5.0, timing.requestTime, EPSILON);
+    assertEquals(2.0, timing.connectionStart, EPSILON);
+    assertEquals(10.0, timing.connectionEnd, EPSILON);
+    assertEquals(30.0, timing.receivedHeadersEnd, EPSILON);
+    assertEquals(0, tracker.getPendingCount());
+  }
+
+  @Test
+  public void testUnreportedPhasesAreUnavailable() {
+    ResourceTimingTracker tracker = new ResourceTimingTracker();
+    tracker.requestStarted("1", 0);
+
+    Network.ResourceTiming timing = tracker.finish("1", 4 * MILLIS);
+    assertEquals(-1, timing.dnsStart, EPSILON);
+    assertEquals(-1, timing.dnsEnd, EPSILON);
+    assertEquals(-1, timing.connectionStart, EPSILON);
+    assertEquals(-1, timing.connectionEnd, EPSILON);
+    assertEquals(-1, timing.sslStart, EPSILON);
+    assertEquals(-1, timing.sslEnd, EPSILON);
+    assertEquals(-1, timing.sendStart, EPSILON);
+    assertEquals(-1, timing.sendEnd, EPSILON);
+    assertEquals(4.0, timing.receivedHeadersEnd, EPSILON);
+  }
+
+  @Test
+  public void testUnknownRequest() {
+    ResourceTimingTracker tracker = new ResourceTimingTracker();
+    tracker.mark("1", TimingPhase.DNS_START, 0);
+    assertNull(tracker.finish("1", 0));
+    assertEquals(0, tracker.getPendingCount());
+  }
+
+  @Test
+  public void testDiscard() {
+    ResourceTimingTracker tracker = new ResourceTimingTracker();
+    tracker.requestStarted("1", 0);
+    tracker.discard("1");
+    assertEquals(0, tracker.getPendingCount());
+    assertNull(tracker.finish("1", 0));
+  }
+
+  @Test
+  public void testAbandonedRequestsAreEvicted() {
+    ResourceTimingTracker tracker = new ResourceTimingTracker(2 /* maxPendingRequests */);
+    tracker.requestStarted("1", 0);
+    tracker.requestStarted("2", 0);
+    tracker.requestStarted("3", 0);
+    assertEquals(2, tracker.getPendingCount());
+    assertNull(tracker.finish("1", 0));
+    assertNotNull(tracker.finish("2", 0));
+    assertNotNull(tracker.finish("3", 0));
+  }
+}
@@ -31,6 +31,7 @@ import org.powermock.modules.junit4.PowerMockRunner;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest(CLog.class)
@@ -72,7 +73,8 @@ public class ResponseHandlingInputStreamTest {
   public void testReadOneByte() throws IOException {
     int result = mResponseHandlingInputStream.read();
     assertEquals(TEST_RESPONSE_BODY[0], positionToByte(result));
-    assertBufferMatchesResponseBody(mTestOutputStream.toByteArray(), 1);
+    // Single byte reads are held in the tee buffer until it fills or the stream is drained.
+    assertEquals(0, mTestOutputStream.size());
 
     PowerMockito.mockStatic(CLog.class);
     PowerMockito.doNothing().when(CLog.class);
@@ -83,6 +85,27 @@ public class ResponseHandlingInputStreamTest {
         Mockito.anyString());
     mResponseHandlingInputStream.close();
     PowerMockito.verifyStatic();
+    assertBufferMatchesResponseBody(mTestOutputStream.toByteArray(), TEST_RESPONSE_BODY.length);
+  }
+
+  @Test
+  public void testReadManySingleBytes() throws IOException {
+    for (int i = 0; i < TEST_RESPONSE_BODY.length; i++) {
+      int result = mResponseHandlingInputStream.read();
+      assertEquals(TEST_RESPONSE_BODY[i], positionToByte(result));
+    }
+    // The first full tee buffer should have been flushed already.
+    assertTrue(mTestOutputStream.size() > 0);
+    assertEquals(-1, mResponseHandlingInputStream.read());
+    assertBufferMatchesResponseBody(mTestOutputStream.toByteArray(), TEST_RESPONSE_BODY.length);
+    Mockito.verify(mNetworkEventReporter).dataReceived(
+        TEST_REQUEST_ID,
+        TEST_RESPONSE_BODY.length,
+        TEST_RESPONSE_BODY.length);
+
+    PowerMockito.mockStatic(CLog.class);
+    PowerMockito.verifyZeroInteractions(CLog.class);
+    mResponseHandlingInputStream.close();
   }
 
   @Test
@@ -167,6 +190,8 @@ public class ResponseHandlingInputStreamTest {
 
     PowerMockito.mockStatic(CLog.class);
     responseHandlingInputStream.read();
+    // Reaching EOF flushes the buffered byte into the failing stream.
+    responseHandlingInputStream.close();
     PowerMockito.verifyStatic();
   }
 
@@ -0,0 +1,437 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.protocol.module;
+
+import android.os.Build;
+import com.facebook.stetho.inspector.elements.Document;
+import com.facebook.stetho.inspector.elements.DocumentView;
+import com.facebook.stetho.inspector.elements.ElementInfo;
+import com.facebook.stetho.inspector.elements.FakeDocumentProvider;
+import com.facebook.stetho.inspector.elements.FakeDocumentProvider.Element;
+import com.facebook.stetho.inspector.jsonrpc.JsonRpcException;
+import com.facebook.stetho.inspector.jsonrpc.JsonRpcPeer;
+import com.facebook.stetho.inspector.jsonrpc.JsonRpcResult;
+import com.facebook.stetho.json.ObjectMapper;
+import com.facebook.stetho.websocket.SimpleSession;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import javax.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for how {@link DOM} keeps the peer's view of the tree in sync with the
+ * {@link Document}.  The peer is modelled by {@link ModelPeer}, which applies each notification
+ * it receives the way the frontend would, so that after each change its tree can be compared with
+ * the document's.
+ */
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class DOMTest {
+  private static final int UNLIMITED_DEPTH = -1;
+
+  private final Element mA1 = new Element("A1");
+  private final Element mA2 = new Element("A2");
+  private final Element mA3 = new Element("A3");
+  private final Element mA = new Element("A", mA1, mA2, mA3);
+  private final Element mB11 = new Element("B11");
+  private final Element mB1 = new Element("B1", mB11);
+  private final Element mB2 = new Element("B2");
+  private final Element mB = new Element("B", mB1, mB2);
+  private final Element mRoot = new Element("Root", mA, mB);
+
+  private final FakeDocumentProvider mProvider = new FakeDocumentProvider(mRoot);
+  private final Document mDocument = new Document(mProvider);
+  private final DOM mDOM = new DOM(mDocument);
+  private final ObjectMapper mObjectMapper = new ObjectMapper();
+  private final ModelPeer mModelPeer = new ModelPeer();
+  private final JsonRpcPeer mPeer = new JsonRpcPeer(mObjectMapper, mModelPeer);
+
+  @Before
+  public void setUp() {
+    mDOM.enable(mPeer, null /* params */);
+  }
+
+  @After
+  public void tearDown() {
+    mDOM.disable(mPeer, null /* params */);
+  }
+
+  @Test
+  public void testMovesAreRemovedBeforeInserted() throws JSONException {
+    getDocument(UNLIMITED_DEPTH);
+
+    // Swap a child of each parent, so that whichever parent is examined first has an insertion
+    // of an element that is still a child of the other.
+    mA.children.set(2, mB2);
+    mB.children.set(1, mA3);
+    updateDocument(mRoot);
+
+    assertEquals(
+        Arrays.asList(
+            "DOM.childNodeRemoved",
+            "DOM.childNodeRemoved",
+            "DOM.childNodeInserted",
+            "DOM.childNodeInserted"),
+        mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testChildrenResentWhenCheaper() throws JSONException {
+    getDocument(UNLIMITED_DEPTH);
+
+    // A has 3 removals and 1 insertion, which is more than its one child, so it's resent in full,
+    // but only after B1 has been removed from B.
+    mA.children.clear();
+    mA.children.add(mB1);
+    mB.children.remove(mB1);
+    updateDocument(mRoot);
+
+    assertEquals(
+        Arrays.asList("DOM.childNodeRemoved", "DOM.setChildNodes"),
+        mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testChildNodeCountUpdatedForUnexpandedParents() throws JSONException {
+    // The peer knows about A and B, but hasn't been sent their children.
+    getDocument(1 /* depth */);
+
+    mA.children.add(new Element("A4"));
+    mB.children.remove(mB1);
+    updateDocument(mRoot);
+
+    assertEquals(
+        Arrays.asList("DOM.childNodeCountUpdated", "DOM.childNodeCountUpdated"),
+        mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testNoEventsForUnknownParents() throws JSONException {
+    getDocument(1 /* depth */);
+
+    // B1 was never sent to the peer.
+    mB1.children.add(new Element("B12"));
+    updateDocument(mB1);
+
+    assertEquals(Arrays.<String>asList(), mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testGetDocumentIsTruncatedAtDefaultDepth() throws JSONException {
+    getDocument();
+
+    // The root and its children are expanded; their children are sent without their own.
+    assertTrue(mModelPeer.isExpanded(getNodeId(mRoot)));
+    assertTrue(mModelPeer.isExpanded(getNodeId(mA)));
+    assertTrue(mModelPeer.isExpanded(getNodeId(mB)));
+    assertTrue(mModelPeer.isKnown(getNodeId(mB1)));
+    assertFalse(mModelPeer.isExpanded(getNodeId(mB1)));
+    assertFalse(mModelPeer.isKnown(getNodeId(mB11)));
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testRequestChildNodesSendsChildrenOnce() throws JSONException, JsonRpcException {
+    getDocument();
+    mModelPeer.clearMethods();
+
+    requestChildNodes(mB1);
+
+    assertEquals(Arrays.asList("DOM.setChildNodes"), mModelPeer.getMethods());
+    assertTrue(mModelPeer.isExpanded(getNodeId(mB1)));
+    assertTrue(mModelPeer.isKnown(getNodeId(mB11)));
+    assertFalse(mModelPeer.isExpanded(getNodeId(mB11)));
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testChangesBecomeEventsOnceExpanded() throws JSONException, JsonRpcException {
+    getDocument();
+
+    mB1.children.add(new Element("B12"));
+    updateDocument(mB1);
+    assertEquals(Arrays.asList("DOM.childNodeCountUpdated"), mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+
+    requestChildNodes(mB1);
+    mB1.children.add(new Element("B13"));
+    updateDocument(mB1);
+    assertEquals(Arrays.asList("DOM.childNodeInserted"), mModelPeer.getMethods());
+    assertPeerMatchesDocument();
+  }
+
+  @Test
+  public void testSearchResultPathIsPushedToPeer() throws JSONException {
+    getDocument();
+
+    JSONObject searchParams = new JSONObject();
+    searchParams.put("query", "B11");
+    JSONObject searchResponse =
+        mObjectMapper.convertValue(mDOM.performSearch(mPeer, searchParams), JSONObject.class);
+    assertEquals(1, searchResponse.getInt("resultCount"));
+
+    JSONObject resultsParams = new JSONObject();
+    resultsParams.put("searchId", searchResponse.getString("searchId"));
+    resultsParams.put("fromIndex", 0);
+    resultsParams.put("toIndex", 1);
+
+    // Only B1's children are missing from the peer's tree.
+    mModelPeer.clearMethods();
+    mDOM.getSearchResults(mPeer, resultsParams);
+    assertEquals(Arrays.asList("DOM.setChildNodes"), mModelPeer.getMethods());
+    assertTrue(mModelPeer.isKnown(getNodeId(mB11)));
+    assertPeerMatchesDocument();
+
+    // Now there's nothing left to push.
+    mModelPeer.clearMethods();
+    mDOM.getSearchResults(mPeer, resultsParams);
+    assertEquals(Arrays.<String>asList(), mModelPeer.getMethods());
+  }
+
+  private void getDocument() throws JSONException {
+    JsonRpcResult result = mDOM.getDocument(mPeer, null /* params */);
+    mModelPeer.setDocument(
+        mObjectMapper.convertValue(result, JSONObject.class).getJSONObject("root"));
+  }
+
+  private void getDocument(int depth) throws JSONException {
+    JSONObject params = new JSONObject();
+    params.put("depth", depth);
+    JsonRpcResult result = mDOM.getDocument(mPeer, params);
+    mModelPeer.setDocument(
+        mObjectMapper.convertValue(result, JSONObject.class).getJSONObject("root"));
+  }
+
+  private void requestChildNodes(Element element) throws JSONException, JsonRpcException {
+    JSONObject params = new JSONObject();
+    params.put("nodeId", getNodeId(element));
+    mModelPeer.clearMethods();
+    mDOM.requestChildNodes(mPeer, params);
+  }
+
+  private int getNodeId(Element element) {
+    return mDocument.getNodeIdForElement(element);
+  }
+
+  private void updateDocument(Element subtreeRoot) {
+    mModelPeer.clearMethods();
+    mProvider.notifySubtreeChanged(subtreeRoot);
+    mProvider.runPending();
+  }
+
+  /**
+   * Checks that every node the peer knows about has the right child count, and that every node
+   * whose children it has been sent has the right children, in the right order.
+   */
+  private void assertPeerMatchesDocument() {
+    DocumentView view = mDocument.getDocumentView();
+    for (ModelNode node : mModelPeer.getNodes()) {
+      Object element = mDocument.getElementForNodeId(node.nodeId);
+      assertNotNull("Peer has unknown node " + node.nodeId, element);
+
+      ElementInfo elementInfo = view.getElementInfo(element);
+      assertNotNull("Peer has node " + element + ", which isn't in the tree", elementInfo);
+      assertEquals(
+          "Child count of " + element,
+          elementInfo.children.size(),
+          node.childNodeCount);
+
+      if (node.children != null) {
+        List<Integer> expectedChildIds = new ArrayList<>();
+        for (Object childElement : elementInfo.children) {
+          expectedChildIds.add(mDocument.getNodeIdForElement(childElement));
+        }
+        List<Integer> childIds = new ArrayList<>();
+        for (ModelNode child : node.children) {
+          childIds.add(child.nodeId);
+        }
+        assertEquals("Children of " + element, expectedChildIds, childIds);
+      }
+    }
+  }
+
+  private static class ModelNode {
+    public final int nodeId;
+    public int childNodeCount;
+
+    /**
+     * Null until the peer has been sent this node's children.
+     */
+    @Nullable
+    public List<ModelNode> children;
+
+    public ModelNode(int nodeId) {
+      this.nodeId = nodeId;
+    }
+  }
+
+  /**
+   * The peer's view of the tree, as built up from {@code DOM.getDocument} and the notifications
+   * it receives.  Notifications that the frontend couldn't apply, such as an insertion of a node
+   * it already has, fail the test.
+   */
+  private static class ModelPeer implements SimpleSession {
+    private final Map<Integer, ModelNode> mNodes = new HashMap<>();
+    private final List<String> mMethods = new ArrayList<>();
+
+    public void setDocument(JSONObject root) throws JSONException {
+      mNodes.clear();
+      addNode(root);
+    }
+
+    public List<String> getMethods() {
+      return mMethods;
+    }
+
+    public void clearMethods() {
+      mMethods.clear();
+    }
+
+    public boolean isKnown(int nodeId) {
+      return mNodes.containsKey(nodeId);
+    }
+
+    public boolean isExpanded(int nodeId) {
+      return isKnown(nodeId) && mNodes.get(nodeId).children != null;
+    }
+
+    public Iterable<ModelNode> getNodes() {
+      return mNodes.values();
+    }
+
+    @Override
+    public void sendText(String payload) {
+      try {
+        JSONObject message = new JSONObject(payload);
+        String method = message.getString("method");
+        mMethods.add(method);
+        applyNotification(method, message.getJSONObject("params"));
+      } catch (JSONException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    @Override
+    public void sendBinary(byte[] payload) {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close(int closeReason, String reasonPhrase) {
+    }
+
+    @Override
+    public boolean isOpen() {
+      return true;
+    }
+
+    private void applyNotification(String method, JSONObject params) throws JSONException {
+      if ("DOM.setChildNodes".equals(method)) {
+        ModelNode parent = getNode(params.getInt("parentId"));
+        if (parent.children != null) {
+          for (ModelNode child : parent.children) {
+            removeNode(child);
+          }
+        }
+        parent.children = addNodes(params.getJSONArray("nodes"));
+        parent.childNodeCount = parent.children.size();
+      } else if ("DOM.childNodeInserted".equals(method)) {
+        ModelNode parent = getExpandedNode(params.getInt("parentNodeId"));
+        int previousNodeId = params.getInt("previousNodeId");
+        int index = 0;
+        if (previousNodeId != -1) {
+          index = indexOfChild(parent, previousNodeId) + 1;
+          assertTrue("Unknown previous node " + previousNodeId, index > 0);
+        }
+        parent.children.add(index, addNode(params.getJSONObject("node")));
+        parent.childNodeCount++;
+      } else if ("DOM.childNodeRemoved".equals(method)) {
+        ModelNode parent = getExpandedNode(params.getInt("parentNodeId"));
+        int index = indexOfChild(parent, params.getInt("nodeId"));
+        assertTrue("Removed node isn't a child of " + parent.nodeId, index >= 0);
+        removeNode(parent.children.remove(index));
+        parent.childNodeCount--;
+      } else if ("DOM.childNodeCountUpdated".equals(method)) {
+        getNode(params.getInt("nodeId")).childNodeCount = params.getInt("childNodeCount");
+      }
+    }
+
+    private ModelNode addNode(JSONObject json) throws JSONException {
+      ModelNode node = new ModelNode(json.getInt("nodeId"));
+      assertFalse("Peer already has node " + node.nodeId, mNodes.containsKey(node.nodeId));
+      mNodes.put(node.nodeId, node);
+      node.childNodeCount = json.getInt("childNodeCount");
+      if (json.has("children")) {
+        node.children = addNodes(json.getJSONArray("children"));
+      }
+      return node;
+    }
+
+    private List<ModelNode> addNodes(JSONArray json) throws JSONException {
+      List<ModelNode> nodes = new ArrayList<>();
+      for (int i = 0; i < json.length(); ++i) {
+        nodes.add(addNode(json.getJSONObject(i)));
+      }
+      return nodes;
+    }
+
+    private void removeNode(ModelNode node) {
+      mNodes.remove(node.nodeId);
+      if (node.children != null) {
+        for (ModelNode child : node.children) {
+          removeNode(child);
+        }
+      }
+    }
+
+    private ModelNode getNode(int nodeId) {
+      ModelNode node = mNodes.get(nodeId);
+      assertNotNull("Peer doesn't know node " + nodeId, node);
+      return node;
+    }
+
+    private ModelNode getExpandedNode(int nodeId) {
+      ModelNode node = getNode(nodeId);
+      assertNotNull("Peer doesn't have the children of node " + nodeId, node.children);
+      return node;
+    }
+
+    private static int indexOfChild(ModelNode parent, int nodeId) {
+      for (int i = 0, N = parent.children.size(); i < N; ++i) {
+        if (parent.children.get(i).nodeId == nodeId) {
+          return i;
+        }
+      }
+      return -1;
+    }
+  }
+}
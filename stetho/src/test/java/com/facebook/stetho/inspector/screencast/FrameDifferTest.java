@@ -0,0 +1,72 @@
+/*
+ * Copyright (c) 2014-present, Facebook, Inc.
+ * All rights reserved.
+ *
+ * This source code is licensed under the BSD-style license found in the
+ * LICENSE file in the root directory of this source tree. An additional grant
+ * of patent rights can be found in the PATENTS file in the same directory.
+ */
+
+package com.facebook.stetho.inspector.screencast;
+
+import android.graphics.Rect;
+import android.os.Build;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import static org.junit.Assert.*;
+
+@Config(emulateSdk = Build.VERSION_CODES.JELLY_BEAN)
+@RunWith(RobolectricTestRunner.class)
+public class FrameDifferTest {
+  private static final int TILE_SIZE = 4;
+  private static final int WIDTH = 10;
+  private static final int HEIGHT = 9;
+
+  private final FrameDiffer mDiffer = new FrameDiffer(TILE_SIZE);
+
+  @Test
+  public void testFirstFrameIsEntirelyDirty() {
+    assertEquals(new Rect(0, 0, WIDTH, HEIGHT), diff(new int[WIDTH * HEIGHT]));
+  }
+
+  @Test
+  public void testUnchangedFrame() {
+    diff(new int[WIDTH * HEIGHT]);
+    assertNull(diff(new int[WIDTH * HEIGHT]));
+  }
+
+  @Test
+  public void testDirtyRegionCoversChangedTiles() {
+    diff(new int[WIDTH * HEIGHT]);
+
+    int[] frame = new int[WIDTH * HEIGHT];
+    frame[5 * WIDTH + 1] = 1;
+    assertEquals(new Rect(0, 4, 4, 8), diff(frame));
+
+    // Partial tiles at the edges are clipped to the frame.
+    frame[8 * WIDTH + 9] = 1;
+    assertEquals(new Rect(8, 8, WIDTH, HEIGHT), diff(frame));
+  }
+
+  @Test
+  public void testReset() {
+    diff(new int[WIDTH * HEIGHT]);
+    mDiffer.reset();
+    assertEquals(new Rect(0, 0, WIDTH, HEIGHT), diff(new int[WIDTH * HEIGHT]));
+  }
+
+  private Rect diff(int[] frame) {
+    mDiffer.begin(WIDTH, HEIGHT);
+    for (int top = 0; top < HEIGHT; top += TILE_SIZE) {
+      int rows = Math.min(TILE_SIZE, HEIGHT - top);
+      int[] band = new int[WIDTH * TILE_SIZE];
+      System.arraycopy(frame, top * WIDTH, band, 0, WIDTH * rows);
+      mDiffer.addBand(band, top, rows);
+    }
+    Rect dirtyRect = mDiffer.end();
+    return (dirtyRect != null) ? new Rect(dirtyRect) : null;
+  }
+}